@@ -8,7 +8,7 @@ import java.util.ArrayList;
 import knoblauch.readdesc.model.ReadParser;
 import knoblauch.readdesc.model.ReadPref;
 
-public class ReadingControls implements View.OnClickListener, ReadParser.ParsingDoneListener {
+public class ReadingControls implements View.OnClickListener, View.OnLongClickListener, ReadParser.ParsingDoneListener {
 
     /**
      * Convenience enumeration describing the possible actions to
@@ -19,7 +19,9 @@ public class ReadingControls implements View.OnClickListener, ReadParser.Parsing
         Previous,
         Pause,
         Play,
-        Next
+        Next,
+        PreviousChapter,
+        NextChapter
     }
 
     /**
@@ -141,6 +143,10 @@ public class ReadingControls implements View.OnClickListener, ReadParser.Parsing
         m_play.setOnClickListener(this);
         m_next.setOnClickListener(this);
 
+        // A long click on the motion buttons allows to skip a whole chapter.
+        m_prev.setOnLongClickListener(this);
+        m_next.setOnLongClickListener(this);
+
         // Assume we're disabled by default and at the beginning of the read.
         setActive(false);
         setState(State.Stopped);
@@ -234,10 +240,42 @@ public class ReadingControls implements View.OnClickListener, ReadParser.Parsing
             case Rewind:
             case Previous:
             case Next:
+            case PreviousChapter:
+            case NextChapter:
                 break;
         }
 
         // Notify listeners of the requested user's action.
+        notifyAction(action);
+    }
+
+    @Override
+    public boolean onLongClick(View v) {
+        // Similar to the `onClick` method: only the motion buttons are able to
+        // produce a long click and we ignore it when the controls are disabled.
+        if (!m_enabled) {
+            return false;
+        }
+
+        if (v == m_prev) {
+            notifyAction(Action.PreviousChapter);
+            return true;
+        }
+        if (v == m_next) {
+            notifyAction(Action.NextChapter);
+            return true;
+        }
+
+        // Unknown view, do nothing.
+        return false;
+    }
+
+    /**
+     * Used to notify the listeners registered in this object of the action
+     * requested by the user.
+     * @param action - the action requested by the user.
+     */
+    private void notifyAction(Action action) {
         for (ControlsListener listener : m_listeners) {
             listener.onActionRequested(action);
         }
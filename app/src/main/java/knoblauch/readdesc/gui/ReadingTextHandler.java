@@ -7,6 +7,7 @@ import android.widget.TextView;
 
 import java.util.ArrayList;
 
+import knoblauch.readdesc.model.ReadCursor;
 import knoblauch.readdesc.model.ReadParser;
 import knoblauch.readdesc.model.ReadPref;
 
@@ -239,9 +240,11 @@ public class ReadingTextHandler implements ReadParser.ParsingDoneListener, Runna
         m_waiter.setVisibility(View.GONE);
 
         // We can also update the text with the current words provided by the parser.
-        m_text.setText(m_parser.getCurrentWord());
-        m_prev.setText(m_parser.getPreviousWord());
-        m_next.setText(m_parser.getNextWord());
+        // All the words are read from the same cursor so that they are consistent.
+        ReadCursor cursor = m_parser.getCursor();
+        m_text.setText(cursor.getCurrentWord());
+        m_prev.setText(cursor.getPreviousWord());
+        m_next.setText(cursor.getNextWord());
     }
 
     @Override
@@ -271,8 +274,9 @@ public class ReadingTextHandler implements ReadParser.ParsingDoneListener, Runna
         // Add `1` to the current read length.
         ++m_currentReadLength;
 
-        // Check whether we reached a section.
-        if (m_currentReadLength >= m_readLength || m_parser.isAtEnd()) {
+        // Check whether we reached a section. The cursor is published by the
+        // parser when advancing so it describes the new position.
+        if (m_currentReadLength >= m_readLength || m_parser.getCursor().isAtEnd()) {
             // We reached a section, notify listeners.
             for (SectionListener listener : m_listeners) {
                 listener.onSectionReached();
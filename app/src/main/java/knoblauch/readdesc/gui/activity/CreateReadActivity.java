@@ -369,6 +369,7 @@ public class CreateReadActivity extends AppCompatActivity implements CompoundBut
         if (v == m_fileProps.browse) {
             mimeTypes.add("text/plain");
             mimeTypes.add("application/pdf");
+            mimeTypes.add("application/epub+zip");
         }
 
         if (v == m_websiteProps.browse) {
@@ -314,6 +314,12 @@ public class ReadActivity extends AppCompatActivity implements ReadingControls.C
             case Next:
                 m_parser.moveToNext();
                 break;
+            case PreviousChapter:
+                m_parser.moveToPreviousChapter();
+                break;
+            case NextChapter:
+                m_parser.moveToNextChapter();
+                break;
             default:
                 // Nothing to do, it will be handled afterwards.
                 break;
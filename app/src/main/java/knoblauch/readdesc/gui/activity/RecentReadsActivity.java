@@ -30,6 +30,7 @@ import knoblauch.readdesc.gui.ReadsAdapter;
 import knoblauch.readdesc.gui.UriUtils;
 import knoblauch.readdesc.model.ReadDesc;
 import knoblauch.readdesc.model.ReadIntent;
+import knoblauch.readdesc.model.ReadSnapshot;
 
 public class RecentReadsActivity extends AppCompatActivity implements AdapterView.OnItemClickListener, ReadItemClickListener, NotifierDialog.NoticeDialogListener, FloatingActionButton.OnClickListener {
 
@@ -40,6 +41,7 @@ public class RecentReadsActivity extends AppCompatActivity implements AdapterVie
     private enum AppAction {
         OpenRead,
         OpenSource,
+        RefreshSource,
         Delete
     }
 
@@ -129,6 +131,9 @@ public class RecentReadsActivity extends AppCompatActivity implements AdapterVie
             case R.id.read_open_source_menu_opt:
                 performAction(AppAction.OpenSource, read);
                 break;
+            case R.id.read_refresh_source_menu_opt:
+                performAction(AppAction.RefreshSource, read);
+                break;
             case R.id.read_open_menu_opt:
             default:
                 // We also end up in this case when no particular element of a view has
@@ -200,6 +205,9 @@ public class RecentReadsActivity extends AppCompatActivity implements AdapterVie
             case R.id.read_open_source_menu_opt:
                 performAction(AppAction.OpenSource, m_reads.getItem((int)info.id));
                 return true;
+            case R.id.read_refresh_source_menu_opt:
+                performAction(AppAction.RefreshSource, m_reads.getItem((int)info.id));
+                return true;
             default:
                 break;
         }
@@ -261,6 +269,10 @@ public class RecentReadsActivity extends AppCompatActivity implements AdapterVie
             // Register this read in the internal bank.
             m_reads.addItem(read);
 
+            // Save a snapshot of the source so that opening the read does not depend
+            // on its provider.
+            ReadSnapshot.schedule(this, read, false);
+
             return;
         }
 
@@ -373,6 +385,9 @@ public class RecentReadsActivity extends AppCompatActivity implements AdapterVie
             case OpenSource:
                 openReadSource(desc);
                 break;
+            case RefreshSource:
+                ReadSnapshot.schedule(this, desc, true);
+                break;
             default:
                 break;
         }
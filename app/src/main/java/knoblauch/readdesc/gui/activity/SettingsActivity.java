@@ -80,6 +80,19 @@ public class SettingsActivity extends AppCompatActivity implements SeekBar.OnSee
      */
     private SeekBar m_wordStepValue;
 
+    /**
+     * Holds the text view displaying the current memory budget expressed in
+     * megabytes. Used to update the value whenever the user changes the seek
+     * bar allowing to control this setting.
+     */
+    private TextView m_memoryBudgetText;
+
+    /**
+     * Holds the seek bar allowing to control the amount of memory that a read
+     * can use to keep its words.
+     */
+    private SeekBar m_memoryBudgetValue;
+
     /**
      * Holds the current set of preferences defined in the settings view. This
      * attribute is populated from the local data upon creating the view and
@@ -104,6 +117,7 @@ public class SettingsActivity extends AppCompatActivity implements SeekBar.OnSee
         // Register this view as a listener of relevant properties.
         m_wordFlipValue.setOnSeekBarChangeListener(this);
         m_wordStepValue.setOnSeekBarChangeListener(this);
+        m_memoryBudgetValue.setOnSeekBarChangeListener(this);
 
         m_disableContextValue.setOnCheckedChangeListener(this);
 
@@ -208,6 +222,17 @@ public class SettingsActivity extends AppCompatActivity implements SeekBar.OnSee
             return;
         }
 
+        if (seekBar == m_memoryBudgetValue) {
+            // Update prefs object.
+            m_prefs.setMemoryBudget(progress);
+
+            // Update the display text.
+            String budget = String.format(getResources().getString(R.string.activity_settings_memory_budget_text), m_prefs.getMemoryBudget());
+            m_memoryBudgetText.setText(budget);
+
+            return;
+        }
+
         // Handle a modification of the background color while in reading mode.
         // Any change in the progress bar should update the preview button bg
         // color (along with the preferences' value).
@@ -285,6 +310,10 @@ public class SettingsActivity extends AppCompatActivity implements SeekBar.OnSee
         m_wordStepText = findViewById(R.id.settings_word_step_value);
         m_wordStepValue = findViewById(R.id.settings_word_step_seek_bar);
 
+        // Retrieve the memory budget.
+        m_memoryBudgetText = findViewById(R.id.settings_memory_budget_value);
+        m_memoryBudgetValue = findViewById(R.id.settings_memory_budget_seek_bar);
+
         // Retrieve display context.
         m_disableContextValue = findViewById(R.id.settings_disable_context_words);
 
@@ -339,6 +368,12 @@ public class SettingsActivity extends AppCompatActivity implements SeekBar.OnSee
         m_wordStepText.setText(wordStepText);
         m_wordStepValue.setProgress(wordStep);
 
+        // Memory budget.
+        int memoryBudget = m_prefs.getMemoryBudget();
+        String memoryBudgetText = String.format(getResources().getString(R.string.activity_settings_memory_budget_text), memoryBudget);
+        m_memoryBudgetText.setText(memoryBudgetText);
+        m_memoryBudgetValue.setProgress(memoryBudget);
+
         // Display context.
         boolean displayContext = m_prefs.getDisplayContext();
         m_disableContextValue.setChecked(!displayContext);
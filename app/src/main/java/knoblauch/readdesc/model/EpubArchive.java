@@ -0,0 +1,373 @@
+package knoblauch.readdesc.model;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+class EpubArchive {
+
+    /**
+     * The path of the file describing the location of the package document in
+     * an `EPUB` archive.
+     */
+    private static final String CONTAINER_PATH = "META-INF/container.xml";
+
+    /**
+     * The media types of the items of the spine which can be read: the other ones
+     * (images, etc.) are ignored.
+     */
+    private static final String[] CHAPTER_TYPES = {
+            "application/xhtml+xml",
+            "text/html"
+    };
+
+    /**
+     * The size of the buffer used to read the entries of the archive in memory.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The archive opened from a local file. This allows to only read the central
+     * directory of the archive and the entries we actually need. It is `null` in
+     * case the archive was read from a stream.
+     */
+    private ZipFile m_zip;
+
+    /**
+     * The content of the entries of the archive in case it was read from a stream
+     * which does not allow random access.
+     */
+    private HashMap<String, byte[]> m_entries;
+
+    /**
+     * The path in the archive of each chapter, in reading order.
+     */
+    private ArrayList<String> m_chapters;
+
+    /**
+     * The size in bytes of each chapter. This gives a rough idea of the number of
+     * words of the chapters without parsing them.
+     */
+    private ArrayList<Long> m_sizes;
+
+    /**
+     * Create a new archive from the input file. Only the central directory of the
+     * archive and the package document are read.
+     * @param file - the file containing the archive.
+     * @throws IOException - in case the archive cannot be opened.
+     */
+    EpubArchive(File file) throws IOException {
+        m_zip = new ZipFile(file);
+        m_entries = null;
+
+        try {
+            readSpine();
+        }
+        catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Create a new archive from the input stream. As a stream does not provide a
+     * random access to the data, all the entries are read in memory. The stream
+     * is closed by this method.
+     * @param stream - the stream containing the archive.
+     * @throws IOException - in case the archive cannot be read.
+     */
+    EpubArchive(InputStream stream) throws IOException {
+        if (stream == null) {
+            throw new IOException("Cannot read EPUB archive from invalid stream");
+        }
+
+        m_zip = null;
+        m_entries = new HashMap<>();
+
+        ZipInputStream zip = new ZipInputStream(stream);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            ZipEntry entry = zip.getNextEntry();
+            while (entry != null) {
+                if (!entry.isDirectory()) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    int read = zip.read(buffer);
+                    while (read >= 0) {
+                        out.write(buffer, 0, read);
+                        read = zip.read(buffer);
+                    }
+
+                    m_entries.put(entry.getName(), out.toByteArray());
+                }
+
+                entry = zip.getNextEntry();
+            }
+        }
+        finally {
+            zip.close();
+        }
+
+        readSpine();
+    }
+
+    /**
+     * Returns the number of chapters of the archive.
+     * @return - the number of chapters.
+     */
+    int getChaptersCount() {
+        return m_chapters.size();
+    }
+
+    /**
+     * Returns the size in bytes of the input chapter.
+     * @param id - the index of the chapter.
+     * @return - the size of the chapter.
+     */
+    long getChapterSize(int id) {
+        return m_sizes.get(id);
+    }
+
+    /**
+     * Returns the path of the input chapter in the archive. This can be used as
+     * base to resolve the links defined in the chapter.
+     * @param id - the index of the chapter.
+     * @return - the path of the chapter.
+     */
+    String getChapterPath(int id) {
+        return m_chapters.get(id);
+    }
+
+    /**
+     * Used to open the content of the input chapter.
+     * @param id - the index of the chapter.
+     * @return - a stream on the content of the chapter.
+     * @throws IOException - in case the chapter cannot be read.
+     */
+    InputStream openChapter(int id) throws IOException {
+        InputStream stream = openEntry(m_chapters.get(id));
+        if (stream == null) {
+            throw new IOException("Could not find chapter \"" + m_chapters.get(id) + "\" in EPUB archive");
+        }
+
+        return stream;
+    }
+
+    /**
+     * Used to release the resources used by this archive.
+     */
+    void close() {
+        if (m_zip != null) {
+            try {
+                m_zip.close();
+            }
+            catch (IOException e) {
+                // Nothing more to do.
+            }
+
+            m_zip = null;
+        }
+
+        m_entries = null;
+    }
+
+    /**
+     * Used to open the input entry of the archive.
+     * @param name - the name of the entry.
+     * @return - a stream on the content of the entry or `null` if it does not
+     *           exist.
+     * @throws IOException - in case the entry cannot be read.
+     */
+    private InputStream openEntry(String name) throws IOException {
+        if (m_zip != null) {
+            ZipEntry entry = m_zip.getEntry(name);
+            return (entry != null ? m_zip.getInputStream(entry) : null);
+        }
+
+        byte[] data = (m_entries != null ? m_entries.get(name) : null);
+        return (data != null ? new ByteArrayInputStream(data) : null);
+    }
+
+    /**
+     * Used to retrieve the size of the input entry of the archive.
+     * @param name - the name of the entry.
+     * @return - the size of the entry in bytes or `-1` if it is not known.
+     */
+    private long getEntrySize(String name) {
+        if (m_zip != null) {
+            ZipEntry entry = m_zip.getEntry(name);
+            return (entry != null ? entry.getSize() : -1);
+        }
+
+        byte[] data = (m_entries != null ? m_entries.get(name) : null);
+        return (data != null ? data.length : -1);
+    }
+
+    /**
+     * Used to parse the input entry of the archive as a `XML` document.
+     * @param name - the name of the entry.
+     * @return - the parsed document.
+     * @throws IOException - in case the entry does not exist or cannot be parsed.
+     */
+    private Document parseXml(String name) throws IOException {
+        InputStream stream = openEntry(name);
+        if (stream == null) {
+            throw new IOException("Could not find \"" + name + "\" in EPUB archive");
+        }
+
+        try {
+            return Jsoup.parse(stream, null, "", Parser.xmlParser());
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Used to retrieve the name of the input element without its namespace prefix
+     * (if any).
+     * @param element - the element.
+     * @return - the local name of the element.
+     */
+    private static String getLocalName(Element element) {
+        String name = element.tagName();
+        int colon = name.indexOf(':');
+
+        return (colon >= 0 ? name.substring(colon + 1) : name);
+    }
+
+    /**
+     * Used to read the list of chapters of the archive: the `container.xml` file
+     * gives the location of the package document which lists the resources of
+     * the book in its manifest and their reading order in its spine.
+     * @throws IOException - in case the structure of the archive is invalid.
+     */
+    private void readSpine() throws IOException {
+        // Find the package document.
+        String opf = null;
+        for (Element element : parseXml(CONTAINER_PATH).getAllElements()) {
+            if ("rootfile".equals(getLocalName(element)) && element.hasAttr("full-path")) {
+                opf = element.attr("full-path");
+                break;
+            }
+        }
+
+        if (opf == null) {
+            throw new IOException("Could not find package document in EPUB archive");
+        }
+
+        // The paths of the package document are relative to its location.
+        int slash = opf.lastIndexOf('/');
+        String dir = (slash >= 0 ? opf.substring(0, slash + 1) : "");
+
+        HashMap<String, String> manifest = new HashMap<>();
+        ArrayList<String> spine = new ArrayList<>();
+
+        for (Element element : parseXml(opf).getAllElements()) {
+            String name = getLocalName(element);
+
+            if ("item".equals(name)) {
+                String type = element.attr("media-type");
+                for (String t : CHAPTER_TYPES) {
+                    if (t.equals(type)) {
+                        manifest.put(element.attr("id"), resolve(dir, element.attr("href")));
+                        break;
+                    }
+                }
+            }
+            else if ("itemref".equals(name) && !"no".equals(element.attr("linear"))) {
+                spine.add(element.attr("idref"));
+            }
+        }
+
+        m_chapters = new ArrayList<>();
+        m_sizes = new ArrayList<>();
+
+        for (String idref : spine) {
+            String path = manifest.get(idref);
+            if (path == null) {
+                continue;
+            }
+
+            m_chapters.add(path);
+            m_sizes.add(Math.max(1L, getEntrySize(path)));
+        }
+
+        if (m_chapters.isEmpty()) {
+            throw new IOException("Could not find any chapter in EPUB archive");
+        }
+    }
+
+    /**
+     * Used to resolve the input reference relatively to the input directory. The
+     * references are `URL` encoded and might contain a fragment identifier.
+     * @param dir - the directory (ending with a `/` or empty for the root of the
+     *              archive).
+     * @param href - the reference to resolve.
+     * @return - the path of the entry in the archive.
+     */
+    private static String resolve(String dir, String href) {
+        int hash = href.indexOf('#');
+        if (hash >= 0) {
+            href = href.substring(0, hash);
+        }
+
+        // Decode the escaped characters.
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        byte[] bytes = (dir + href).getBytes(Charset.forName("UTF-8"));
+        for (int id = 0 ; id < bytes.length ; ++id) {
+            if (bytes[id] == '%' && id + 2 < bytes.length) {
+                int high = Character.digit(bytes[id + 1], 16);
+                int low = Character.digit(bytes[id + 2], 16);
+
+                if (high >= 0 && low >= 0) {
+                    decoded.write(high * 16 + low);
+                    id += 2;
+                    continue;
+                }
+            }
+
+            decoded.write(bytes[id]);
+        }
+
+        // Normalize the `.` and `..` components.
+        ArrayList<String> components = new ArrayList<>();
+        for (String component : new String(decoded.toByteArray(), Charset.forName("UTF-8")).split("/")) {
+            if (component.isEmpty() || ".".equals(component)) {
+                continue;
+            }
+
+            if ("..".equals(component)) {
+                if (!components.isEmpty()) {
+                    components.remove(components.size() - 1);
+                }
+                continue;
+            }
+
+            components.add(component);
+        }
+
+        StringBuilder path = new StringBuilder();
+        for (String component : components) {
+            if (path.length() > 0) {
+                path.append('/');
+            }
+            path.append(component);
+        }
+
+        return path.toString();
+    }
+}
@@ -0,0 +1,647 @@
+package knoblauch.readdesc.model;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.util.Pair;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+class EpubSourceLoader extends ReadLoader {
+
+    /**
+     * Convenience class allowing to keep the archive opened between several
+     * loading operations. This avoids to read again the central directory and
+     * the spine of the book each time a chapter needs to be loaded.
+     * The session is shared by all the copies of the loader. The archive is
+     * only used by one loading operation at a time but the session can be
+     * closed from the main thread while a loading operation is running: in
+     * this case the archive is closed when the operation is finished.
+     */
+    private static class Session {
+
+        /**
+         * The archive kept opened between the loading operations. It is `null`
+         * in case no archive is available.
+         */
+        private EpubArchive m_archive;
+
+        /**
+         * Whether a loading operation is currently using the archive.
+         */
+        private boolean m_busy;
+
+        /**
+         * Whether the session has been closed while a loading operation was using
+         * the archive.
+         */
+        private boolean m_closeRequested;
+
+        /**
+         * Used by a loading operation to retrieve the archive of this session. It
+         * should be given back through `release` once the operation is done.
+         * @return - the archive or `null` if none is available.
+         */
+        synchronized EpubArchive acquire() {
+            m_busy = true;
+            m_closeRequested = false;
+
+            return m_archive;
+        }
+
+        /**
+         * Used by a loading operation to give back the archive to this session. It
+         * is kept for the next loading operation unless the session has been closed
+         * in the meantime.
+         * @param archive - the archive to keep. Can be `null`.
+         */
+        synchronized void release(EpubArchive archive) {
+            m_busy = false;
+            m_archive = archive;
+
+            if (m_closeRequested) {
+                close();
+            }
+        }
+
+        /**
+         * Used to close the archive of this session. In case it is used by a loading
+         * operation it will be closed when it is given back.
+         */
+        synchronized void close() {
+            if (m_busy) {
+                m_closeRequested = true;
+                return;
+            }
+
+            if (m_archive != null) {
+                m_archive.close();
+                m_archive = null;
+            }
+
+            m_closeRequested = false;
+        }
+    }
+
+    /**
+     * The number of chapters kept loaded on each side of the chapter containing
+     * the current word. These chapters are loaded in the background so that the
+     * reading never has to wait for a chapter to be parsed.
+     */
+    private static final int CHAPTERS_WINDOW = 1;
+
+    /**
+     * The session holding the archive of the book. Shared by all the copies of
+     * this loader.
+     */
+    private Session m_session;
+
+    /**
+     * The number of chapters of the book. This is `0` until the archive is read.
+     */
+    private int m_chaptersCount;
+
+    /**
+     * The cumulated size in bytes of the chapters preceding each chapter. The last
+     * value holds the size of the whole book. This is used to relate the progress
+     * in the book to a chapter without parsing the chapters.
+     */
+    private long[] m_offsets;
+
+    /**
+     * The words of the chapters currently loaded, indexed by the position of the
+     * chapter in the book. Only the chapters around the current word are kept.
+     */
+    private HashMap<Integer, ArrayList<String>> m_chapters;
+
+    /**
+     * The index of the chapter containing the current word.
+     */
+    private int m_chapterID;
+
+    /**
+     * The index of the current word in its chapter.
+     */
+    private int m_wordID;
+
+    /**
+     * The direction in which empty chapters (typically the cover of the book)
+     * should be skipped: `1` to move forward and `-1` to move backwards.
+     */
+    private int m_skipDirection;
+
+    /**
+     * Whether all the chapters after the current one are known to be empty. In
+     * this case the last word of the current chapter is the end of the book.
+     */
+    private boolean m_atTail;
+
+    /**
+     * Create a new `EPUB` source loader from the specified arguments.
+     * @param context - the context to use to access the source.
+     * @param progress - the desired progress to load in priority.
+     */
+    EpubSourceLoader(Context context, float progress) {
+        super(context, progress);
+
+        m_session = new Session();
+
+        m_chaptersCount = 0;
+        m_offsets = new long[] {0L};
+
+        m_chapters = new HashMap<>();
+        m_chapterID = -1;
+        m_wordID = -1;
+        m_skipDirection = 1;
+        m_atTail = false;
+    }
+
+    /**
+     * Used to copy the input loader and create a new object from it. The archive
+     * and the loaded chapters are shared with the input loader.
+     * @param other - the other elements to copy.
+     */
+    EpubSourceLoader(EpubSourceLoader other) {
+        // Call base handler.
+        super(other);
+
+        m_session = other.m_session;
+
+        m_chaptersCount = other.m_chaptersCount;
+        m_offsets = other.m_offsets;
+
+        m_chapters = other.m_chapters;
+        m_chapterID = other.m_chapterID;
+        m_wordID = other.m_wordID;
+        m_skipDirection = other.m_skipDirection;
+        m_atTail = other.m_atTail;
+    }
+
+    /**
+     * Used to retrieve the words of the chapter containing the current word. The
+     * locker is assumed to be acquired.
+     * @return - the words of the current chapter or `null` if it is not loaded.
+     */
+    private ArrayList<String> getCurrentChapter() {
+        return m_chapters.get(m_chapterID);
+    }
+
+    @Override
+    boolean isInvalid() {
+        ArrayList<String> chapter = getCurrentChapter();
+        return chapter == null || m_wordID < 0 || m_wordID >= chapter.size();
+    }
+
+    /**
+     * Used to determine whether some words might be defined in the chapters after
+     * the current one. The locker is assumed to be acquired.
+     * @return - `false` in case all the next chapters are known to be empty.
+     */
+    private boolean hasWordsAfter() {
+        if (m_atTail) {
+            return false;
+        }
+
+        for (int id = m_chapterID + 1 ; id < m_chaptersCount ; ++id) {
+            ArrayList<String> chapter = m_chapters.get(id);
+            if (chapter == null || !chapter.isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    boolean isAtStart() {
+        m_locker.lock();
+        boolean atStart = (!isInvalid() && m_chapterID == 0 && m_wordID == 0);
+        m_locker.unlock();
+
+        return atStart;
+    }
+
+    @Override
+    boolean isAtEnd() {
+        m_locker.lock();
+        boolean atEnd = (!isInvalid() && m_wordID == getCurrentChapter().size() - 1 && !hasWordsAfter());
+        m_locker.unlock();
+
+        return atEnd;
+    }
+
+    @Override
+    float getCompletion() {
+        m_locker.lock();
+
+        // In case the book is not loaded yet, use the desired progress.
+        float progress = m_progress;
+
+        long total = m_offsets[m_offsets.length - 1];
+        if (!isInvalid() && total > 0) {
+            // Interpolate the position of the current word in the bytes of its chapter.
+            long size = m_offsets[m_chapterID + 1] - m_offsets[m_chapterID];
+            float offset = m_offsets[m_chapterID] + 1.0f * size * m_wordID / getCurrentChapter().size();
+            progress = offset / total;
+        }
+
+        m_locker.unlock();
+
+        return progress;
+    }
+
+    @Override
+    void fillWords(int first, String[] words) {
+        // Words are not chained across chapters: a new chapter is a new context.
+        ArrayList<String> chapter = getCurrentChapter();
+
+        for (int id = 0 ; id < words.length ; ++id) {
+            int wordID = m_wordID + first + id;
+            words[id] = (wordID >= 0 && wordID < chapter.size() ? chapter.get(wordID) : "");
+        }
+    }
+
+    @Override
+    Pair<Boolean, Boolean> handleMotion(Action action, int param) {
+        // In case the loader is not in a valid state we can't move.
+        if (isInvalid()) {
+            return new Pair<>(false, false);
+        }
+
+        int sChapterID = m_chapterID;
+        int sWordID = m_wordID;
+
+        switch (action) {
+            case Rewind:
+                m_chapterID = 0;
+                m_wordID = 0;
+                m_atTail = false;
+                break;
+            case NextWord:
+                ++m_wordID;
+                break;
+            case PreviousStep:
+            case PreviousSection:
+                // Chapters are the steps of a book: move to the start of the current
+                // chapter or to the start of the previous one if we're already there.
+                m_atTail = false;
+                if (m_wordID > 0 || m_chapterID == 0) {
+                    m_wordID = 0;
+                }
+                else {
+                    --m_chapterID;
+                    m_wordID = 0;
+                    m_skipDirection = -1;
+                }
+                break;
+            case NextStep:
+            case NextSection:
+                // Move to the start of the next chapter or to the end of the book in
+                // case this is the last chapter.
+                if (m_chapterID < m_chaptersCount - 1) {
+                    ++m_chapterID;
+                    m_wordID = 0;
+                }
+                else {
+                    m_wordID = getCurrentChapter().size() - 1;
+                }
+                break;
+        }
+
+        // Resolve the motion with the chapters currently loaded: some loading might be
+        // needed in case the motion goes beyond them.
+        boolean needsLoading = !consolidate();
+
+        return new Pair<>(sChapterID != m_chapterID || sWordID != m_wordID, needsLoading);
+    }
+
+    /**
+     * Used to resolve the position of the cursor once a motion has been applied:
+     * this handles the words which are beyond the end of their chapter and skips
+     * the chapters without any word. Only the chapters already loaded are used.
+     * The locker is assumed to be acquired.
+     * @return - `true` if the cursor could be resolved and `false` in case some
+     *           chapters need to be loaded first.
+     */
+    private boolean consolidate() {
+        // Each chapter is visited at most once in each direction.
+        for (int step = 0 ; step <= 2 * m_chaptersCount ; ++step) {
+            ArrayList<String> chapter = getCurrentChapter();
+            if (chapter == null) {
+                return false;
+            }
+
+            if (!chapter.isEmpty()) {
+                // In case we came back from the empty chapters at the end of the book
+                // we stay on the last word.
+                if (m_atTail && m_skipDirection < 0) {
+                    m_wordID = chapter.size() - 1;
+                }
+
+                if (m_wordID < chapter.size()) {
+                    m_skipDirection = 1;
+                    return true;
+                }
+
+                // The word is beyond the end of the chapter: move to the next one.
+                if (m_chapterID == m_chaptersCount - 1) {
+                    m_wordID = chapter.size() - 1;
+                    m_skipDirection = 1;
+                    return true;
+                }
+
+                ++m_chapterID;
+                m_wordID = 0;
+                m_skipDirection = 1;
+                continue;
+            }
+
+            // Empty chapters are skipped in the direction of the motion.
+            int next = m_chapterID + m_skipDirection;
+
+            if (next < 0) {
+                // All the chapters are empty.
+                if (m_atTail) {
+                    break;
+                }
+
+                // All the previous chapters are empty: move forward instead.
+                m_skipDirection = 1;
+                next = m_chapterID + 1;
+            }
+
+            if (next >= m_chaptersCount) {
+                // All the next chapters are empty: the end of the book is the last
+                // word of the previous chapters.
+                m_atTail = true;
+                m_skipDirection = -1;
+                next = m_chapterID - 1;
+
+                if (next < 0) {
+                    break;
+                }
+            }
+
+            m_chapterID = next;
+            m_wordID = 0;
+        }
+
+        // The book does not contain any word.
+        m_skipDirection = 1;
+        return true;
+    }
+
+    @Override
+    boolean needsPrefetch() {
+        m_locker.lock();
+
+        // Check whether all the chapters around the current one are loaded.
+        boolean needed = false;
+        if (!isInvalid()) {
+            int first = Math.max(0, m_chapterID - CHAPTERS_WINDOW);
+            int last = Math.min(m_chaptersCount - 1, m_chapterID + CHAPTERS_WINDOW);
+
+            for (int id = first ; id <= last && !needed ; ++id) {
+                needed = !m_chapters.containsKey(id);
+            }
+        }
+
+        m_locker.unlock();
+
+        return needed;
+    }
+
+    @Override
+    void loadFromUri(ContentResolver resolver, Uri uri, float progress) throws IOException {
+        // Try to reuse the archive opened by a previous loading operation: this avoids
+        // to read again the structure of the book.
+        EpubArchive epub = m_session.acquire();
+
+        try {
+            if (epub == null) {
+                epub = openArchive(resolver, uri);
+            }
+
+            loadFromArchive(epub, progress);
+        }
+        catch (IOException e) {
+            // The archive might be in an invalid state: don't keep it.
+            if (epub != null) {
+                epub.close();
+                epub = null;
+            }
+
+            throw e;
+        }
+        finally {
+            m_session.release(epub);
+        }
+    }
+
+    /**
+     * Used to open the archive described by the input `uri`.
+     * @param resolver - the resolver to use to access the book.
+     * @param uri - the `uri` of the book.
+     * @return - the archive of the book.
+     * @throws IOException - in case the archive cannot be opened.
+     */
+    private EpubArchive openArchive(ContentResolver resolver, Uri uri) throws IOException {
+        // We prefer to access the archive through a local copy: this allows to only
+        // read the central directory and the chapters we actually need instead of
+        // loading the whole archive in memory.
+        ReadCache cache = getCache();
+        File copy = (cache != null ? cache.getSourceCopy(resolver, uri) : null);
+
+        if (copy != null) {
+            return new EpubArchive(copy);
+        }
+
+        // We couldn't create the copy (typically because there's not enough space
+        // available): fall back to reading the archive from the stream.
+        return new EpubArchive(resolver.openInputStream(uri));
+    }
+
+    @Override
+    void loadFromSource(InputStream stream, float progress) throws IOException {
+        // The whole archive needs to be read in memory. As we don't know whether the
+        // stream corresponds to the archive of the session we don't keep it after the
+        // loading operation.
+        EpubArchive epub = new EpubArchive(stream);
+
+        try {
+            loadFromArchive(epub, progress);
+        }
+        finally {
+            epub.close();
+        }
+    }
+
+    @Override
+    void release() {
+        m_session.close();
+    }
+
+    /**
+     * Used to load the chapters around the current word from the input archive. In
+     * case no word is selected yet the cursor is positioned at the input progress:
+     * the size of the chapters is used to find the corresponding chapter so that no
+     * other chapter needs to be parsed.
+     * @param epub - the archive of the book.
+     * @param progress - the progress to reach in case the cursor is not defined.
+     * @throws IOException - in case a chapter cannot be read.
+     */
+    private void loadFromArchive(EpubArchive epub, float progress) throws IOException {
+        m_locker.lock();
+
+        // Register the layout of the book in case it's not already done.
+        if (m_chaptersCount == 0) {
+            int count = epub.getChaptersCount();
+            long[] offsets = new long[count + 1];
+            for (int id = 0 ; id < count ; ++id) {
+                offsets[id + 1] = offsets[id] + epub.getChapterSize(id);
+            }
+
+            m_chaptersCount = count;
+            m_offsets = offsets;
+        }
+
+        // Position the cursor in case it's not already done.
+        float cProgress = Math.min(1.0f, Math.max(0.0f, progress));
+        float target = cProgress * m_offsets[m_chaptersCount];
+
+        boolean initial = (m_chapterID < 0);
+        if (initial) {
+            m_chapterID = 0;
+            while (m_chapterID < m_chaptersCount - 1 && m_offsets[m_chapterID + 1] <= target) {
+                ++m_chapterID;
+            }
+        }
+
+        m_locker.unlock();
+
+        // Load chapters until the position of the cursor can be resolved. This usually
+        // takes a single iteration except when several empty chapters are skipped.
+        boolean resolved = false;
+        while (!resolved && !isCancelled()) {
+            m_locker.lock();
+            int current = m_chapterID;
+            m_locker.unlock();
+
+            HashMap<Integer, ArrayList<String>> loaded = new HashMap<>();
+            int first = Math.max(0, current - CHAPTERS_WINDOW);
+            int last = Math.min(m_chaptersCount - 1, current + CHAPTERS_WINDOW);
+
+            for (int id = first ; id <= last ; ++id) {
+                m_locker.lock();
+                boolean exists = m_chapters.containsKey(id);
+                m_locker.unlock();
+
+                if (!exists) {
+                    loaded.put(id, parseChapter(epub, id));
+                }
+            }
+
+            m_locker.lock();
+
+            m_chapters.putAll(loaded);
+
+            if (initial && m_wordID < 0) {
+                // Interpolate the position of the word in the chapter from the progress.
+                ArrayList<String> chapter = getCurrentChapter();
+                long size = m_offsets[m_chapterID + 1] - m_offsets[m_chapterID];
+                float ratio = (target - m_offsets[m_chapterID]) / Math.max(1L, size);
+                m_wordID = Math.max(0, Math.round(ratio * chapter.size()));
+            }
+
+            resolved = consolidate();
+
+            // Discard the chapters which are far from the current word.
+            Iterator<Integer> it = m_chapters.keySet().iterator();
+            while (it.hasNext()) {
+                int id = it.next();
+                if (id < m_chapterID - CHAPTERS_WINDOW || id > m_chapterID + CHAPTERS_WINDOW) {
+                    it.remove();
+                }
+            }
+
+            m_locker.unlock();
+        }
+    }
+
+    /**
+     * Used to parse the input chapter of the book and to extract its words. The
+     * chapters are `XHTML` documents which are tokenized like web pages.
+     * @param epub - the archive of the book.
+     * @param id - the index of the chapter.
+     * @return - the words of the chapter.
+     * @throws IOException - in case the chapter cannot be read.
+     */
+    private static ArrayList<String> parseChapter(EpubArchive epub, int id) throws IOException {
+        final ArrayList<String> words = new ArrayList<>();
+
+        InputStream stream = epub.openChapter(id);
+        Document doc;
+        try {
+            doc = Jsoup.parse(stream, null, epub.getChapterPath(id));
+        }
+        catch (Exception e) {
+            throw new IOException("Could not parse EPUB chapter: \"" + e.toString() + "\"");
+        }
+        finally {
+            stream.close();
+        }
+
+        Element body = doc.body();
+        if (body == null) {
+            return words;
+        }
+
+        final WordTokenizer tokenizer = new WordTokenizer(words);
+
+        // The chapter is split in words just like a web page: words only break at
+        // the limits of the block-level elements.
+        HtmlContentExtractor.traverse(body, new HtmlStreamParser.Handler() {
+            @Override
+            public void onText(String text) {
+                tokenizer.append(text);
+            }
+
+            @Override
+            public void onBreak() {
+                tokenizer.breakWord();
+            }
+
+            @Override
+            public void onTitle(int level) {
+                // No op: nothing to be done here.
+            }
+        });
+
+        tokenizer.finish();
+
+        return words;
+    }
+
+    @Override
+    public boolean loadFromCache(DataInputStream in, float progress) {
+        // Chapters are parsed quickly enough around the current word not to need
+        // a cache.
+        return false;
+    }
+
+    @Override
+    public void saveToCache(DataOutputStream out) {
+        // No op: nothing to be done here.
+    }
+}
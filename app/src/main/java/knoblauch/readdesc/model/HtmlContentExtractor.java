@@ -0,0 +1,460 @@
+package knoblauch.readdesc.model;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+class HtmlContentExtractor {
+
+    /**
+     * The list of elements which never contain any content relevant for the
+     * reading: their whole subtree is ignored both when looking for the main
+     * content of a document and when extracting its words.
+     */
+    private static final String[] PRUNED_ELEMENTS = {
+            "script",
+            "style",
+            "noscript",
+            "template",
+            "nav",
+            "aside",
+            "footer",
+            "form",
+            "button",
+            "select",
+            "iframe",
+            "svg"
+    };
+
+    /**
+     * The list of elements which are rendered as separate blocks of text (or
+     * which break the line for `br`). Words never continue across the limits
+     * of these elements while the text of inline elements (such as `b` or `a`)
+     * is glued to the surrounding text.
+     */
+    private static final String[] BLOCK_ELEMENTS = {
+            "address",
+            "article",
+            "blockquote",
+            "br",
+            "caption",
+            "dd",
+            "details",
+            "dialog",
+            "div",
+            "dl",
+            "dt",
+            "fieldset",
+            "figcaption",
+            "figure",
+            "h1",
+            "h2",
+            "h3",
+            "h4",
+            "h5",
+            "h6",
+            "header",
+            "hgroup",
+            "hr",
+            "legend",
+            "li",
+            "main",
+            "ol",
+            "p",
+            "pre",
+            "section",
+            "summary",
+            "table",
+            "tbody",
+            "td",
+            "tfoot",
+            "th",
+            "thead",
+            "tr",
+            "ul"
+    };
+
+    /**
+     * The list of elements which can hold the main content of a document. The
+     * text found in the other elements is attributed to the closest of these
+     * elements when scoring the document.
+     */
+    private static final String[] CONTAINER_ELEMENTS = {
+            "body",
+            "main",
+            "article",
+            "section",
+            "div",
+            "td"
+    };
+
+    /**
+     * The minimum score (roughly the number of characters which do not belong
+     * to a link) that an element should reach to be considered as the main
+     * content of the document. Below this, the document is considered to be
+     * too short or too fragmented to be stripped and is kept entirely.
+     */
+    private static final int MIN_CONTENT_SCORE = 250;
+
+    /**
+     * The weight of the scores of the children containers in the score of
+     * their parent. This favors an element holding several sections of an
+     * article over each one of the sections alone, while still preferring a
+     * single article over its wrappers.
+     */
+    private static final float CHILDREN_WEIGHT = 0.5f;
+
+    /**
+     * When the main content is found, its parents are also kept in case they
+     * don't contain much more text than the content itself. This allows to
+     * keep the title of an article which is often defined alongside the body
+     * of the article rather than in it.
+     * Note that the content is never expanded up to the body of the document.
+     */
+    private static final float PARENT_EXPANSION_RATIO = 1.1f;
+
+    /**
+     * Convenience class to hold the statistics computed for a container while
+     * traversing the document.
+     */
+    private static class Stats {
+        /**
+         * The container element.
+         */
+        Element element;
+
+        /**
+         * The number of characters of text in the subtree of the element.
+         */
+        int text;
+
+        /**
+         * The number of characters of text in the subtree of the element and
+         * which belong to a link.
+         */
+        int link;
+
+        /**
+         * The number of characters of text attributed to this element, that
+         * is not belonging to another container within the subtree.
+         */
+        int own;
+
+        /**
+         * The sum of the scores of the children containers of the element.
+         */
+        float children;
+
+        /**
+         * Create new statistics for the input element.
+         * @param element - the container element.
+         */
+        Stats(Element element) {
+            this.element = element;
+        }
+    }
+
+    /**
+     * The element holding the main content of the document analyzed by this
+     * extractor.
+     */
+    private Element m_content;
+
+    /**
+     * The number of characters of text (excluding spaces) contained in the
+     * main content of the document.
+     */
+    private int m_textLength;
+
+    /**
+     * Create a new extractor and analyze the input body of a document to find
+     * its main content (see `findContent`).
+     * @param body - the body of the document.
+     */
+    HtmlContentExtractor(Element body) {
+        m_content = body;
+        m_textLength = 0;
+
+        findContent(body);
+    }
+
+    /**
+     * Returns the element holding the main content of the document. In case
+     * no element stands out, this is the body of the document.
+     * @return - the element holding the main content of the document.
+     */
+    Element getContent() {
+        return m_content;
+    }
+
+    /**
+     * Returns the number of characters of text contained in the main content
+     * of the document, as computed by `countCharacters`. This can be used to
+     * estimate the fraction of the content already processed.
+     * @return - the number of characters of the main content.
+     */
+    int getTextLength() {
+        return m_textLength;
+    }
+
+    /**
+     * Used to determine whether the input node should be ignored along with
+     * all its children.
+     * @param node - the node to check.
+     * @return - `true` if the node does not contain any relevant content.
+     */
+    static boolean isPruned(Node node) {
+        return node instanceof Element && isPrunedTag(((Element)node).tagName());
+    }
+
+    /**
+     * Used to determine whether the input tag describes an element that should
+     * be ignored along with all its children.
+     * @param name - the name of the tag (in lower case).
+     * @return - `true` if the elements with this tag should be ignored.
+     */
+    static boolean isPrunedTag(String name) {
+        return contains(PRUNED_ELEMENTS, name);
+    }
+
+    /**
+     * Used to determine whether the input tag describes an element which is
+     * rendered as a separate block of text (see `BLOCK_ELEMENTS`).
+     * @param name - the name of the tag (in lower case).
+     * @return - `true` if the words should be closed at the limits of the
+     *           elements with this tag.
+     */
+    static boolean isBlockTag(String name) {
+        return contains(BLOCK_ELEMENTS, name);
+    }
+
+    /**
+     * Used to determine the level of the title described by the input tag.
+     * @param name - the name of the tag (in lower case).
+     * @return - the level of the title (from `1` for `h1` to `6` for `h6`) or
+     *           `-1` in case the tag does not describe a title.
+     */
+    static int getTitleLevel(String name) {
+        if (name.length() != 2 || name.charAt(0) != 'h' || name.charAt(1) < '1' || name.charAt(1) > '6') {
+            return -1;
+        }
+
+        return name.charAt(1) - '0';
+    }
+
+    /**
+     * Used to walk the input element and to report its content to the handler
+     * just like the `HtmlStreamParser` does for the documents which are not
+     * built in memory: the text is provided as is, a break is reported at the
+     * limits of the block-level elements (see `isBlockTag`) and a title at the
+     * start of the `h1` to `h6` elements. The pruned elements are skipped.
+     * The traversal is iterative so that deeply nested documents can't exhaust
+     * the stack of the calling thread.
+     * @param root - the element to walk.
+     * @param handler - the handler notified of the content of the element.
+     */
+    static void traverse(Element root, final HtmlStreamParser.Handler handler) {
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (isPruned(node)) {
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+
+                if (node instanceof TextNode) {
+                    handler.onText(((TextNode)node).text());
+                }
+                else if (node instanceof Element) {
+                    String name = ((Element)node).tagName();
+
+                    // Words don't continue across the limits of a block. The title
+                    // starts with the next word as the tag does not define any text
+                    // by itself.
+                    if (isBlockTag(name)) {
+                        handler.onBreak();
+                    }
+
+                    int level = getTitleLevel(name);
+                    if (level > 0) {
+                        handler.onTitle(level);
+                    }
+                }
+
+                return FilterResult.CONTINUE;
+            }
+
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                if (node instanceof Element && isBlockTag(((Element)node).tagName())) {
+                    handler.onBreak();
+                }
+
+                return FilterResult.CONTINUE;
+            }
+        }, root);
+    }
+
+    /**
+     * Used to search for the input name in the list.
+     * @param names - the list of names.
+     * @param name - the name to search for.
+     * @return - `true` if the name belongs to the list.
+     */
+    private static boolean contains(String[] names, String name) {
+        for (String n : names) {
+            if (n.equals(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Used to count the number of characters of the input text which are not
+     * spaces. This prevents the indentation of the document to be considered
+     * as some content.
+     * @param text - the text to analyze.
+     * @return - the number of characters of the text which are not spaces.
+     */
+    static int countCharacters(String text) {
+        int count = 0;
+        for (int id = 0 ; id < text.length() ; ++id) {
+            if (!Character.isWhitespace(text.charAt(id))) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Used to find the element holding the main content of the document. Each
+     * container is scored from the amount of text directly attributed to it
+     * (i.e. not through another container) weighted by the density of links
+     * in its subtree: navigation menus and lists of related articles are made
+     * mostly of links while the body of an article is mostly made of text. A
+     * part of the scores of the children containers is added to this.
+     * The subtrees which are known not to hold any content are not visited.
+     * In case no element stands out, the input body is kept.
+     * The result is saved in the `m_content` and `m_textLength` attributes.
+     * @param body - the body of the document.
+     */
+    private void findContent(Element body) {
+        final ArrayList<Stats> stack = new ArrayList<>();
+        final IdentityHashMap<Element, Stats> containers = new IdentityHashMap<>();
+        final Stats[] best = new Stats[1];
+        final float[] bestScore = new float[] {0.0f};
+
+        NodeTraversor.filter(new NodeFilter() {
+            /**
+             * The number of links enclosing the current node.
+             */
+            private int m_linkDepth = 0;
+
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (isPruned(node)) {
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+
+                if (node instanceof TextNode) {
+                    // Attribute the text to the closest container.
+                    if (!stack.isEmpty()) {
+                        int count = countCharacters(((TextNode)node).getWholeText());
+                        Stats top = stack.get(stack.size() - 1);
+                        top.text += count;
+                        top.own += count;
+                        if (m_linkDepth > 0) {
+                            top.link += count;
+                        }
+                    }
+
+                    return FilterResult.CONTINUE;
+                }
+
+                if (node instanceof Element) {
+                    String name = ((Element)node).tagName();
+                    if ("a".equals(name)) {
+                        ++m_linkDepth;
+                    }
+                    else if (contains(CONTAINER_ELEMENTS, name)) {
+                        stack.add(new Stats((Element)node));
+                    }
+                }
+
+                return FilterResult.CONTINUE;
+            }
+
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                if (!(node instanceof Element)) {
+                    return FilterResult.CONTINUE;
+                }
+
+                if ("a".equals(((Element)node).tagName())) {
+                    --m_linkDepth;
+                    return FilterResult.CONTINUE;
+                }
+
+                if (stack.isEmpty() || stack.get(stack.size() - 1).element != node) {
+                    return FilterResult.CONTINUE;
+                }
+
+                // The container is complete: score it and propagate its statistics
+                // to its parent container.
+                Stats stats = stack.remove(stack.size() - 1);
+                containers.put(stats.element, stats);
+
+                float linkDensity = (stats.text > 0 ? 1.0f * stats.link / stats.text : 0.0f);
+                float score = stats.own * (1.0f - linkDensity) + CHILDREN_WEIGHT * stats.children;
+                if (score > bestScore[0]) {
+                    bestScore[0] = score;
+                    best[0] = stats;
+                }
+
+                if (!stack.isEmpty()) {
+                    Stats parent = stack.get(stack.size() - 1);
+                    parent.text += stats.text;
+                    parent.link += stats.link;
+                    parent.children += score;
+                }
+
+                return FilterResult.CONTINUE;
+            }
+        }, body);
+
+        // Keep the whole body in case no element is a clear candidate.
+        Stats content = containers.get(body);
+        if (best[0] != null && bestScore[0] >= MIN_CONTENT_SCORE) {
+            content = best[0];
+        }
+
+        if (content == null) {
+            return;
+        }
+
+        // Expand the content to its parents as long as they don't add much text.
+        Element parent = content.element.parent();
+        while (parent != null && parent != body) {
+            Stats stats = containers.get(parent);
+            if (stats != null) {
+                if (stats.text - stats.link > PARENT_EXPANSION_RATIO * (content.text - content.link)) {
+                    break;
+                }
+
+                content = stats;
+            }
+
+            parent = parent.parent();
+        }
+
+        m_content = content.element;
+        m_textLength = content.text;
+    }
+}
@@ -1,56 +1,54 @@
 package knoblauch.readdesc.model;
 
+import android.content.ContentResolver;
 import android.content.Context;
+import android.net.Uri;
 import android.util.Log;
 import android.util.Pair;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.nodes.Node;
-import org.jsoup.nodes.TextNode;
-import org.jsoup.parser.Tag;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 
 class HtmlSourceLoader extends ReadLoader {
 
     /**
-     * A common regular expression allowing to split a string on successive space
-     * characters.
+     * The size in bytes above which the `HTML` source is analyzed in streaming mode
+     * rather than by building the whole document with `jsoup`. Building the tree of
+     * the document costs several times the size of the source in memory which is a
+     * concern for large pages.
      */
-    private static final String SPACE_PATTERN = "\\s+";
+    private static final long STREAMING_THRESHOLD = 2 * 1024 * 1024;
 
     /**
-     * Define the list of separators that are used as a way to mark the new line
-     * and other separations in the `HTML` document but that we don't want to use
-     * while in reading mode.
-     * A word composed of only this character will be discarded.
+     * The charset used to decode the source in streaming mode when no charset can be
+     * detected from the content of the document. This is also what `jsoup` assumes.
      */
-    private static final String SEPARATOR = "*";
+    private static final String STREAMING_CHARSET = "UTF-8";
 
     /**
-     * Define the list of punctuations symbols that will be collapsed during the
-     * sanitize operation taking place when extracting the words from the `HTML`
-     * document.
+     * The number of bytes at the beginning of the source which are analyzed to detect
+     * the charset of the document in streaming mode. Just like for `jsoup` we expect
+     * the `meta` tag declaring the charset to appear early in the document.
      */
-    private static final String PUNCTUATION = ",?;.:!()°\"'";
+    private static final int CHARSET_SNIFF_LENGTH = 5 * 1024;
 
     /**
-     * Define the list of currencies that will be collapsed during a sanitize
-     * operation to be linked to their associated numerical value.
+     * The number of words that should be available after the word matching the progress
+     * requested for the loading before the words are published to the listeners. This
+     * allows to start the reading while the rest of the document is being parsed.
      */
-    private static final String CURRENCIES = "€$£";
-
-    /**
-     * A definition of all the titles tag that can be defined in a `HTML` document.
-     * This helps identify the titles in the document and build the navigation map
-     * when loading the document.
-     */
-    private static final String TITLES = "h1h2h3h4h5h6";
+    private static final int PUBLISH_LOOKAHEAD = 200;
 
     /**
      * A string representing the path to the data source for this loader. This is
@@ -68,8 +66,19 @@ class HtmlSourceLoader extends ReadLoader {
      * also grouped semantically so as to make the reading process easier (like in
      * case of a single punctuation character, we will try to group it with the
      * previous word, etc.
+     * The words are kept in a compact store rather than as individual strings: each
+     * word is a token of a vocabulary shared by the whole read and a `String` is
+     * only created for the words actually displayed.
+     * The loading thread publishes the words by batches: the accessors read them
+     * through the last published snapshot which is never modified afterwards.
      */
-    private ArrayList<String> m_words;
+    private WordStore m_words;
+
+    /**
+     * The tokenizer splitting the text of the document into words. It appends
+     * the words directly to `m_words`.
+     */
+    private WordTokenizer m_tokenizer;
 
     /**
      * Defines the word index currently pointed at by this parser. This is linked
@@ -79,20 +88,32 @@ class HtmlSourceLoader extends ReadLoader {
     private int m_wordID;
 
     /**
-     * Contains the list of the position of titles in the document and in the `m_words`
-     * index. The list is sequentially sorted (meaning that iterating from `0` to the
-     * size of the array will yield increasing values) and represent the list of titles
-     * and their associated position. This allows to move to the next title when asked.
+     * Contains the position of the titles of the document in the `m_words` list along
+     * with their level (`1` for a `h1` title, etc.). This allows to move to the next or
+     * previous section when asked and to find the section of any word with a binary
+     * search rather than by scanning the list of titles.
+     */
+    private SectionIndex m_sections;
+
+    /**
+     * Whether the whole document has been loaded. Until this is the case, the words
+     * can be published to the listeners while some other words are still appended
+     * to the `m_words` list by the loading thread.
      */
-    private ArrayList<Integer> m_titlesID;
+    private volatile boolean m_complete;
 
     /**
-     * Holds the current index of the last title we passed. This means that the current
-     * word index is *at least* greater than the index of this title. This value is used
-     * as a base reference point when searching to move to the next/previous section to
-     * avoid searching the entire `m_titlesID` array.
+     * An estimation of the total number of words of the document. It is updated as
+     * the document is parsed from the fraction of the document already processed
+     * and is equal to the size of `m_words` once the document is complete.
      */
-    private int m_currentTitleID;
+    private volatile int m_estimatedWordsCount;
+
+    /**
+     * Whether the words have already been published to the listeners during the
+     * current loading operation. Only used by the loading thread.
+     */
+    private boolean m_published;
 
     /**
      * Create a new `HTML` source loader from the specified arguments. Will call
@@ -115,11 +136,15 @@ class HtmlSourceLoader extends ReadLoader {
         m_base = base;
 
         // Define words cursor variables.
-        m_words = new ArrayList<>();
+        m_words = new WordStore(new Vocabulary());
+        m_tokenizer = new WordTokenizer(m_words);
         m_wordID = -1;
 
-        m_titlesID = new ArrayList<>();
-        m_currentTitleID = -1;
+        m_sections = new SectionIndex();
+
+        m_complete = false;
+        m_estimatedWordsCount = 0;
+        m_published = false;
     }
 
     /**
@@ -136,126 +161,50 @@ class HtmlSourceLoader extends ReadLoader {
         m_base = other.m_base;
 
         m_words = other.m_words;
+        m_tokenizer = other.m_tokenizer;
         m_wordID = other.m_wordID;
 
-        m_titlesID = other.m_titlesID;
-        m_currentTitleID = other.m_currentTitleID;
+        m_sections = other.m_sections;
+
+        m_complete = other.m_complete;
+        m_estimatedWordsCount = other.m_estimatedWordsCount;
+        m_published = false;
     }
 
     /**
-     * Used internally to sanitize an input string assumed to represent a string of
-     * space separated words. The output vector will contain only words that are
-     * considered valid according to the internal semantic (i.e. no empty words, no
-     * words composed only of spaces, no separators, etc.).
-     * The resulting list can be added to a parser for usage in reading mode.
-     * @param text - the input string representing the words to sanitize.
-     * @return - a vector of words representing the tokenized version of the input
-     *           string.
+     * Used to register the words defined in the input text. The text is fed to the
+     * tokenizer of the document as a whole: its last word is kept open so that it
+     * is concatenated with the text that follows it in case it is part of the same
+     * block (for example with `<b>Hel</b>lo`).
+     * @param text - the text to register.
      */
-    private static ArrayList<String> sanitizeWords(String text) {
-        ArrayList<String> words = new ArrayList<>();
+    private void registerWords(String text) {
+        m_tokenizer.append(text);
 
-        // Discard obviously trivial cases.
-        if (text == null || text.isEmpty()) {
-            return words;
-        }
-
-        // Trim the space characters from the input string.
-        text = text.trim();
-
-        // Split the input text based on space characters.
-        String[] tokens = text.split(SPACE_PATTERN);
-
-        // Interpret each word.
-        for (String word : tokens) {
-            // In case the word is empty or invalid, do not register it.
-            if (word == null || word.isEmpty()) {
-                continue;
-            }
-
-            // Trash words composed only of separators.
-            if (word.length() == 1 && SEPARATOR.contains(word)) {
-                continue;
-            }
-
-            // Add this word to the internal list.
-            words.add(word);
-        }
-
-        return words;
+        // Make the words visible to the readers of the loader.
+        m_words.publish();
     }
 
     /**
-     * Handle the parsing of a `HTML` node retrieved while parsing the source. It
-     * should be either parsed to extract some text or analyzed to determine some
-     * properties about it (like whether it is a title or not).
-     * The input arguments allow to perform some recursion easily by propagating
-     * the current words count.
-     * @param node - the node to analyze. This is the current element parsed by
-     *               the `HTML` reading process.
-     * @return - the index of the last word parsed from the input node. This can
-     *           be used to chain calls to this method to parse several nodes.
+     * Used to close the word being built when a block-level element starts or ends
+     * (see `HtmlContentExtractor.isBlockTag`): the text that follows starts a new
+     * word.
      */
-    private int handleHTMLElementParsing(Node node, int currentWordID) {
-        // Determine whether we have an element or a text node or something else. For now
-        // we only handle these two cases.
-        if (node instanceof TextNode) {
-            // Update the word index based on the text defined in this node.
-            TextNode textNode = (TextNode)node;
-            ArrayList<String> words = sanitizeWords(textNode.text());
-            currentWordID += words.size();
-
-            // Register the words that we created from this text node.
-            if (!words.isEmpty()) {
-                // We need to take care of punctuation and currencies symbols which might
-                // be described as standalone characters: indeed we will try to collapse
-                // them with the previous word if possible.
-                for (String word : words) {
-                    // If the current word is a single punctuation or currency character,
-                    // attempt to collapse it to the previous word.
-                    if (!m_words.isEmpty() && word.length() == 1 && (PUNCTUATION.contains(word) || CURRENCIES.contains(word))) {
-                        String c = m_words.get(m_words.size() - 1).concat(word);
-                        m_words.set(m_words.size() - 1, c);
-
-                        continue;
-                    }
-
-                    // Add the word as a regular one.
-                    m_words.add(word);
-                }
-            }
-
-            return currentWordID;
-        }
-
-        // Handle the case of a `Element` node.
-        if (node instanceof Element) {
-            Element element = (Element) node;
-
-            // Retrieve the tag for this element.
-            Tag tag = element.tag();
-
-            // Check whether this tag corresponds to a header.
-            if (TITLES.contains(tag.getName())) {
-                // Register this title index. We don't want to update the `currentWordID` as
-                // we consider it will be updated through the parsing of the children of this
-                // node: otherwise the header tag does not define any text by itself.
-                // Note that we will also check whether this title is at least one word ahead
-                // of the previous one: this will avoid situations where several titles with
-                // no content are concatenated (and thus useless).
-                if (m_titlesID.isEmpty() || m_titlesID.get(m_titlesID.size() - 1) < currentWordID) {
-                    m_titlesID.add(currentWordID);
-                }
-            }
-
-            // Retrieve the children of this elements and repeat the process.
-            List<Node> nodes = element.childNodes();
-            for (Node child : nodes) {
-                currentWordID = handleHTMLElementParsing(child, currentWordID);
-            }
-        }
+    private void closeWord() {
+        m_tokenizer.breakWord();
+        m_words.publish();
+    }
 
-        return currentWordID;
+    /**
+     * Used to register a title starting at the input word index. The section index
+     * makes sure that this title is at least one word ahead of the previous one: this
+     * will avoid situations where several titles with no content are concatenated (and
+     * thus useless).
+     * @param wordID - the index of the first word of the title.
+     * @param level - the level of the title (`1` for a `h1` title, etc.).
+     */
+    private void registerTitle(int wordID, int level) {
+        m_sections.add(wordID, level);
     }
 
     /**
@@ -264,9 +213,12 @@ class HtmlSourceLoader extends ReadLoader {
      * navigation when the user requests to move to the next/previous section.
      * The goal is to find all the elements having the `header` tag in the input document so
      * as to provide the most detailed navigation.
+     * The words are published to the listeners as soon as the requested progress can be
+     * reached (see `handleProgress`).
      * @param body - the body of the document associated to this source.
+     * @param progress - the progress requested for the loading operation.
      */
-    private void generateTitleCheckpoints(Element body) {
+    private void generateTitleCheckpoints(Element body, final float progress) {
         // Handle trivial cases where the body does not contain anything or is invalid. We
         // used this link:
         // https://stackoverflow.com/questions/7036332/jsoup-select-and-iterate-all-elements
@@ -280,18 +232,122 @@ class HtmlSourceLoader extends ReadLoader {
             return;
         }
 
-        List<Node> nodes = body.childNodes();
-        if (nodes == null || nodes.isEmpty()) {
+        // Strip the boilerplate of the document (menus, banners, etc.) by only keeping
+        // the element holding its main content.
+        HtmlContentExtractor extractor = new HtmlContentExtractor(body);
+        final float length = extractor.getTextLength();
+
+        // Traverse the elements described in the content and build the list of titles
+        // registered in it. The content is reported just like in streaming mode so the
+        // words are split in the same way.
+        HtmlContentExtractor.traverse(extractor.getContent(), new HtmlStreamParser.Handler() {
+            /**
+             * The number of characters of text processed so far in the traversal.
+             */
+            private int m_processed = 0;
+
+            @Override
+            public void onText(String text) {
+                m_locker.lock();
+                try {
+                    registerWords(text);
+                }
+                finally {
+                    m_locker.unlock();
+                }
+
+                m_processed += HtmlContentExtractor.countCharacters(text);
+                if (length > 0.0f) {
+                    handleProgress(m_processed / length, progress);
+                }
+            }
+
+            @Override
+            public void onBreak() {
+                m_locker.lock();
+                closeWord();
+                m_locker.unlock();
+            }
+
+            @Override
+            public void onTitle(int level) {
+                // The title starts with the next word to be registered.
+                m_locker.lock();
+                registerTitle(m_words.size(), level);
+                m_locker.unlock();
+            }
+        });
+    }
+
+    /**
+     * Used during the loading of the document to update the estimated number of words
+     * in the document and to publish the words to the listeners as soon as the words
+     * around the requested progress are available. The reading can then start while
+     * the rest of the document is still being loaded.
+     * @param processed - the fraction of the document processed so far.
+     * @param progress - the progress requested for the loading operation.
+     */
+    private void handleProgress(float processed, float progress) {
+        int count = m_words.size();
+        if (processed <= 0.0f || count == 0) {
+            return;
+        }
+
+        // Extrapolate the total number of words from what has been processed so far.
+        int estimate = Math.max(count, Math.round(count / Math.min(1.0f, processed)));
+        m_estimatedWordsCount = estimate;
+
+        if (m_published) {
             return;
         }
 
-        // Traverse the list of elements described in the body and build the list of titles
-        // registered in it. We will always add a first title (virtual if needed) located at
-        // the first position in the read to allow for easy handling of the previous section.
-        int titleWordID = 0;
-        for (Node node : nodes) {
-            titleWordID = handleHTMLElementParsing(node, titleWordID);
+        // Wait until enough words are available after the requested progress.
+        float cProgress = Math.min(1.0f, Math.max(0.0f, progress));
+        int target = (int)Math.floor(cProgress * estimate);
+        if (count <= target + PUBLISH_LOOKAHEAD) {
+            return;
         }
+
+        m_locker.lock();
+        setupCursorAt(target);
+        m_locker.unlock();
+
+        m_published = true;
+        publishReady();
+    }
+
+    /**
+     * Used once the whole document has been loaded to position the cursor in case it
+     * was not done while loading and to mark the document as complete.
+     * @param progress - the progress requested for the loading operation.
+     */
+    private void completeLoading(float progress) {
+        m_locker.lock();
+
+        // Register the symbols still waiting for a word.
+        m_tokenizer.finish();
+        m_words.publish();
+
+        if (!m_published) {
+            setupCursor(progress);
+        }
+
+        m_estimatedWordsCount = m_words.size();
+        m_complete = true;
+
+        m_locker.unlock();
+
+        m_published = false;
+    }
+
+    /**
+     * Returns the number of words of the document visible to the readers of this
+     * loader: the words registered by the loading thread are only visible once
+     * published (see `WordStore.publish`).
+     * @return - the number of words that can be displayed.
+     */
+    private int getWordsCount() {
+        return m_words.getSnapshot().size();
     }
 
     /**
@@ -300,7 +356,7 @@ class HtmlSourceLoader extends ReadLoader {
      * @return - `true` if this object defines some words and `false` otherwise.
      */
     private boolean hasWords() {
-        return m_words != null && !m_words.isEmpty();
+        return m_words != null && getWordsCount() > 0;
     }
 
     /**
@@ -311,27 +367,34 @@ class HtmlSourceLoader extends ReadLoader {
      * @return - `true` if the word index is consistent with the `m_words` data.
      */
     private boolean isValidWord() {
-        return hasWords() && m_wordID >= 0 && m_wordID < m_words.size();
+        return hasWords() && m_wordID >= 0 && m_wordID < getWordsCount();
     }
 
     /**
      * Used to determine whether the `HTML` source of this document defines some
-     * titles. This can be used before trying to access the `m_currentTitleID`.
+     * titles.
      * @return - `true` if this document defines at least one title.
      */
     private boolean hasTitles() {
-        return m_titlesID != null && !m_titlesID.isEmpty();
+        return m_sections != null && !m_sections.isEmpty();
     }
 
     /**
-     * Used internally to determine whether the current title is consistent in
-     * regard to the titles parsed from the `HTML` source. This method does not
-     * try to acquire the internal lock on this object so it is safe to use it
-     * internally.
-     * @return - `true` if it is safe to access the current title.
+     * Used to determine the deepest level of the sections to consider for the
+     * input motion. Regular steps consider all the sections while the section
+     * motions only consider the sections up to the requested depth below the
+     * top most sections of the document.
+     * @param action - the motion to perform.
+     * @param depth - the depth requested for a section motion: `1` designates
+     *                the top most sections of the document.
+     * @return - the deepest level of the sections to consider.
      */
-    private boolean isValidTitle() {
-        return hasTitles() && m_currentTitleID >= 0 && m_currentTitleID < m_titlesID.size();
+    private int getSectionLevel(Action action, int depth) {
+        if (action == Action.PreviousSection || action == Action.NextSection) {
+            return m_sections.getTopLevel() + Math.max(1, depth) - 1;
+        }
+
+        return SectionIndex.DEEPEST_LEVEL;
     }
 
     @Override
@@ -351,7 +414,7 @@ class HtmlSourceLoader extends ReadLoader {
     @Override
     boolean isAtEnd() {
         m_locker.lock();
-        boolean atEnd = (isValidWord() && m_wordID == m_words.size() - 1);
+        boolean atEnd = (isValidWord() && m_complete && m_wordID == getWordsCount() - 1);
         m_locker.unlock();
 
         return atEnd;
@@ -371,8 +434,14 @@ class HtmlSourceLoader extends ReadLoader {
         }
         else {
             // Some data is available in the parser: compare the current word index
-            // to the total words count.
-            progress = 1.0f * m_wordID / m_words.size();
+            // to the total words count. While the document is still being loaded we
+            // rely on the estimation of this count.
+            int count = getWordsCount();
+            if (!m_complete) {
+                count = Math.max(count, m_estimatedWordsCount);
+            }
+
+            progress = 1.0f * m_wordID / count;
         }
 
         m_locker.unlock();
@@ -384,61 +453,15 @@ class HtmlSourceLoader extends ReadLoader {
     }
 
     @Override
-    String getCurrentWord() {
-        m_locker.lock();
-
-        // In case the parser is not a valid state, do nothing. This guarantees
-        // that we can safely access to the `m_words` and `m_wordID` pointed to
-        // in this internal object.
-        if (isInvalid()) {
-            m_locker.unlock();
-            return "";
+    void fillWords(int first, String[] words) {
+        // All the words are read from the same snapshot: the ones outside of it
+        // are either not loaded yet or outside of the read.
+        WordStore.Snapshot snapshot = m_words.getSnapshot();
+
+        for (int id = 0 ; id < words.length ; ++id) {
+            int wordID = m_wordID + first + id;
+            words[id] = (wordID >= 0 && wordID < snapshot.size() ? snapshot.get(wordID) : "");
         }
-
-        String word = m_words.get(m_wordID);
-        m_locker.unlock();
-
-        return word;
-    }
-
-    @Override
-    String getPreviousWord() {
-        m_locker.lock();
-
-        // In case the parser is not a valid state, do nothing. This guarantees
-        // that we can safely access to the `m_words` and `m_wordID` pointed to
-        // in this internal object.
-        // In case the parser is currently pointing to the first word we can't
-        // retrieve the previous word so return an empty string
-        if (isInvalid() || m_wordID == 0) {
-            m_locker.unlock();
-            return "";
-        }
-
-        String word = m_words.get(m_wordID - 1);
-        m_locker.unlock();
-
-        return word;
-    }
-
-    @Override
-    String getNextWord() {
-        m_locker.lock();
-
-        // In case the parser is not a valid state, do nothing. This guarantees
-        // that we can safely access to the `m_words` and `m_wordID` pointed to
-        // in this internal object.
-        // In case the parser is currently pointing to the last word we can't
-        // retrieve the next one so return an empty string
-        if (isInvalid() || m_wordID == m_words.size() - 1) {
-            m_locker.unlock();
-            return "";
-        }
-
-        String word = m_words.get(m_wordID + 1);
-        m_locker.unlock();
-
-        return word;
     }
 
     @Override
@@ -459,89 +482,48 @@ class HtmlSourceLoader extends ReadLoader {
             case Rewind:
                 // Move to the first word.
                 m_wordID = 0;
-
-                // Try to update the title's index. We will assume that the first
-                // title is the one to select: indeed even if this title is located
-                // after the current word's index we can't do better than that in
-                // terms of index.
-                if (hasTitles()) {
-                    m_currentTitleID = 0;
-                }
                 break;
             case NextWord:
-                // Move to the next word.
-                ++m_wordID;
-
-                // Try to update the title's index: to do so we need to fetch the
-                // position of the next title and see whether it is located before
-                // the current word's index.
-                if (isValidTitle()) {
-                    // Start with the current title index.
-                    int nexTitleWordID = m_titlesID.get(m_currentTitleID);
-
-                    // Try to fetch the next one.
-                    if (m_currentTitleID < m_titlesID.size() - 1) {
-                        nexTitleWordID = m_titlesID.get(m_currentTitleID + 1);
-                    }
-
-                    // In case the next title is located before the current word's
-                    // position, move to the next one.
-                    if (m_wordID >= nexTitleWordID) {
-                        ++m_currentTitleID;
-                    }
+                // Move to the next word. In case the document is still loading the
+                // next word might not be available yet: in this case we stay on the
+                // current word until it is.
+                if (m_wordID < getWordsCount() - 1) {
+                    ++m_wordID;
                 }
                 break;
             case PreviousStep:
+            case PreviousSection:
                 // In case we want to reach the previous title we need to compute
                 // the different between the position of the current word and the
                 // position of the previous title: if we're not right at the start
                 // of the current section we will move to the beginning of it. In
                 // case we're already at the start we will move to the start of
-                // the previous section.
+                // the previous section. In case there's no such section we move
+                // to the beginning of the read.
                 // In case no titles are defined we won't move.
-                if (isValidTitle()) {
-                    int titleWordID = m_titlesID.get(m_currentTitleID);
-                    if (m_wordID > titleWordID) {
-                        m_wordID = titleWordID;
-                        Log.i("main", "Moved from " + m_wordID + " to beginning of current title " + m_currentTitleID + " at " + titleWordID);
-                    }
-                    else if (m_currentTitleID > 0) {
-                        --m_currentTitleID;
-                        Log.i("main", "Moved from " + m_wordID + " to previous title " + m_currentTitleID + " at " + m_titlesID.get(m_currentTitleID));
-                        m_wordID = m_titlesID.get(m_currentTitleID);
-                    }
+                if (hasTitles()) {
+                    int section = m_sections.previous(m_wordID, getSectionLevel(action, param));
+                    m_wordID = (section >= 0 ? m_sections.getStart(section) : 0);
+
+                    Log.i("main", "Moved from " + sWordID + " to previous title " + section + " at " + m_wordID);
                 }
                 break;
             case NextStep:
+            case NextSection:
                 // We will follow a similar process to the `previous step` case but
                 // trying to move forward in the read. Note that it is simpler in
                 // this case as no matter the position of the word in the current
                 // section we will always move to the next one (as long as a valid
-                // title can be found in the read).
-                if (isValidTitle()) {
-                    // Try to find the next position to move to. We will start by
-                    // moving to the current title's position (which should always
-                    // fail as it is meant to represent the *last title reached*.
-                    int titleWordID = m_titlesID.get(m_currentTitleID);
-
-                    // Try to move to the next title: this might fail if we reached
-                    // the last title.
-                    if (m_currentTitleID < m_titlesID.size() - 1) {
-                        ++m_currentTitleID;
-                        titleWordID = m_titlesID.get(m_currentTitleID);
+                // title can be found in the read). Otherwise we will move to the
+                // end of the read as there's no title beyond the current word.
+                if (hasTitles()) {
+                    int section = m_sections.next(m_wordID, getSectionLevel(action, param));
+                    m_wordID = getWordsCount() - 1;
+                    if (section >= 0) {
+                        m_wordID = Math.min(m_wordID, m_sections.getStart(section));
                     }
 
-                    // In case the value is larger than the current word index we
-                    // can move to this position. Otherwise we will move to the end
-                    // of the read as there's no title beyond the last one we reached.
-                    if (m_wordID < titleWordID) {
-                        Log.i("main", "Moved from " + m_wordID + " to title " + m_currentTitleID + " at " + titleWordID);
-                        m_wordID = titleWordID;
-                    }
-                    else {
-                        m_wordID = m_words.size() - 1;
-                        Log.i("main", "Moved from " + m_wordID + " to last word " + (m_words.size() - 1));
-                    }
+                    Log.i("main", "Moved from " + sWordID + " to next title " + section + " at " + m_wordID);
                 }
                 break;
         }
@@ -577,35 +559,281 @@ class HtmlSourceLoader extends ReadLoader {
         // We will now interpret the list of titles that can be found from the input
         // document. This will allow for more convenient navigation in the document
         // when handling a next or previous section motion request.
-        generateTitleCheckpoints(body);
+        generateTitleCheckpoints(body, progress);
+
+        // The words are now available: position the cursor at the requested progress if
+        // it's not already done. We also indicate that the cache should be updated with
+        // the words we just parsed.
+        completeLoading(progress);
+
+        m_cacheOutdated = true;
+    }
+
+    @Override
+    void loadFromUri(ContentResolver resolver, Uri uri, float progress) throws IOException {
+        // Small sources (or sources for which we can't determine the size) are parsed
+        // with `jsoup` which is more robust to malformed documents.
+        ReadCache cache = getCache();
+        if (cache == null || cache.getSourceLength() < STREAMING_THRESHOLD) {
+            super.loadFromUri(resolver, uri, progress);
+            return;
+        }
+
+        InputStream stream = resolver.openInputStream(uri);
+        if (stream == null) {
+            throw new IOException("Could not open HTML source \"" + uri + "\"");
+        }
+
+        CountingInputStream counter = new CountingInputStream(stream);
+        BufferedInputStream buffered = new BufferedInputStream(counter, CHARSET_SNIFF_LENGTH);
+        try {
+            // Use the charset declared by the document if any: in case it is not known
+            // we let `jsoup` handle the document as it has its own fallbacks.
+            String charset = sniffCharset(buffered);
+            if (charset == null) {
+                charset = STREAMING_CHARSET;
+            }
+
+            if (!isSupportedCharset(charset)) {
+                loadFromSource(buffered, progress);
+                return;
+            }
+
+            loadFromStream(new InputStreamReader(buffered, Charset.forName(charset)), counter, cache.getSourceLength(), progress);
+        }
+        finally {
+            buffered.close();
+        }
+    }
+
+    /**
+     * Used to detect the charset of the document provided by the input stream from its
+     * first bytes (see `HtmlStreamParser.detectCharset`). The stream is reset to its
+     * initial position so that the bytes can be read again.
+     * @param stream - the stream providing the document.
+     * @return - the name of the charset of the document or `null` if none is declared.
+     * @throws IOException - in case the stream cannot be read.
+     */
+    private static String sniffCharset(BufferedInputStream stream) throws IOException {
+        byte[] head = new byte[CHARSET_SNIFF_LENGTH];
+        int length = 0;
+
+        stream.mark(CHARSET_SNIFF_LENGTH);
+        try {
+            int read = 0;
+            while (read >= 0 && length < head.length) {
+                read = stream.read(head, length, head.length - length);
+                if (read > 0) {
+                    length += read;
+                }
+            }
+        }
+        finally {
+            stream.reset();
+        }
 
+        return HtmlStreamParser.detectCharset(head, length);
+    }
+
+    /**
+     * Used to determine whether the input charset can be used to decode a document.
+     * @param charset - the name of the charset.
+     * @return - `true` if the charset is supported by the platform.
+     */
+    private static boolean isSupportedCharset(String charset) {
+        try {
+            return Charset.isSupported(charset);
+        }
+        catch (IllegalArgumentException e) {
+            // The name of the charset is not even valid.
+            return false;
+        }
+    }
+
+    /**
+     * Used to load the words and titles of the document provided by the input reader
+     * without building the tree of the document: the words are registered as they are
+     * read from the source so the memory used is bounded by the list of words.
+     * The words are published to the listeners as soon as the requested progress can
+     * be reached (see `handleProgress`).
+     * @param reader - the reader providing the content of the document.
+     * @param counter - the stream counting the bytes read from the source.
+     * @param length - the length of the source in bytes.
+     * @param progress - the progress to reach once the document is loaded.
+     * @throws IOException - in case the source cannot be read.
+     */
+    private void loadFromStream(Reader reader, final CountingInputStream counter, final long length, final float progress) throws IOException {
+        HtmlStreamParser parser = new HtmlStreamParser(new HtmlStreamParser.Handler() {
+            @Override
+            public void onText(String text) {
+                m_locker.lock();
+                try {
+                    registerWords(text);
+                }
+                finally {
+                    m_locker.unlock();
+                }
+
+                if (length > 0) {
+                    handleProgress(1.0f * counter.getCount() / length, progress);
+                }
+            }
+
+            @Override
+            public void onBreak() {
+                m_locker.lock();
+                closeWord();
+                m_locker.unlock();
+            }
+
+            @Override
+            public void onTitle(int level) {
+                // The title starts with the next word to be registered.
+                m_locker.lock();
+                registerTitle(m_words.size(), level);
+                m_locker.unlock();
+            }
+        });
+
+        parser.parse(reader);
+
+        // The words are now available: position the cursor at the requested progress
+        // if it's not already done and indicate that the cache should be updated.
+        completeLoading(progress);
+
+        m_cacheOutdated = true;
+    }
+
+    @Override
+    public boolean loadFromCache(DataInputStream in, float progress) throws IOException {
+        // Read the words and the titles into local lists first: this guarantees that we
+        // don't leave the loader in an inconsistent state in case the cache is corrupted.
+        WordStore words = new WordStore(new Vocabulary());
+        ReadCache.readWords(in, words);
+
+        SectionIndex sections = new SectionIndex();
+        sections.load(in);
+
+        // Register the data and position the cursor just like we would do after parsing
+        // the source. The vocabulary and the words are shared with the other copies of
+        // the loader so this needs to happen under the lock.
+        m_locker.lock();
+        try {
+            m_words.addAll(words, 0, words.size());
+            m_words.publish();
+            m_sections = sections;
+
+            setupCursor(progress);
+
+            m_estimatedWordsCount = m_words.size();
+            m_complete = true;
+        }
+        finally {
+            m_locker.unlock();
+        }
+
+        return hasWords();
+    }
+
+    @Override
+    public void saveToCache(DataOutputStream out) throws IOException {
+        // Save the words and then the position of the titles. The words are shared with
+        // the other copies of the loader so we need to hold the lock.
+        m_locker.lock();
+
+        try {
+            ReadCache.writeWords(out, m_words, 0, m_words.size());
+
+            m_sections.save(out);
+        }
+        finally {
+            m_locker.unlock();
+        }
+    }
+
+    /**
+     * Used to position the virtual cursor of this loader at the input progress once the
+     * words of the source are available.
+     * @param progress - the progress to reach in the words of this loader.
+     */
+    private void setupCursor(float progress) {
         // Now we need to interpret the input parsing progress: we know that the desired
         // progression is defined by the `progress` value in input. We will consider that
         // it represents some fraction of the total number of words. Note that some control
         // is performed to make sure that the computed progress is actually consistent with
         // the data contained in the `m_words` data.
         float cProgress = Math.min(1.0f, Math.max(0.0f, progress));
-        m_wordID = Math.round((int)Math.floor(cProgress * m_words.size()));
+        setupCursorAt((int)Math.floor(cProgress * m_words.size()));
+    }
 
-        // We should also find the corresponding title index from the compute word position.
-        if (hasTitles()) {
-            // Traverse the list of titles until we reach one that is after the current word
-            // index.
-            int titleWordID = 0;
-            int titleID = 0;
+    /**
+     * Used to position the virtual cursor of this loader at the input word. The word
+     * index is clamped to the words currently available. Note that the current title
+     * does not need to be tracked: it is retrieved from the section index whenever a
+     * motion needs it.
+     * @param wordID - the index of the word to reach.
+     */
+    private void setupCursorAt(int wordID) {
+        m_wordID = Math.max(0, Math.min(m_words.size() - 1, wordID));
 
-            Log.i("main", "Word progress is " + progress + ", reached word " + m_wordID + "/" + m_words.size());
+        Log.i("main", "Reached word " + m_wordID + "/" + m_words.size() + " in title " + m_sections.find(m_wordID));
+    }
 
-            while (titleWordID < m_wordID && titleID < m_titlesID.size()) {
-                titleWordID = m_titlesID.get(titleID);
-                if (titleWordID < m_wordID) {
-                    ++titleID;
-                }
+    /**
+     * Convenience class allowing to count the number of bytes read from a stream. This
+     * is used to determine the fraction of the source already processed when parsing
+     * it in streaming mode.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        /**
+         * The number of bytes read so far from the stream.
+         */
+        private long m_count;
+
+        /**
+         * Create a new stream counting the bytes read from the input stream.
+         * @param in - the stream to read from.
+         */
+        CountingInputStream(InputStream in) {
+            super(in);
+            m_count = 0;
+        }
+
+        /**
+         * Returns the number of bytes read so far from this stream.
+         * @return - the number of bytes read so far.
+         */
+        long getCount() {
+            return m_count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                ++m_count;
             }
 
-            // Register the found title.
-            Log.i("main", "Reached title " + titleID + " at " + titleWordID + " to match word index " + m_wordID);
-            m_currentTitleID = Math.min(m_titlesID.size(), titleID);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                m_count += read;
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            m_count += skipped;
+
+            return skipped;
         }
     }
 }
@@ -0,0 +1,542 @@
+package knoblauch.readdesc.model;
+
+import org.jsoup.parser.Parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+class HtmlStreamParser {
+
+    /**
+     * Interface to be implemented by objects interested in the content of the
+     * `HTML` document analyzed by this parser. The methods are called in the
+     * order in which the elements appear in the document.
+     */
+    interface Handler {
+
+        /**
+         * Called whenever a run of text is found in the body of the document.
+         * The entities are already decoded. Note that the text is split at
+         * each tag: a word can continue over several calls (for example with
+         * `<b>Hel</b>lo`) unless `onBreak` is called in between.
+         * @param text - the text found in the document.
+         */
+        void onText(String text);
+
+        /**
+         * Called whenever a block-level element is opened or closed in the body
+         * of the document (see `HtmlContentExtractor.isBlockTag`). The text that
+         * follows does not belong to the same word as the text that precedes.
+         */
+        void onBreak();
+
+        /**
+         * Called whenever a title (i.e. a `h1` to `h6` tag) is opened in the
+         * body of the document. The text of the title is provided afterwards
+         * through the `onText` method.
+         * @param level - the level of the title, from `1` to `6`.
+         */
+        void onTitle(int level);
+    }
+
+    /**
+     * The size of the buffer used to read characters from the input reader.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The maximum length of a run of text which is accumulated before being
+     * provided to the handler. Larger runs are split on the next space so as
+     * to keep the memory used by the parser bounded.
+     */
+    private static final int MAX_TEXT_LENGTH = 16384;
+
+    /**
+     * The list of elements for which the content is not interpreted as some
+     * markup and which does not contain any readable text. Their content is
+     * skipped until the corresponding closing tag is found.
+     */
+    private static final String[] RAW_TEXT_ELEMENTS = {
+            "script",
+            "style",
+            "title"
+    };
+
+    /**
+     * The pattern used to find the charset declared in the `meta` tags of the
+     * document: either through a `charset` attribute or through the `content`
+     * attribute of a `http-equiv` declaration. Both are matched by looking for
+     * the `charset=` string in the tag.
+     */
+    private static final Pattern META_CHARSET = Pattern.compile("<meta[^>]*?charset\\s*=\\s*[\"']?\\s*([a-z0-9_.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The character used as a byte order mark at the beginning of a document.
+     * It is not part of the text of the document.
+     */
+    private static final char BYTE_ORDER_MARK = '\ufeff';
+
+    /**
+     * The handler to notify of the content of the document.
+     */
+    private Handler m_handler;
+
+    /**
+     * The reader providing the characters of the document.
+     */
+    private Reader m_reader;
+
+    /**
+     * The buffer holding the characters read from `m_reader` and not yet
+     * processed.
+     */
+    private char[] m_buffer;
+
+    /**
+     * The index of the next character to process in `m_buffer`.
+     */
+    private int m_position;
+
+    /**
+     * The number of valid characters in `m_buffer`.
+     */
+    private int m_size;
+
+    /**
+     * The run of text currently being accumulated. It is provided to the
+     * handler when some markup is encountered.
+     */
+    private StringBuilder m_text;
+
+    /**
+     * Whether the current run of text contains some entities to decode.
+     */
+    private boolean m_hasEntity;
+
+    /**
+     * Whether the parser is currently in the `head` of the document. The text
+     * found there is not part of the content to read.
+     */
+    private boolean m_inHead;
+
+    /**
+     * The name of the element currently being ignored because it can't contain
+     * any relevant text (see `HtmlContentExtractor.isPrunedTag`). This is `null`
+     * in case no element is currently ignored.
+     */
+    private String m_pruned;
+
+    /**
+     * The number of nested elements with the name `m_pruned` currently opened.
+     * The element is not ignored anymore when this value reaches `0`.
+     */
+    private int m_prunedDepth;
+
+    /**
+     * Whether the last tag read by the `skipAttributes` method was self-closing.
+     */
+    private boolean m_selfClosing;
+
+    /**
+     * Create a new parser notifying the input handler of the content of the
+     * analyzed documents.
+     * @param handler - the handler to notify.
+     */
+    HtmlStreamParser(Handler handler) {
+        m_handler = handler;
+
+        m_buffer = new char[BUFFER_SIZE];
+        m_text = new StringBuilder();
+    }
+
+    /**
+     * Used to analyze the document provided by the input reader. The handler
+     * is notified as the content is read so that no representation of the
+     * whole document is ever built. Unlike `jsoup` this parser does not try
+     * to fix malformed documents: we only need the text and the titles.
+     * The reader is not closed by this method.
+     * @param reader - the reader providing the document.
+     * @throws IOException - in case the reader cannot be read.
+     */
+    void parse(Reader reader) throws IOException {
+        m_reader = reader;
+        m_position = 0;
+        m_size = 0;
+
+        m_text.setLength(0);
+        m_hasEntity = false;
+        m_inHead = false;
+        m_pruned = null;
+        m_prunedDepth = 0;
+
+        int c = next();
+        if (c == BYTE_ORDER_MARK) {
+            c = next();
+        }
+
+        while (c >= 0) {
+            if (c == '<') {
+                c = parseMarkup();
+            }
+            else {
+                appendText((char)c);
+                c = next();
+            }
+        }
+
+        flushText();
+        m_reader = null;
+    }
+
+    /**
+     * Used to determine the charset of a document from its first bytes. We first
+     * look for a byte order mark and then for a charset declared in a `meta` tag
+     * just like a browser would do. The bytes are interpreted as `ASCII` which is
+     * enough to read the tags of most charsets.
+     * @param head - the first bytes of the document.
+     * @param length - the number of valid bytes in `head`.
+     * @return - the name of the charset of the document or `null` in case none
+     *           could be detected.
+     */
+    static String detectCharset(byte[] head, int length) {
+        if (length >= 3 && (head[0] & 0xff) == 0xef && (head[1] & 0xff) == 0xbb && (head[2] & 0xff) == 0xbf) {
+            return "UTF-8";
+        }
+        if (length >= 2 && (head[0] & 0xff) == 0xfe && (head[1] & 0xff) == 0xff) {
+            return "UTF-16BE";
+        }
+        if (length >= 2 && (head[0] & 0xff) == 0xff && (head[1] & 0xff) == 0xfe) {
+            return "UTF-16LE";
+        }
+
+        char[] chars = new char[length];
+        for (int id = 0 ; id < length ; ++id) {
+            chars[id] = (char)(head[id] & 0xff);
+        }
+
+        Matcher matcher = META_CHARSET.matcher(new String(chars));
+        if (!matcher.find()) {
+            return null;
+        }
+
+        return matcher.group(1).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Used to retrieve the next character of the document.
+     * @return - the next character or `-1` if the end of the document has been
+     *           reached.
+     * @throws IOException - in case the reader cannot be read.
+     */
+    private int next() throws IOException {
+        if (m_position >= m_size) {
+            m_size = m_reader.read(m_buffer, 0, m_buffer.length);
+            m_position = 0;
+
+            if (m_size <= 0) {
+                m_size = 0;
+                return -1;
+            }
+        }
+
+        return m_buffer[m_position++];
+    }
+
+    /**
+     * Used to register a character of text in the current run. Nothing is kept
+     * while we're in the `head` of the document or in an ignored element.
+     * @param c - the character to register.
+     */
+    private void appendText(char c) {
+        if (m_inHead || m_pruned != null) {
+            return;
+        }
+
+        // Split large runs of text on spaces: this is safe as an entity can't
+        // contain any space.
+        if (m_text.length() >= MAX_TEXT_LENGTH && Character.isWhitespace(c)) {
+            flushText();
+        }
+
+        m_text.append(c);
+        m_hasEntity = m_hasEntity || c == '&';
+    }
+
+    /**
+     * Used to provide the current run of text to the handler and start a new
+     * one.
+     */
+    private void flushText() {
+        if (m_text.length() == 0) {
+            return;
+        }
+
+        String text = m_text.toString();
+        if (m_hasEntity) {
+            text = Parser.unescapeEntities(text, false);
+        }
+
+        // Just like `jsoup` does, non-breaking spaces are considered to be
+        // regular spaces.
+        text = text.replace('\u00a0', ' ');
+
+        m_text.setLength(0);
+        m_hasEntity = false;
+
+        m_handler.onText(text);
+    }
+
+    /**
+     * Used to interpret the markup starting after the `<` character which has
+     * just been read. In case the character does not actually start a markup
+     * it is considered as regular text.
+     * @return - the first character following the markup.
+     * @throws IOException - in case the reader cannot be read.
+     */
+    private int parseMarkup() throws IOException {
+        int c = next();
+
+        // Comments, doctype and processing instructions.
+        if (c == '!' || c == '?') {
+            flushText();
+            return skipDeclaration(c);
+        }
+
+        // Closing tag.
+        if (c == '/') {
+            c = next();
+            if (!isLetter(c)) {
+                appendText('<');
+                appendText('/');
+                return c;
+            }
+
+            flushText();
+
+            StringBuilder name = new StringBuilder();
+            c = readName(c, name);
+            c = skipAttributes(c);
+
+            if ("head".contentEquals(name)) {
+                m_inHead = false;
+            }
+            else if (!m_inHead && m_pruned == null && HtmlContentExtractor.isBlockTag(name.toString())) {
+                m_handler.onBreak();
+            }
+
+            // Check whether this closes the element currently ignored.
+            if (m_pruned != null && m_pruned.contentEquals(name)) {
+                --m_prunedDepth;
+                if (m_prunedDepth == 0) {
+                    m_pruned = null;
+                }
+            }
+
+            return c;
+        }
+
+        // Anything else than a letter does not start a tag.
+        if (!isLetter(c)) {
+            appendText('<');
+            return c;
+        }
+
+        flushText();
+
+        StringBuilder name = new StringBuilder();
+        c = readName(c, name);
+        c = skipAttributes(c);
+
+        // Elements with raw text have their content skipped entirely.
+        for (String raw : RAW_TEXT_ELEMENTS) {
+            if (raw.contentEquals(name)) {
+                return m_selfClosing ? c : skipRawText(raw, c);
+            }
+        }
+
+        handleOpeningTag(name.toString(), m_selfClosing);
+
+        return c;
+    }
+
+    /**
+     * Used to interpret an opening tag, be it a title, one of the elements to
+     * ignore or one of the elements delimiting the `head` of the document.
+     * @param name - the name of the tag (in lower case).
+     * @param selfClosing - whether the tag is self-closing.
+     */
+    private void handleOpeningTag(String name, boolean selfClosing) {
+        // Keep track of the nested elements with the same name as the one being
+        // ignored so that we know when it is closed.
+        if (m_pruned != null) {
+            if (!selfClosing && m_pruned.equals(name)) {
+                ++m_prunedDepth;
+            }
+
+            return;
+        }
+
+        if (!selfClosing && HtmlContentExtractor.isPrunedTag(name)) {
+            m_pruned = name;
+            m_prunedDepth = 1;
+            return;
+        }
+
+        if ("head".equals(name)) {
+            m_inHead = true;
+            return;
+        }
+
+        if ("body".equals(name)) {
+            m_inHead = false;
+            return;
+        }
+
+        if (!m_inHead && HtmlContentExtractor.isBlockTag(name)) {
+            m_handler.onBreak();
+        }
+
+        // Titles are the `h1` to `h6` tags.
+        int level = HtmlContentExtractor.getTitleLevel(name);
+        if (!m_inHead && level > 0) {
+            m_handler.onTitle(level);
+        }
+    }
+
+    /**
+     * Used to read the name of a tag starting with the input character. The
+     * name is converted to lower case.
+     * @param c - the first character of the name.
+     * @param name - the output builder receiving the name.
+     * @return - the first character following the name.
+     * @throws IOException - in case the reader cannot be read.
+     */
+    private int readName(int c, StringBuilder name) throws IOException {
+        while (c >= 0 && (isLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':')) {
+            name.append(Character.toLowerCase((char)c));
+            c = next();
+        }
+
+        return c;
+    }
+
+    /**
+     * Used to skip the attributes of a tag up to and including the closing `>`
+     * character. Quoted values are skipped entirely so that a `>` appearing in
+     * them does not end the tag. The `m_selfClosing` attribute is updated to
+     * reflect whether the tag ends with `/>`.
+     * @param c - the first character following the name of the tag.
+     * @return - the first character following the tag.
+     * @throws IOException - in case the reader cannot be read.
+     */
+    private int skipAttributes(int c) throws IOException {
+        int quote = -1;
+        int last = -1;
+        m_selfClosing = false;
+
+        while (c >= 0) {
+            if (quote >= 0) {
+                if (c == quote) {
+                    quote = -1;
+                }
+            }
+            else if (c == '"' || c == '\'') {
+                quote = c;
+            }
+            else if (c == '>') {
+                m_selfClosing = (last == '/');
+                return next();
+            }
+
+            if (!Character.isWhitespace((char)c)) {
+                last = c;
+            }
+
+            c = next();
+        }
+
+        return c;
+    }
+
+    /**
+     * Used to skip a comment, a doctype or a processing instruction. The input
+     * character is the one following the `<` character.
+     * @param c - the character following the opening `<`.
+     * @return - the first character following the declaration.
+     * @throws IOException - in case the reader cannot be read.
+     */
+    private int skipDeclaration(int c) throws IOException {
+        // Comments end with the `-->` sequence rather than with the first `>`.
+        if (c == '!') {
+            c = next();
+            if (c == '-') {
+                c = next();
+                if (c == '-') {
+                    int dashes = 0;
+                    c = next();
+
+                    while (c >= 0 && (c != '>' || dashes < 2)) {
+                        dashes = (c == '-' ? dashes + 1 : 0);
+                        c = next();
+                    }
+
+                    return next();
+                }
+            }
+        }
+
+        while (c >= 0 && c != '>') {
+            c = next();
+        }
+
+        return next();
+    }
+
+    /**
+     * Used to skip the content of an element with raw text up to and including
+     * its closing tag.
+     * @param name - the name of the element.
+     * @param c - the first character of the content of the element.
+     * @return - the first character following the closing tag.
+     * @throws IOException - in case the reader cannot be read.
+     */
+    private int skipRawText(String name, int c) throws IOException {
+        while (c >= 0) {
+            if (c != '<') {
+                c = next();
+                continue;
+            }
+
+            c = next();
+            if (c != '/') {
+                continue;
+            }
+
+            // Try to match the name of the element.
+            int matched = 0;
+            c = next();
+            while (matched < name.length() && c >= 0 && Character.toLowerCase((char)c) == name.charAt(matched)) {
+                ++matched;
+                c = next();
+            }
+
+            if (matched == name.length() && !isLetter(c)) {
+                return skipAttributes(c);
+            }
+        }
+
+        return c;
+    }
+
+    /**
+     * Used to determine whether the input character is an `ASCII` letter.
+     * @param c - the character to check.
+     * @return - `true` if the character is a letter.
+     */
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
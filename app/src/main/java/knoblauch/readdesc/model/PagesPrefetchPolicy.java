@@ -0,0 +1,169 @@
+package knoblauch.readdesc.model;
+
+class PagesPrefetchPolicy {
+
+    /**
+     * The minimum number of pages that should be kept loaded ahead of the
+     * page currently being read. Even with a very slow reading speed we want
+     * to have the next page available so that the next word can always be
+     * displayed.
+     */
+    private static final int MIN_LOOKAHEAD = 2;
+
+    /**
+     * The maximum number of pages that can be kept loaded ahead of the page
+     * currently being read. This prevents a very slow extraction to cause the
+     * whole document to be loaded at once.
+     */
+    private static final int MAX_LOOKAHEAD = 24;
+
+    /**
+     * A safety factor applied on the measured extraction times. We want the
+     * pages to be available well before the reader needs them to account for
+     * the variability of the extraction (some pages are more complex than
+     * others) and for the scheduling of the loading task.
+     */
+    private static final float SAFETY_FACTOR = 2.0f;
+
+    /**
+     * The weight of a new measure when updating the running averages. Larger
+     * values make the policy react faster to changes in the document but are
+     * more sensitive to outliers.
+     */
+    private static final float SMOOTHING_FACTOR = 0.3f;
+
+    /**
+     * The default extraction time of a single page in milliseconds. It is used
+     * until some actual measures have been collected.
+     */
+    private static final float DEFAULT_PAGE_EXTRACTION_TIME = 250.0f;
+
+    /**
+     * The default time needed to open the document before extracting any page
+     * in milliseconds. Used until some actual measures are collected.
+     */
+    private static final float DEFAULT_SETUP_TIME = 500.0f;
+
+    /**
+     * The default number of words contained in a single page. Used until some
+     * pages have actually been extracted.
+     */
+    private static final float DEFAULT_WORDS_PER_PAGE = 300.0f;
+
+    /**
+     * The default interval between two words in milliseconds. Used until the
+     * value is provided from the preferences.
+     */
+    private static final int DEFAULT_FLIP_INTERVAL = 100;
+
+    /**
+     * The running average of the time needed to extract a single page of the
+     * document in milliseconds. Note that as pages are extracted in parallel
+     * this is the effective time per page (i.e. the duration of the whole
+     * extraction divided by the number of pages).
+     */
+    private float m_pageExtractionTime;
+
+    /**
+     * The running average of the time needed to open the document before any
+     * page can be extracted, in milliseconds. This is paid for each loading
+     * operation independently of the number of pages to extract.
+     */
+    private float m_setupTime;
+
+    /**
+     * The running average of the number of words contained in a page.
+     */
+    private float m_wordsPerPage;
+
+    /**
+     * The current interval between two words in milliseconds as defined by the
+     * preferences of the user.
+     */
+    private int m_flipInterval;
+
+    /**
+     * Create a new policy with default values. These will be refined as soon
+     * as some pages are extracted.
+     */
+    PagesPrefetchPolicy() {
+        m_pageExtractionTime = DEFAULT_PAGE_EXTRACTION_TIME;
+        m_setupTime = DEFAULT_SETUP_TIME;
+        m_wordsPerPage = DEFAULT_WORDS_PER_PAGE;
+
+        m_flipInterval = DEFAULT_FLIP_INTERVAL;
+    }
+
+    /**
+     * Used to update the interval between two words. This value is typically
+     * retrieved from the preferences of the user.
+     * Note that this method can be called from the main thread while some
+     * pages are being extracted.
+     * @param interval - the interval between two words in milliseconds. The
+     *                   value is ignored in case it is not positive.
+     */
+    synchronized void setFlipInterval(int interval) {
+        if (interval > 0) {
+            m_flipInterval = interval;
+        }
+    }
+
+    /**
+     * Used to register the time needed to open the document.
+     * @param elapsed - the duration of the opening in milliseconds.
+     */
+    synchronized void recordSetup(long elapsed) {
+        m_setupTime = smooth(m_setupTime, elapsed);
+    }
+
+    /**
+     * Used to register the extraction of some pages.
+     * @param pages - the number of pages extracted.
+     * @param words - the total number of words contained in these pages.
+     * @param elapsed - the duration of the extraction in milliseconds.
+     */
+    synchronized void recordExtraction(int pages, int words, long elapsed) {
+        if (pages <= 0) {
+            return;
+        }
+
+        m_pageExtractionTime = smooth(m_pageExtractionTime, 1.0f * elapsed / pages);
+        m_wordsPerPage = smooth(m_wordsPerPage, 1.0f * words / pages);
+    }
+
+    /**
+     * Used to update a running average with a new measure.
+     * @param average - the current value of the average.
+     * @param value - the new measure.
+     * @return - the updated average.
+     */
+    private static float smooth(float average, float value) {
+        return (1.0f - SMOOTHING_FACTOR) * average + SMOOTHING_FACTOR * value;
+    }
+
+    /**
+     * Used to compute the number of pages that should be kept loaded ahead of
+     * the page currently being read. We want the time needed to read these
+     * pages to be larger than the time needed to load as many pages again, so
+     * that a loading operation triggered when the reader enters this window
+     * is complete before the reader reaches its end. With `r` the time needed
+     * to read a page, `s` the setup time and `e` the extraction time of a page
+     * this means finding the smallest `L` such that:
+     * `(L - 1) * r >= SAFETY * (s + L * e)`.
+     * @return - the number of pages that should be loaded ahead.
+     */
+    synchronized int getLookahead() {
+        float read = m_wordsPerPage * m_flipInterval;
+        float extract = SAFETY_FACTOR * m_pageExtractionTime;
+
+        // In case the reader is faster than the extraction there is no window
+        // that can be large enough: use the largest allowed.
+        if (read <= extract) {
+            return MAX_LOOKAHEAD;
+        }
+
+        int lookahead = (int)Math.ceil((SAFETY_FACTOR * m_setupTime + read) / (read - extract));
+
+        return Math.min(MAX_LOOKAHEAD, Math.max(MIN_LOOKAHEAD, lookahead));
+    }
+}
@@ -0,0 +1,549 @@
+package knoblauch.readdesc.model;
+
+import com.itextpdf.text.io.RandomAccessSourceFactory;
+import com.itextpdf.text.pdf.PdfDictionary;
+import com.itextpdf.text.pdf.PdfIndirectReference;
+import com.itextpdf.text.pdf.PdfName;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.PdfStream;
+import com.itextpdf.text.pdf.RandomAccessFileOrArray;
+import com.itextpdf.text.pdf.SimpleBookmark;
+import com.itextpdf.text.pdf.parser.ContentByteUtils;
+import com.itextpdf.text.pdf.parser.PdfContentStreamProcessor;
+import com.itextpdf.text.pdf.parser.XObjectDoHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class PdfPagesExtractor {
+
+    /**
+     * The maximum number of workers used to extract pages in parallel. Even on
+     * devices with a lot of cores we don't want to create too many readers as
+     * each one of them keeps its own copy of the cross-reference table of the
+     * document.
+     */
+    private static final int MAX_WORKERS_COUNT = 8;
+
+    /**
+     * The size of the buffer used to read the content of the `PDF` document in
+     * memory.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A handler for the image `XObjects` which does nothing. We only care
+     * about the text of the pages so there's no need to resolve the images.
+     * Note that the form `XObjects` are still processed as they can contain
+     * some text.
+     */
+    private static final XObjectDoHandler IGNORE_IMAGES = new XObjectDoHandler() {
+        @Override
+        public void handleXObject(PdfContentStreamProcessor processor, PdfStream stream, PdfIndirectReference ref) {
+            // No op: images are not relevant for the text extraction.
+        }
+    };
+
+    /**
+     * The raw content of the `PDF` document. It is shared by all the readers of
+     * this extractor: each reader accesses it through its own random access
+     * source so that they don't interfere with each other.
+     * This is `null` in case the document is read from a file (see `m_path`).
+     */
+    private byte[] m_data;
+
+    /**
+     * The path to the file containing the `PDF` document. When it is set, the
+     * readers access the file directly (through a memory mapping when this is
+     * possible) so that only the parts of the document actually needed to get
+     * the requested pages are read.
+     * This is `null` in case the document is read from memory (see `m_data`).
+     */
+    private String m_path;
+
+    /**
+     * The main reader on the `PDF` document. It is used to extract pages from
+     * the calling thread and to retrieve the general information about the
+     * document (such as its number of pages).
+     */
+    private PdfReader m_reader;
+
+    /**
+     * The list of readers available to extract the pages. The first one is
+     * always `m_reader` and is used by the calling thread while the other
+     * ones are created lazily when some pages are extracted in parallel. As
+     * `iText` readers are not safe to be used from several threads each
+     * reader is only ever used by a single worker at a time.
+     */
+    private ArrayList<PdfReader> m_readers;
+
+    /**
+     * The maximum number of workers that can be used to extract pages from
+     * the document. It is computed from the number of cores of the device.
+     */
+    private int m_workersCount;
+
+    /**
+     * The pool of threads used to extract pages in parallel. It is created the
+     * first time more than a single page needs to be extracted at once.
+     */
+    private ExecutorService m_pool;
+
+    /**
+     * The level of the heading detected at the beginning of each page of the
+     * document (see `PdfSimpleTextExtractor.getHeadingLevel`). The value is
+     * only relevant for the pages which have been extracted: it is negative
+     * for the others and for the pages which do not start with a heading.
+     * Each page is only ever written by the worker extracting it.
+     */
+    private int[] m_headings;
+
+    /**
+     * Create a new extractor from the input stream. The whole content of the
+     * stream is read so that it can be shared between the workers.
+     * @param stream - the stream containing the `PDF` document.
+     * @throws IOException - in case the stream cannot be read or does not
+     *                       describe a valid `PDF` document.
+     */
+    PdfPagesExtractor(InputStream stream) throws IOException {
+        m_data = readFully(stream);
+        m_path = null;
+
+        initialize();
+    }
+
+    /**
+     * Create a new extractor from the input file. Nothing is read from the file
+     * except for what is needed to interpret the structure of the document: the
+     * content of the pages is only read when they are extracted.
+     * @param file - the file containing the `PDF` document.
+     * @throws IOException - in case the file cannot be read or does not describe
+     *                       a valid `PDF` document.
+     */
+    PdfPagesExtractor(File file) throws IOException {
+        m_data = null;
+        m_path = file.getAbsolutePath();
+
+        initialize();
+    }
+
+    /**
+     * Used to create the main reader of the document and to initialize the data
+     * used to distribute the extraction among workers.
+     * @throws IOException - in case the document is not valid.
+     */
+    private void initialize() throws IOException {
+        m_reader = createReader();
+        m_readers = new ArrayList<>();
+        m_readers.add(m_reader);
+
+        // Use as many workers as there are cores on the device.
+        int cores = Runtime.getRuntime().availableProcessors();
+        m_workersCount = Math.max(1, Math.min(MAX_WORKERS_COUNT, cores));
+
+        m_pool = null;
+
+        m_headings = new int[getPagesCount()];
+        Arrays.fill(m_headings, -1);
+    }
+
+    /**
+     * Used to read the entirety of the input stream into an array of bytes. The
+     * stream is closed once the data has been read.
+     * @param stream - the stream to read.
+     * @return - the content of the stream.
+     * @throws IOException - in case the stream cannot be read.
+     */
+    private static byte[] readFully(InputStream stream) throws IOException {
+        if (stream == null) {
+            throw new IOException("Cannot read PDF document from invalid stream");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try {
+            int read = stream.read(buffer);
+            while (read >= 0) {
+                out.write(buffer, 0, read);
+                read = stream.read(buffer);
+            }
+        }
+        finally {
+            stream.close();
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Used to create a new reader on the content of the `PDF` document. We use
+     * the partial mode of `iText` so that only the objects actually needed to
+     * extract the pages are parsed. In case the document is read from a file
+     * we also make sure that it is not loaded in memory.
+     * @return - the created reader.
+     * @throws IOException - in case the document is not valid.
+     */
+    private PdfReader createReader() throws IOException {
+        RandomAccessSourceFactory factory = new RandomAccessSourceFactory();
+
+        if (m_path != null) {
+            factory.setForceRead(false);
+            return new PdfReader(new RandomAccessFileOrArray(factory.createBestSource(m_path)), null);
+        }
+
+        return new PdfReader(new RandomAccessFileOrArray(factory.createSource(m_data)), null);
+    }
+
+    /**
+     * Returns the number of pages defined in the `PDF` document.
+     * @return - the number of pages of the document.
+     */
+    int getPagesCount() {
+        return m_reader.getNumberOfPages();
+    }
+
+    /**
+     * Used to extract the words of a single page of the document. This uses the
+     * main reader of the extractor from the calling thread.
+     * @param id - the index of the page to extract. Starts at `0` and converted
+     *             internally to match the `iText` semantic.
+     * @return - the words of the page.
+     * @throws IOException - in case the page cannot be parsed.
+     */
+    WordStore extract(int id) throws IOException {
+        return extract(m_reader, id, new Vocabulary(), m_headings);
+    }
+
+    /**
+     * Returns the level of the heading detected at the beginning of the input
+     * page. This is only relevant once the page has been extracted.
+     * @param id - the index of the page (starting at `0`).
+     * @return - the level of the heading (starting at `1`) or `-1` in case the
+     *           page does not start with a heading or was not extracted.
+     */
+    int getHeadingLevel(int id) {
+        return (id >= 0 && id < m_headings.length ? m_headings[id] : -1);
+    }
+
+    /**
+     * Used to read the outline (or bookmarks) of the document and to build the
+     * index of its sections from it. Each entry of the outline pointing to a page
+     * of the document defines a section starting at this page with a level given
+     * by the depth of the entry in the outline (starting at `1`).
+     * Note that as the sections are indexed by page, the start of the sections
+     * registered in the returned index are indices of pages and not of words.
+     * @return - the index of the sections of the document. It is empty in case
+     *           the document does not define an outline.
+     */
+    SectionIndex readOutline() {
+        ArrayList<int[]> entries = new ArrayList<>();
+
+        List<HashMap<String, Object>> outline = SimpleBookmark.getBookmark(m_reader);
+        if (outline != null) {
+            collectOutline(outline, 1, entries);
+        }
+
+        // The entries of the outline are not necessarily sorted by page.
+        Collections.sort(entries, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] lhs, int[] rhs) {
+                return (lhs[0] != rhs[0] ? Integer.compare(lhs[0], rhs[0]) : Integer.compare(lhs[1], rhs[1]));
+            }
+        });
+
+        SectionIndex sections = new SectionIndex();
+        for (int[] entry : entries) {
+            sections.add(entry[0], entry[1]);
+        }
+
+        return sections;
+    }
+
+    /**
+     * Used to register the entries of the input level of the outline and their
+     * children in the output list. Each entry is described by the index of the
+     * page it points to and its level.
+     * @param outline - the entries of the outline at this level.
+     * @param level - the level of the entries.
+     * @param entries - the output list of entries.
+     */
+    private void collectOutline(List<HashMap<String, Object>> outline, int level, ArrayList<int[]> entries) {
+        for (HashMap<String, Object> entry : outline) {
+            // The page is described as its number (starting at `1`) followed by
+            // the way to display it, such as `12 XYZ 0 792 0`. Entries which do
+            // not point to a page of the document (links to other files, etc.)
+            // are ignored.
+            Object dest = entry.get("Page");
+            if (dest instanceof String) {
+                String page = ((String)dest).trim();
+                int space = page.indexOf(' ');
+
+                try {
+                    int id = Integer.parseInt(space >= 0 ? page.substring(0, space) : page) - 1;
+                    if (id >= 0 && id < getPagesCount()) {
+                        entries.add(new int[] { id, level });
+                    }
+                }
+                catch (NumberFormatException e) {
+                    // Ignore this entry.
+                }
+            }
+
+            Object kids = entry.get("Kids");
+            if (kids instanceof List) {
+                @SuppressWarnings("unchecked")
+                List<HashMap<String, Object>> children = (List<HashMap<String, Object>>)kids;
+                collectOutline(children, level + 1, entries);
+            }
+        }
+    }
+
+    /**
+     * Used to extract the words of the input page with the specified reader.
+     * We don't rely on the default processing provided by `iText` as it would
+     * resolve all the images of the page: instead we only register handlers
+     * relevant for the text.
+     * Note that inline images still need to be parsed to be skipped in the
+     * content stream.
+     * The level of the heading detected at the beginning of the page is saved in
+     * the input array.
+     * @param reader - the reader to use to extract the page.
+     * @param id - the index of the page to extract (starting at `0`).
+     * @param vocabulary - the vocabulary used to encode the words of the page.
+     * @param headings - the array where the level of the heading of the page is
+     *                   saved.
+     * @return - the words of the page.
+     * @throws IOException - in case the page cannot be parsed.
+     */
+    private static WordStore extract(PdfReader reader, int id, Vocabulary vocabulary, int[] headings) throws IOException {
+        // Note that as `iText` counts page starting at `1` we need to account
+        // for this.
+        int page = id + 1;
+
+        PdfDictionary resources = reader.getPageN(page).getAsDict(PdfName.RESOURCES);
+        byte[] content = ContentByteUtils.getContentBytesForPage(reader, page);
+
+        PdfSimpleTextExtractor extractor = new PdfSimpleTextExtractor(vocabulary);
+        PdfContentStreamProcessor processor = new PdfContentStreamProcessor(extractor);
+        processor.registerXObjectDoHandler(PdfName.IMAGE, IGNORE_IMAGES);
+
+        processor.processContent(content, resources);
+
+        WordStore words = extractor.getWords();
+        headings[id] = extractor.getHeadingLevel();
+
+        return words;
+    }
+
+    /**
+     * Used to extract the words of the pages in the range `[first; last]`. The
+     * range is split in contiguous chunks which are distributed to the workers
+     * of this extractor: the first chunk is processed by the calling thread.
+     * The returned list contains the words of each page in the same order as
+     * the pages of the range. The pages extracted by a worker share the same
+     * vocabulary which is private to this worker.
+     * @param first - the index of the first page to extract.
+     * @param last - the index of the last page to extract (included).
+     * @return - the words of each page in the range.
+     * @throws IOException - in case any of the pages cannot be parsed or if the
+     *                       calling thread is interrupted while waiting for the
+     *                       workers.
+     */
+    ArrayList<WordStore> extract(int first, int last) throws IOException {
+        int count = last - first + 1;
+        ArrayList<WordStore> pages = new ArrayList<>(Math.max(0, count));
+
+        if (count <= 0) {
+            return pages;
+        }
+
+        // Distribute the pages in chunks of similar sizes. Note that we need to
+        // recompute the number of workers from the size of the chunks so that
+        // none of them ends up with an empty range.
+        int chunk = (count + m_workersCount - 1) / m_workersCount;
+        int workers = (count + chunk - 1) / chunk;
+
+        ArrayList<Future<ArrayList<WordStore>>> results = new ArrayList<>();
+        final AtomicBoolean aborted = new AtomicBoolean(false);
+
+        try {
+            // Schedule all chunks except the first one on the pool.
+            for (int worker = 1 ; worker < workers ; ++worker) {
+                final PdfReader reader = getReader(worker);
+                final int start = first + worker * chunk;
+                final int end = Math.min(last, start + chunk - 1);
+
+                results.add(getPool().submit(new Callable<ArrayList<WordStore>>() {
+                    @Override
+                    public ArrayList<WordStore> call() throws IOException {
+                        return extract(reader, start, end, m_headings, aborted);
+                    }
+                }));
+            }
+
+            // Handle the first chunk ourselves.
+            pages.addAll(extract(m_reader, first, Math.min(last, first + chunk - 1), m_headings, aborted));
+
+            // Gather the results of the workers in order.
+            for (Future<ArrayList<WordStore>> result : results) {
+                pages.addAll(result.get());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting pages " + first + "-" + last);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Could not extract pages " + first + "-" + last + " (err: " + e.getCause() + ")");
+        }
+        finally {
+            // In case of a failure the workers stop before their next page. We
+            // still need to wait for them: the readers they use can only be used
+            // again (or closed) once they are done with them.
+            aborted.set(true);
+            awaitWorkers(results);
+        }
+
+        return pages;
+    }
+
+    /**
+     * Used to sequentially extract the pages in the range `[first; last]` with
+     * the input reader.
+     * @param reader - the reader to use to extract the pages.
+     * @param first - the index of the first page to extract.
+     * @param last - the index of the last page to extract (included).
+     * @param headings - the array where the levels of the headings of the pages
+     *                   are saved.
+     * @param aborted - set when the extraction should stop before the next page.
+     * @return - the words of each page in the range.
+     * @throws IOException - in case any of the pages cannot be parsed or if the
+     *                       extraction is aborted.
+     */
+    private static ArrayList<WordStore> extract(PdfReader reader, int first, int last, int[] headings, AtomicBoolean aborted) throws IOException {
+        ArrayList<WordStore> pages = new ArrayList<>();
+        Vocabulary vocabulary = new Vocabulary();
+
+        for (int id = first ; id <= last && !aborted.get() && !Thread.currentThread().isInterrupted() ; ++id) {
+            pages.add(extract(reader, id, vocabulary, headings));
+        }
+
+        if (pages.size() != last - first + 1) {
+            throw new IOException("Interrupted while extracting pages " + first + "-" + last);
+        }
+
+        return pages;
+    }
+
+    /**
+     * Used to wait for all the input workers to be finished, whether they succeed
+     * or not. The wait can't be interrupted: in case the calling thread is
+     * interrupted in the meantime the interruption is restored afterwards.
+     * @param results - the results of the workers to wait for.
+     */
+    private static void awaitWorkers(ArrayList<Future<ArrayList<WordStore>>> results) {
+        boolean interrupted = false;
+
+        for (Future<ArrayList<WordStore>> result : results) {
+            boolean done = false;
+            while (!done) {
+                try {
+                    result.get();
+                    done = true;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                catch (ExecutionException e) {
+                    // The failure is handled by the caller if needed.
+                    done = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Used to retrieve the reader associated to the input worker. It is created
+     * if it does not exist yet.
+     * @param worker - the index of the worker.
+     * @return - the reader to be used by this worker.
+     * @throws IOException - in case the reader cannot be created.
+     */
+    private PdfReader getReader(int worker) throws IOException {
+        while (m_readers.size() <= worker) {
+            m_readers.add(createReader());
+        }
+
+        return m_readers.get(worker);
+    }
+
+    /**
+     * Used to retrieve the pool of threads used by the workers. It is created
+     * if it does not exist yet.
+     * @return - the pool of threads of this extractor.
+     */
+    private ExecutorService getPool() {
+        if (m_pool == null) {
+            m_pool = Executors.newFixedThreadPool(Math.max(1, m_workersCount - 1));
+        }
+
+        return m_pool;
+    }
+
+    /**
+     * Used to release the resources used by this extractor. It should not be
+     * used anymore after calling this method.
+     */
+    void close() {
+        // Wait for the workers to be stopped before closing the readers they
+        // might still be using.
+        if (m_pool != null) {
+            m_pool.shutdownNow();
+
+            boolean interrupted = false;
+            boolean terminated = false;
+            while (!terminated) {
+                try {
+                    terminated = m_pool.awaitTermination(1, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            m_pool = null;
+        }
+
+        // Note that the main reader is part of the list.
+        for (PdfReader reader : m_readers) {
+            reader.close();
+        }
+        m_readers.clear();
+        m_data = null;
+        m_path = null;
+    }
+}
@@ -7,9 +7,8 @@ import com.itextpdf.text.pdf.parser.RenderListener;
 import com.itextpdf.text.pdf.parser.TextRenderInfo;
 import com.itextpdf.text.pdf.parser.Vector;
 
-import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.Map;
 
 public class PdfSimpleTextExtractor implements RenderListener {
 
@@ -31,29 +30,6 @@ public class PdfSimpleTextExtractor implements RenderListener {
         Vector end;
     }
 
-    /**
-     * A common pattern describing a string only composed of space characters.
-     * Used to only accept valid words as part of this section.
-     */
-    private static final Pattern SPACE_ONLY_PATTERN = Pattern.compile("^\\s*$");
-
-    /**
-     * A common regular expression allowing to split a string on successive space
-     * characters.
-     */
-    private static final String SPACE_PATTERN = "\\s+";
-
-    /**
-     * A common pattern describing a string starting with some space characters.
-     */
-    private static final Pattern SPACE_BEFORE_PATTERN = Pattern.compile("^\\s+");
-
-    /**
-     * Similar to `SPACE_BEFORE_PATTERN` but for strings ending with some space
-     * characters.
-     */
-    private static final Pattern SPACE_AFTER_PATTERN = Pattern.compile("\\s+$");
-
     /**
      * Convenience value used when determining whether some spacing between two
      * words is enough to consider that they form two distinct words. This value
@@ -63,25 +39,26 @@ public class PdfSimpleTextExtractor implements RenderListener {
     private static final float SPACING_TO_FONT_FACTOR = 5.4f;
 
     /**
-     * Define the list of punctuations symbols that will be collapsed during
-     * the sanitize operation taking place when extracting the words from the
-     * `PDF` document.
+     * The number of words at the beginning of a page which are considered when
+     * looking for a heading. Headings appearing further down in the page are
+     * not detected.
      */
-    private static final String PUNCTUATION = ",?;.:!()°\"'";
+    private static final int HEADING_WORDS_COUNT = 12;
 
     /**
-     * Define the list of currencies that will be collapsed during a sanitize
-     * operation to be linked to their associated numerical value.
+     * The ratios between the size of the text of a heading and the size of the
+     * body text of the page for each level of heading: a text larger than the
+     * body text by the first ratio is a heading of level `1` and so on. Text
+     * smaller than the last ratio is not considered as a heading.
      */
-    private static final String CURRENCIES = "€$£";
+    private static final float[] HEADING_RATIOS = { 1.8f, 1.4f, 1.2f };
 
     /**
-     * Define the list of separators that are used as a way to mark the new
-     * line and other separations in the `PDF` document but that we don't want
-     * to actually interpret.
-     * A word composed of only this character will be discarded.
+     * The resolution used to group the sizes of the text when determining the
+     * size of the body text: sizes closer than `1 / SIZE_RESOLUTION` are
+     * considered equal.
      */
-    private static final String SEPARATOR = "*";
+    private static final float SIZE_RESOLUTION = 2.0f;
 
     /**
      * The list of words parsed by this text extractor. Note that it is only
@@ -91,7 +68,7 @@ public class PdfSimpleTextExtractor implements RenderListener {
      * registered words through the `getWords` method is guaranteed to only
      * return valid words.
      */
-    private ArrayList<String> m_words;
+    private WordStore m_words;
 
     /**
      * Information allowing to keep track of the last parsed information in
@@ -101,138 +78,180 @@ public class PdfSimpleTextExtractor implements RenderListener {
     private LastCoordinates m_last;
 
     /**
-     * The current word we're building from the data of the `PDF` document.
-     * The structure might slice a single word into several elements which
-     * need to be gathered together afterwards. This buffer allows to sort
-     * of accumulate this data before flushing it to a real word in the
-     * `m_words` array.
+     * The tokenizer used to build the words from the data of the `PDF` document.
+     * The structure might slice a single word into several elements which need
+     * to be gathered together afterwards: the tokenizer keeps the current word
+     * open until it is explicitly closed or a space is found.
+     */
+    private WordTokenizer m_tokenizer;
+
+    /**
+     * The number of characters rendered with each size of text in the page. The
+     * keys are the sizes scaled by `SIZE_RESOLUTION` and rounded: the size with
+     * the most characters is the one of the body text.
      */
-    private String m_currentWord;
+    private HashMap<Integer, Integer> m_sizes;
 
     /**
-     * Creates a new extractor with no words registered.
+     * The largest size of text rendered among the first `HEADING_WORDS_COUNT`
+     * words of the page.
      */
-    PdfSimpleTextExtractor() {
-        m_words = new ArrayList<>();
+    private float m_headingSize;
+
+    /**
+     * Creates a new extractor with no words registered. The words are encoded
+     * with the input vocabulary which should only be used by the thread of the
+     * extractor.
+     * @param vocabulary - the vocabulary used to encode the words.
+     */
+    PdfSimpleTextExtractor(Vocabulary vocabulary) {
+        m_words = new WordStore(vocabulary);
 
         m_last = null;
-        m_currentWord = "";
+        m_tokenizer = new WordTokenizer(m_words);
+
+        m_sizes = new HashMap<>();
+        m_headingSize = 0.0f;
+    }
+
+    /**
+     * Used to determine whether the input sequence is only composed of space
+     * characters. Note that an empty sequence is considered as blank.
+     * @param text - the sequence to check.
+     * @return - `true` if the sequence only contains spaces.
+     */
+    private static boolean isBlank(CharSequence text) {
+        for (int id = 0 ; id < text.length() ; ++id) {
+            if (!WordTokenizer.isSpace(text.charAt(id))) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     /**
-     * Return the list of words extracted by this object so far. Note that
-     * this list is filtered and does not contain any empty words. We also
-     * pass a currencies and punctuation filter which prevent words that
-     * are composed only of currencies or punctuations to be added.
-     * @return - a list of the words extracted by this object so far.
+     * Return the list of words extracted by this object. Note that this list
+     * is filtered and does not contain any empty words. We also pass a filter
+     * which prevents words that are composed only of currencies or punctuations
+     * to be added (see `WordTokenizer`).
+     * The word being built is closed by this method: it should only be called
+     * once the whole page has been processed.
+     * @return - a list of the words extracted by this object.
      */
-    ArrayList<String> getWords() {
+    WordStore getWords() {
+        m_tokenizer.finish();
+
         return m_words;
     }
 
     /**
-     * Use to register the `m_currentWord` being built as an actual word
-     * in the `m_words` area. Note that we perform some checks in here to
-     * clean the output by removing empty words, concatenating words only
-     * composed of currencies or punctuations to the previous ones, etc.
+     * Used to determine whether the page starts with a heading. We consider that
+     * it is the case when some text among the first words of the page is larger
+     * than the body text of the page. The level of the heading depends on how
+     * much larger it is (see `HEADING_RATIOS`).
+     * This should only be called once the whole page has been processed.
+     * @return - the level of the heading starting the page (starting at `1`) or
+     *           `-1` in case no heading could be detected.
      */
-    private void closeWord() {
-        // In order to be ready to return from this method at any moment
-        // we will first copy the `m_currentWord` to a local attribute
-        // and work on this for the rest of the method: this allows to
-        // clean the `m_currentWord` right away.
-        String word = m_currentWord;
-        m_currentWord = "";
-
-        // In case the word does not exist or is empty, we don't do anything.
-        if (word == null || word.isEmpty()) {
-            return;
+    int getHeadingLevel() {
+        // Find the size of the body text.
+        int bodyKey = -1;
+        int bodyCount = 0;
+        for (Map.Entry<Integer, Integer> size : m_sizes.entrySet()) {
+            if (size.getValue() > bodyCount) {
+                bodyKey = size.getKey();
+                bodyCount = size.getValue();
+            }
         }
 
-        // Trash words composed only of spaces.
-        Matcher matcher = SPACE_ONLY_PATTERN.matcher(word);
-        if (matcher.matches()) {
+        if (bodyKey <= 0) {
+            return -1;
+        }
+
+        float ratio = m_headingSize * SIZE_RESOLUTION / bodyKey;
+        for (int level = 0 ; level < HEADING_RATIOS.length ; ++level) {
+            if (ratio >= HEADING_RATIOS[level]) {
+                return level + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Used to register the size of the input text to detect the headings of the
+     * page. The size is the distance between the ascent and descent lines of the
+     * text so that it accounts for any scaling applied to the font.
+     * @param renderInfo - the information about the text.
+     */
+    private void registerSize(TextRenderInfo renderInfo) {
+        String text = renderInfo.getText();
+        if (text == null || isBlank(text)) {
             return;
         }
 
-        // Trash words composed only of separators.
-        if (word.length() == 1 && SEPARATOR.contains(word)) {
+        float size = renderInfo.getAscentLine().getStartPoint().subtract(renderInfo.getDescentLine().getStartPoint()).length();
+        int key = Math.round(size * SIZE_RESOLUTION);
+        if (key <= 0) {
             return;
         }
 
-        // Check whether this word is composed only of a single punctuation
-        // or currency character: if this is the case we will concatenate
-        // it to the previous word (if any).
-        if (!m_words.isEmpty() && word.length() == 1 && (PUNCTUATION.contains(word) || CURRENCIES.contains(word))) {
-            String c = m_words.get(m_words.size() - 1).concat(word);
-            m_words.set(m_words.size() - 1, c);
+        Integer count = m_sizes.get(key);
+        m_sizes.put(key, (count == null ? 0 : count) + text.length());
 
-            return;
+        if (m_tokenizer.getCount() < HEADING_WORDS_COUNT) {
+            m_headingSize = Math.max(m_headingSize, size);
         }
+    }
 
-        // The word is valid, register it.
-        m_words.add(word);
+    /**
+     * Used to close the word being built: the next text will start a new
+     * word.
+     */
+    private void closeWord() {
+        m_tokenizer.breakWord();
     }
 
     /**
      * Used to perform the analysis of the input string and to append the
-     * needed bits to the `m_currentWord` and closing it if needed until
-     * there's no more characters in the input string. We will also perform
-     * some cleaning and sanitizing on the input string so as not to fill
-     * the `m_words` array with junk.
-     * @param text - the text to analyze and append to the `m_currentWord`
-     *               if needed.
+     * needed bits to the current word and closing it if needed until there's
+     * no more characters in the input string. We will also perform some
+     * cleaning and sanitizing on the input string so as not to fill the
+     * `m_words` array with junk.
+     * @param text - the text to analyze and append to the current word if
+     *               needed.
      */
-    private void appendToCurrent(String text) {
+    void appendToCurrent(String text) {
         // Check whether the text is valid: if this is not the case we will
         // return immediately.
         if (text == null || text.isEmpty()) {
             return;
         }
 
-        // In case the input word starts with some space characters we will
-        // terminate the current word and start a new one. We will also keep
-        // track of whether this word ends with some space characters to be
-        // able to correctly terminate the last word.
-        boolean spaceBefore = SPACE_BEFORE_PATTERN.matcher(text).matches();
-        boolean spaceAfter = SPACE_AFTER_PATTERN.matcher(text).matches();
-
-        // Trim the spaces from the input text now that we retrieved and
-        // saved the relevant information.
-        text = text.trim();
-
-        // Close the current word if the string starts with some spaces.
-        if (spaceBefore) {
+        // In case the input text is only composed of spaces we will simply
+        // terminate the current word and start a new one.
+        if (isBlank(text)) {
             closeWord();
+            return;
         }
 
-        // Split the string on `spaces` so as to register each word.
-        String[] words = text.split(SPACE_PATTERN);
-
-        // In case no words are found, do nothing.
-        if (words.length > 0) {
-            // Traverse the input list and handle the words.
-            for (int id = 0 ; id < words.length ; ++id) {
-                // Append the current word to the existing word being built:
-                // this will guarantee that the first word gets appended to
-                // any existing data and that the subsequent ones can be
-                // processed with the checks being performed in `closeWord`.
-                m_currentWord = m_currentWord.concat(words[id]);
-
-                // Close this word as we're splitting on spaces. This is
-                // except for the last one as we might not have a space
-                // to separate from other words.
-                if (id < words.length - 1) {
-                    closeWord();
-                }
-            }
+        // Ignore the leading and trailing control and space characters, just
+        // like a `trim` would do.
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            ++start;
         }
-
-        // Close the running word if the initial string finished with some
-        // space characters.
-        if (spaceAfter) {
-            closeWord();
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            --end;
         }
+
+        // Feed the text to the tokenizer which splits it on `spaces` so as to
+        // register each word. The first word gets appended to any existing data
+        // and the last word is not closed as we might not have a space to
+        // separate it from other words.
+        m_tokenizer.append(text, start, end);
     }
 
     @Override
@@ -299,7 +318,9 @@ public class PdfSimpleTextExtractor implements RenderListener {
             }
         }
 
-        // We now need to register the text to the current word.
+        // Keep track of the size of the text to detect headings and then register
+        // the text to the current word.
+        registerSize(renderInfo);
         appendToCurrent(renderInfo.getText());
 
         if (firstRender) {
@@ -1,77 +1,357 @@
 package knoblauch.readdesc.model;
 
+import android.content.ContentResolver;
 import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.Pair;
 
-import com.itextpdf.text.pdf.PdfReader;
-import com.itextpdf.text.pdf.parser.PdfReaderContentParser;
-
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 
-class PdfSourceLoader extends ReadLoader {
+class PdfSourceLoader extends ReadLoader implements ReadCache.Incremental {
 
     /**
      * Convenience class allowing to keep track of all the relevant information
-     * needed to find the words associated to a specified page in the general
-     * `m_words` map.
+     * needed to find the words associated to the pages in the general `m_words`
+     * array. The offsets of the pages are stored in primitive arrays indexed by
+     * the index of the page so that accessing the words of a page does not need
+     * any hashing nor boxing: this is important as it happens several times for
+     * each word displayed to the user.
      */
-    private static class PageInfo {
+    private static class PageTable {
+
+        /**
+         * The index of the first word of each page in the general `m_words` array.
+         * The value is only relevant for pages marked as loaded in `m_loaded`.
+         */
+        int[] m_starts;
+
+        /**
+         * Similar to the `m_starts` but holds the index of the first word *after*
+         * each page in the `m_words` array.
+         */
+        int[] m_ends;
+
+        /**
+         * Defines which pages are currently loaded: only the offsets of these pages
+         * are relevant.
+         */
+        BitSet m_loaded;
+
+        /**
+         * The number of pages currently loaded. This is kept up to date so that we
+         * don't need to count the bits of `m_loaded` to get this information.
+         */
+        int m_loadedCount;
+
+        /**
+         * The index of the page the user is currently reading. It is updated each
+         * time the virtual cursor moves and is used to determine which pages can
+         * be evicted. As the table is shared by all the copies of the loader this
+         * is always the position of the most recent cursor even when the eviction
+         * happens in a loading operation started from an older copy. It is `-1`
+         * in case the cursor is not positioned yet.
+         */
+        int m_readPage;
+
+        /**
+         * Create a new empty table.
+         */
+        PageTable() {
+            m_starts = new int[0];
+            m_ends = new int[0];
+            m_loaded = new BitSet();
+            m_loadedCount = 0;
+            m_readPage = -1;
+        }
+
+        /**
+         * Returns the index of the page the user is currently reading.
+         * @return - the index of the page or `-1` if the cursor is not positioned.
+         */
+        int getReadPage() {
+            return m_readPage;
+        }
+
+        /**
+         * Used to register the index of the page the user is currently reading.
+         * @param id - the index of the page.
+         */
+        void setReadPage(int id) {
+            m_readPage = id;
+        }
+
+        /**
+         * Used to make sure that the table can hold information for at least the
+         * specified number of pages.
+         * @param count - the number of pages the table should be able to hold.
+         */
+        void resize(int count) {
+            if (count <= m_starts.length) {
+                return;
+            }
+
+            m_starts = Arrays.copyOf(m_starts, count);
+            m_ends = Arrays.copyOf(m_ends, count);
+        }
 
         /**
-         * The index of the first word of the page in the general `m_words` map.
-         * This index should be valid relatively to the bounds of the map and is
-         * not checked in any way after being initialized.
+         * Returns `true` in case no page is loaded.
+         * @return - `true` if no page is loaded.
          */
-        int m_startIndex;
+        boolean isEmpty() {
+            return m_loadedCount == 0;
+        }
 
         /**
-         * Similar to the `m_startIndex` but holds the index of the last word of
-         * the page in the `m_words` map. This word *is* part of the page (so the
-         * next one is not).
+         * Returns the number of pages loaded.
+         * @return - the number of pages loaded.
          */
-        int m_endIndex;
+        int size() {
+            return m_loadedCount;
+        }
+
+        /**
+         * Used to determine whether the input page is loaded.
+         * @param id - the index of the page.
+         * @return - `true` if the page is loaded and `false` otherwise (including
+         *           when the index is out of bounds).
+         */
+        boolean contains(int id) {
+            return id >= 0 && id < m_starts.length && m_loaded.get(id);
+        }
+
+        /**
+         * Used to retrieve the index of the first word of the input page. The
+         * page is assumed to be loaded.
+         * @param id - the index of the page.
+         * @return - the index of the first word of the page in `m_words`.
+         */
+        int getStart(int id) {
+            return m_starts[id];
+        }
+
+        /**
+         * Used to retrieve the index of the first word after the input page. The
+         * page is assumed to be loaded.
+         * @param id - the index of the page.
+         * @return - the index of the first word after the page in `m_words`.
+         */
+        int getEnd(int id) {
+            return m_ends[id];
+        }
 
         /**
          * Used as a convenience method to retrieve the number of words defined
-         * for this page. This is just a basic subtraction between the starting
-         * index and end index but it is convenient to have this as a method
-         * rather than computing it everywhere.
+         * for the input page. The page is assumed to be loaded.
+         * @param id - the index of the page.
          * @return - the number of words defined for this page.
          */
-        int getWordsCount() {
-            return m_endIndex - m_startIndex;
+        int getWordsCount(int id) {
+            return m_ends[id] - m_starts[id];
+        }
+
+        /**
+         * Used to register the offsets of the input page and mark it as loaded.
+         * @param id - the index of the page.
+         * @param start - the index of the first word of the page.
+         * @param end - the index of the first word after the page.
+         */
+        void register(int id, int start, int end) {
+            resize(id + 1);
+
+            m_starts[id] = start;
+            m_ends[id] = end;
+
+            if (!m_loaded.get(id)) {
+                m_loaded.set(id);
+                ++m_loadedCount;
+            }
+        }
+
+        /**
+         * Used to mark the input page as not loaded anymore.
+         * @param id - the index of the page.
+         */
+        void remove(int id) {
+            if (contains(id)) {
+                m_loaded.clear(id);
+                --m_loadedCount;
+            }
+        }
+
+        /**
+         * Used to retrieve the index of the first loaded page after or at the
+         * input index.
+         * @param from - the index from which the search should start.
+         * @return - the index of the next loaded page or `-1` if there is none.
+         */
+        int nextLoaded(int from) {
+            return m_loaded.nextSetBit(Math.max(0, from));
+        }
+    }
+
+    /**
+     * Convenience class allowing to keep the extractor on the `PDF` document
+     * opened between several loading operations. This avoids to parse again
+     * the structure of the document each time a page needs to be loaded: only
+     * the content of the page itself is read.
+     * The session is shared by all the copies of the loader. The extractor is
+     * only used by one loading operation at a time (they are executed one
+     * after the other) but the session can be closed from the main thread
+     * while a loading operation is running: in this case the extractor is
+     * closed when the operation is finished.
+     */
+    private static class Session {
+
+        /**
+         * The extractor kept opened between the loading operations. It is `null`
+         * in case no extractor is available.
+         */
+        private PdfPagesExtractor m_extractor;
+
+        /**
+         * Whether a loading operation is currently using the extractor.
+         */
+        private boolean m_busy;
+
+        /**
+         * Whether the session has been closed while a loading operation was using
+         * the extractor.
+         */
+        private boolean m_closeRequested;
+
+        /**
+         * Used by a loading operation to retrieve the extractor of this session.
+         * It should be given back through `release` once the operation is done.
+         * @return - the extractor or `null` if none is available.
+         */
+        synchronized PdfPagesExtractor acquire() {
+            m_busy = true;
+            m_closeRequested = false;
+
+            return m_extractor;
+        }
+
+        /**
+         * Used by a loading operation to give back the extractor to this session.
+         * It is kept for the next loading operation unless the session has been
+         * closed in the meantime.
+         * @param extractor - the extractor to keep. Can be `null`.
+         */
+        synchronized void release(PdfPagesExtractor extractor) {
+            m_busy = false;
+            m_extractor = extractor;
+
+            if (m_closeRequested) {
+                close();
+            }
         }
 
         /**
-         * Used to compute the general index of a word described by its index by
-         * assuming it is part of the page. We basically just offset it with the
-         * `m_startIndex` and make no controls to check whether it is valid based
-         * on the number of words contained in this page.
-         * @param index - the local index to be converted into general index.
-         * @return - the general index assuming the input `index` refers to a word
-         *           in this page.
+         * Used to close the extractor of this session. In case it is used by a
+         * loading operation it will be closed when it is given back.
+         */
+        synchronized void close() {
+            if (m_busy) {
+                m_closeRequested = true;
+                return;
+            }
+
+            if (m_extractor != null) {
+                m_extractor.close();
+                m_extractor = null;
+            }
+
+            m_closeRequested = false;
+        }
+    }
+
+    /**
+     * Convenience class allowing to keep track of the data of the document that
+     * is already saved in the cache. The pages are appended to the cache as they
+     * are extracted and are never removed from it, even when they are evicted
+     * from memory: this allows to restore them in a later session without having
+     * to extract them again.
+     * The state is shared by all the copies of the loader and is protected by
+     * their common lock.
+     */
+    private static class CacheState {
+
+        /**
+         * Defines which pages are saved in the cache.
+         */
+        BitSet m_pages;
+
+        /**
+         * Whether the sections saved in the cache match the current ones.
+         */
+        boolean m_sectionsSaved;
+
+        /**
+         * Create a new state where nothing is saved in the cache.
          */
-        int computeWordIndex(int index) {
-            return m_startIndex + index;
+        CacheState() {
+            m_pages = new BitSet();
+            m_sectionsSaved = false;
         }
     }
 
     /**
-     * Defines how many pages surrounding the desired progress location should be
-     * loaded upon each parsing operation. The larger this value the more buffer
-     * is created to provide a lag-free reading experience to the user but also
-     * the longer it will take to load this data in the first place. Note that it
-     * will be applied on the direction that _makes sense_: for example if the
-     * source already has the page `2-3` available and the user is requesting
-     * page `4` we will load this many pages *after* page `4` (so pages `5`, `6`
-     * and so on).
-     * This value is used internally in the `loadFromSource` method.
+     * A convenience value returned when a motion could be applied without any
+     * need to load data. It avoids to create a new object for each word.
      */
-    private static final int LOAD_SURROUNDING_PAGES_COUNT = 4;
+    private static final Pair<Boolean, Boolean> MOTION_APPLIED = new Pair<>(true, false);
+
+    /**
+     * A rough estimation of the memory used by a single word loaded from the
+     * source in bytes. It accounts for the token of the word in the `m_words`
+     * store along with the spare capacity of the store and a share of the
+     * vocabulary. It is used to convert a memory budget into a number of words.
+     * Note that the vocabulary is not reduced when pages are evicted: it only
+     * grows with the number of distinct words of the document.
+     */
+    private static final int BYTES_PER_WORD_ESTIMATE = 12;
+
+    /**
+     * The fraction of the maximum heap size of the application that can be
+     * used by default to keep the words of the pages loaded in memory.
+     */
+    private static final float DEFAULT_MEMORY_BUDGET_RATIO = 0.125f;
+
+    /**
+     * The minimum number of words that can be kept in memory no matter the
+     * memory budget. This guarantees that a few pages can always be loaded.
+     */
+    private static final int MIN_WORDS_BUDGET = 10000;
+
+    /**
+     * When the budget is exceeded pages are evicted until the number of words
+     * in memory goes below this fraction of the budget. This prevents to have
+     * to compact the words each time a new page is loaded.
+     */
+    private static final float EVICTION_TARGET_RATIO = 0.75f;
+
+    /**
+     * The tag of the records describing the words of a page in the cache.
+     */
+    private static final int PAGE_RECORD = 1;
+
+    /**
+     * The tag of the records describing the sections of the document in the
+     * cache. In case several such records exist the last one is used.
+     */
+    private static final int SECTIONS_RECORD = 2;
 
     /**
      * An information read from the data source itself when being parsed to
@@ -88,7 +368,7 @@ class PdfSourceLoader extends ReadLoader {
      * in this global array and also allows to quickly determine whether the
      * data for a specific page is already available.
      */
-    private HashMap<Integer, PageInfo> m_pages;
+    private PageTable m_pages;
 
     /**
      * The list of words currently registered and loaded from the data source.
@@ -99,8 +379,13 @@ class PdfSourceLoader extends ReadLoader {
      * This global array should be used in coordination with the `m_pagesInfo`
      * element which keep track of the starting and end element of each page
      * loaded so far.
+     * The words are kept in a compact store rather than as individual strings: each
+     * word is a token of a vocabulary shared by the whole read and a `String` is
+     * only created for the words actually displayed.
+     * The loading thread publishes the words by batches: the accessors read them
+     * through the last published snapshot which is never modified afterwards.
      */
-    private ArrayList<String> m_words;
+    private WordStore m_words;
 
     /**
      * Defines the index of the page currently being viewed by the user. It
@@ -121,6 +406,60 @@ class PdfSourceLoader extends ReadLoader {
      */
     private int m_wordID;
 
+    /**
+     * The policy used to determine how many pages should be loaded ahead of
+     * the page currently being read. It is shared by all the copies of this
+     * loader so that the measures of the extraction speed are preserved from
+     * one loading operation to the next.
+     */
+    private PagesPrefetchPolicy m_policy;
+
+    /**
+     * The session holding the extractor on the `PDF` document. It is shared by
+     * all the copies of this loader.
+     */
+    private Session m_session;
+
+    /**
+     * The maximum number of words that can be kept in memory. When loading a
+     * new page makes the `m_words` array exceed this value the pages farthest
+     * from the current one are evicted. They will be loaded again in case the
+     * user navigates back to them.
+     */
+    private int m_wordsBudget;
+
+    /**
+     * The index of the sections of the document. Unlike for other sources the
+     * sections are indexed by page: the start of each section is the index of
+     * the page it starts at. This allows to know where a section is located
+     * without having loaded the corresponding page.
+     * The sections are read from the outline of the document when it defines
+     * one. Otherwise they are built from the headings detected at the start of
+     * the pages as they are extracted. The index is shared by all the copies of
+     * this loader.
+     */
+    private SectionIndex m_sections;
+
+    /**
+     * Whether the sections of the document have been read from its outline. In
+     * case the document does not define an outline this is still set (so that
+     * we don't try to read it again) but the index is empty.
+     */
+    private boolean m_outlineRead;
+
+    /**
+     * Whether the sections of `m_sections` come from the outline of the document.
+     * Otherwise they come from the headings detected in the pages.
+     */
+    private boolean m_fromOutline;
+
+    /**
+     * Describes which data is already saved in the cache. It allows to only append
+     * the new pages to the cache instead of saving all of them each time a page is
+     * loaded. It is shared by all the copies of this loader.
+     */
+    private CacheState m_saved;
+
     /**
      * Create a new `PDF` source loader from the specified arguments. Will call
      * the base class constructor and forward the arguments. Note that we don't
@@ -137,12 +476,25 @@ class PdfSourceLoader extends ReadLoader {
 
         // Initialize the data with no words so far (and no pages neither).
         m_pagesCount = 0;
-        m_pages  = new HashMap<>();
-        m_words = new ArrayList<>();
+        m_pages = new PageTable();
+        m_words = new WordStore(new Vocabulary());
 
         // At first we don't have any valid position information.
         m_pageID = -1;
         m_wordID = -1;
+
+        m_policy = new PagesPrefetchPolicy();
+        m_session = new Session();
+
+        m_sections = new SectionIndex();
+        m_outlineRead = false;
+        m_fromOutline = false;
+
+        m_saved = new CacheState();
+
+        // Use a default budget based on the memory available to the application.
+        long budget = Math.round(DEFAULT_MEMORY_BUDGET_RATIO * Runtime.getRuntime().maxMemory());
+        setMemoryBudget(budget);
     }
 
     /**
@@ -163,6 +515,15 @@ class PdfSourceLoader extends ReadLoader {
         m_pageID = other.m_pageID;
         m_wordID = other.m_wordID;
 
+        m_policy = other.m_policy;
+        m_session = other.m_session;
+        m_wordsBudget = other.m_wordsBudget;
+
+        m_sections = other.m_sections;
+        m_outlineRead = other.m_outlineRead;
+        m_fromOutline = other.m_fromOutline;
+
+        m_saved = other.m_saved;
     }
 
     /**
@@ -179,16 +540,15 @@ class PdfSourceLoader extends ReadLoader {
     }
 
     /**
-     * Used to retrieve the current page information. Note that this method
-     * assumes that the locker is already acquired so it is not thread-safe.
-     * It may return `null` in case no pages are defined yet for this source
-     * or if the page count references an invalid page.
+     * Used to retrieve the number of words of the current page. Note that this
+     * method assumes that the locker is already acquired so it is not thread
+     * safe.
      * One should always check the the current page is valid through the
      * `isValidPage` method before using this method.
-     * @return - the page info as the struct defined in the `m_pagesInfo` map.
+     * @return - the number of words of the current page.
      */
-    private PageInfo getCurrentPageInfo() {
-        return m_pages.get(m_pageID);
+    private int getCurrentWordsCount() {
+        return m_pages.getWordsCount(m_pageID);
     }
 
     /**
@@ -199,7 +559,7 @@ class PdfSourceLoader extends ReadLoader {
      *           the information available in the loader and `false` otherwise.
      */
     private boolean isValidPage() {
-        return !m_pages.isEmpty() && m_pages.containsKey(m_pageID);
+        return m_pages.contains(m_pageID);
     }
 
     /**
@@ -216,13 +576,10 @@ class PdfSourceLoader extends ReadLoader {
             return false;
         }
 
-        // Retrieve the current page's information.
-        PageInfo pi = getCurrentPageInfo();
-        int gID = pi.computeWordIndex(m_wordID);
-
         // Check both that the `m_wordID` is valid and that the general index
         // computed from this index is also valid.
-        return m_wordID >= 0 && m_wordID < pi.getWordsCount() && gID >= 0 && gID < m_words.size();
+        int gID = m_pages.getStart(m_pageID) + m_wordID;
+        return m_wordID >= 0 && m_wordID < getCurrentWordsCount() && gID >= 0 && gID < m_words.getSnapshot().size();
     }
 
     /**
@@ -230,37 +587,135 @@ class PdfSourceLoader extends ReadLoader {
      * This method will try to acquire the locker on this object before proceeding
      * to the registration of the data. In case a page with a similar `id` already
      * exists nothing happens.
+     * In case the document does not define an outline, the heading detected at
+     * the beginning of the page (if any) is registered as a new section.
      * @param id - the index of the page to create.
      * @param words - the words associated to this page.
+     * @param heading - the level of the heading starting the page or a negative
+     *                  value in case there's none.
      */
-    private void handlePageCreation(int id, ArrayList<String> words) {
+    private void handlePageCreation(int id, WordStore words, int heading) {
         // Acquire the lock to protect from concurrent accesses.
         m_locker.lock();
 
         try {
             // Check whether this page already exists.
-            if (m_pages.containsKey(id)) {
+            if (m_pages.contains(id)) {
                 // Don't add the page again.
                 return;
             }
 
-            // Create the key describing the page.
-            PageInfo pi = new PageInfo();
-            pi.m_startIndex = m_words.size();
-            pi.m_endIndex = pi.m_startIndex + words.size();
+            // Register both the offsets of the page and the words. The table is
+            // sized for the whole document so that it is only allocated once.
+            m_pages.resize(m_pagesCount);
+            m_pages.register(id, m_words.size(), m_words.size() + words.size());
+            m_words.addAll(words, 0, words.size());
+            m_words.publish();
+
+            // Register the section starting at this page.
+            if (!m_fromOutline && heading >= 0 && !words.isEmpty()) {
+                m_sections.insert(id, heading);
+                m_saved.m_sectionsSaved = false;
+            }
+
+            // The cache does not contain this page yet.
+            m_cacheOutdated = true;
 
-            // Register both the key and the words.
-            m_pages.put(id, pi);
-            m_words.addAll(words);
+            // Make sure we stay within the memory budget.
+            evictPages();
         }
         finally {
             m_locker.unlock();
         }
     }
 
+    /**
+     * Used to evict the pages farthest from the current one in case the number
+     * of words loaded exceeds the budget. The pages surrounding the current one
+     * (the previous page and the lookahead window) are never evicted so that the
+     * reading can continue without loading anything.
+     * The current page is read from the shared table of pages rather than from
+     * the cursor of this loader: the eviction might happen in a loading operation
+     * started from a copy whose cursor has moved since.
+     * The evicted pages are only removed from memory: once saved they are kept in
+     * the cache (see `appendToCache`) so that the next session can restore them.
+     * Once the pages are evicted the `m_words` array is compacted so that it only
+     * contains the words of the remaining pages. Note that the store is updated
+     * in place as it is shared with the copies of this loader: the snapshots
+     * published before the compaction are not modified.
+     * This method assumes that the locker is already acquired.
+     */
+    private void evictPages() {
+        // We can't determine which pages are far from the current one in case the
+        // cursor is not positioned yet.
+        final int pageID = m_pages.getReadPage();
+        if (pageID < 0 || m_words.size() <= m_wordsBudget) {
+            return;
+        }
+
+        // Gather the pages that can be evicted.
+        int low = pageID - 1;
+        int high = pageID + m_policy.getLookahead();
+
+        ArrayList<Integer> candidates = new ArrayList<>();
+        for (int id = m_pages.nextLoaded(0) ; id >= 0 ; id = m_pages.nextLoaded(id + 1)) {
+            if (id < low || id > high) {
+                candidates.add(id);
+            }
+        }
+
+        // Sort them so that the farthest pages from the current one come first.
+        Collections.sort(candidates, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return Math.abs(rhs - pageID) - Math.abs(lhs - pageID);
+            }
+        });
+
+        // Evict pages until we reach the target.
+        int target = Math.round(EVICTION_TARGET_RATIO * m_wordsBudget);
+        int words = m_words.size();
+        int id = 0;
+
+        while (id < candidates.size() && words > target) {
+            int page = candidates.get(id);
+            words -= m_pages.getWordsCount(page);
+            m_pages.remove(page);
+            ++id;
+        }
+
+        if (id == 0) {
+            // Nothing could be evicted, the budget is too small for the pages
+            // surrounding the current one.
+            return;
+        }
+
+        // Compact the words of the remaining pages and update their offsets.
+        WordStore compacted = m_words.createEmpty();
+        for (int page = m_pages.nextLoaded(0) ; page >= 0 ; page = m_pages.nextLoaded(page + 1)) {
+            int start = compacted.size();
+            compacted.addAll(m_words, m_pages.getStart(page), m_pages.getEnd(page));
+
+            m_pages.register(page, start, compacted.size());
+        }
+
+        m_words.assign(compacted);
+        m_words.publish();
+    }
+
+    @Override
+    void setMemoryBudget(long bytes) {
+        long words = bytes / BYTES_PER_WORD_ESTIMATE;
+
+        m_locker.lock();
+        m_wordsBudget = (int)Math.min(Integer.MAX_VALUE, Math.max(MIN_WORDS_BUDGET, words));
+        evictPages();
+        m_locker.unlock();
+    }
+
     @Override
     boolean isInvalid() {
-        return m_pages.isEmpty() || m_words.isEmpty() || !isValidPage() || !isValidWord();
+        return m_pages.isEmpty() || m_words.getSnapshot().isEmpty() || !isValidPage() || !isValidWord();
     }
 
     @Override
@@ -280,9 +735,7 @@ class PdfSourceLoader extends ReadLoader {
 
         // In case the current page is valid we can refine our judgment.
         if (isValidPage()) {
-            PageInfo pi = getCurrentPageInfo();
-
-            atEnd = (m_pageID == m_pagesCount - 1 && m_wordID == pi.getWordsCount() - 1);
+            atEnd = (m_pageID == m_pagesCount - 1 && m_wordID == getCurrentWordsCount() - 1);
         }
 
         m_locker.unlock();
@@ -302,7 +755,7 @@ class PdfSourceLoader extends ReadLoader {
         if (isInvalid()) {
             // If no data exists in this parser, return the desired progression if
             // the task is still running.
-            if (m_pages.isEmpty() && m_words.isEmpty()) {
+            if (m_pages.isEmpty() && m_words.getSnapshot().isEmpty()) {
                 progress = m_progress;
             }
             else {
@@ -315,10 +768,8 @@ class PdfSourceLoader extends ReadLoader {
                     // we find a loaded page. The first word of this page will be used
                     // as the last valid progression reached.
                     int pageID = m_pageID;
-                    PageInfo pi = m_pages.get(pageID);
-                    while (pi == null && pageID < m_pagesCount) {
+                    while (!m_pages.contains(pageID) && pageID < m_pagesCount) {
                         ++pageID;
-                        pi = m_pages.get(pageID);
                     }
 
                     // Note that we might have fail to find a valid loaded page: in this
@@ -330,16 +781,15 @@ class PdfSourceLoader extends ReadLoader {
                     // we find a loaded page. The last word of this page will be used
                     // as the last valid progression reached.
                     int pageID = m_pageID;
-                    PageInfo pi = m_pages.get(pageID);
-                    while (pi == null && pageID >= 0) {
+                    while (!m_pages.contains(pageID) && pageID >= 0) {
                         --pageID;
-                        pi = m_pages.get(pageID);
                     }
 
                     // Determine whether we reached a valid page: if this is not the case
                     // we will assume that an empty progression is better than nothing.
-                    if (pi != null) {
-                        float pProgress = 1.0f * Math.max(0, pi.getWordsCount() - 1) / Math.max(1, pi.getWordsCount());
+                    if (m_pages.contains(pageID)) {
+                        int count = m_pages.getWordsCount(pageID);
+                        float pProgress = 1.0f * Math.max(0, count - 1) / Math.max(1, count);
                         float pagePercentage = 1.0f / m_pagesCount;
                         progress = 1.0f * pageID / m_pagesCount + pProgress * pagePercentage;
                     }
@@ -347,13 +797,11 @@ class PdfSourceLoader extends ReadLoader {
             }
         }
         else {
-            PageInfo pi = getCurrentPageInfo();
-
             // The progress is the concatenation of the percentage of the page
             // in the global read and the percentage of the word inside this page.
             // We account for empty pages in the division (so as not to divide by
             // `0`).
-            float pProgress = 1.0f * m_wordID / Math.max(1, pi.getWordsCount());
+            float pProgress = 1.0f * m_wordID / Math.max(1, getCurrentWordsCount());
             float pagePercentage = 1.0f / m_pagesCount;
             progress = 1.0f * m_pageID / m_pagesCount + pProgress * pagePercentage;
         }
@@ -364,106 +812,53 @@ class PdfSourceLoader extends ReadLoader {
     }
 
     @Override
-    String getCurrentWord() {
-        m_locker.lock();
-
-        // In case the parser is not a valid state, do nothing. This include cases
-        // where the page is not valid or the word within the page is not valid.
-        // Long story short after this test we can access the page and the word's
-        // information safely.
-        if (isInvalid()) {
-            m_locker.unlock();
-            return "";
-        }
-
-        // Retrieve the word at the index specified both by the active page and
-        // the active word within this page.
-        PageInfo pi = getCurrentPageInfo();
-        int gID = pi.computeWordIndex(m_wordID);
-        String word = m_words.get(gID);
-
-        m_locker.unlock();
-
-        return word;
-    }
-
-    @Override
-    String getPreviousWord() {
-        m_locker.lock();
-
-        // We need to check that the parser is in a valid state to be able to
-        // retrieve the next word. We should also check that the data loaded
-        // allows to fetch this word. This might not always be the case for
-        // example if the reader is currently loading the first loaded page
-        // and the first word of said page is displayed.
-        if (isInvalid()) {
-            m_locker.unlock();
-            return "";
-        }
-
-        // Retrieve the current page's information.
-        PageInfo pi = getCurrentPageInfo();
-        // Update this in case the current word points to the first word of
-        // the page.
-        if (m_wordID == 0) {
-            pi = m_pages.get(m_pageID - 1);
-        }
+    void fillWords(int first, String[] words) {
+        Arrays.fill(words, "");
+
+        // All the words are read from the same snapshot. The words of a page are
+        // contiguous in it so we only need to look up the page table when the
+        // window crosses the boundary of a page. Only the pages that are loaded
+        // can be crossed.
+        WordStore.Snapshot snapshot = m_words.getSnapshot();
+
+        // Walk backwards from the current word to fetch the words before it.
+        int pageID = m_pageID;
+        int wordID = m_wordID;
+        boolean valid = true;
+
+        for (int offset = -1 ; offset >= first && valid ; --offset) {
+            --wordID;
+            while (valid && wordID < 0) {
+                --pageID;
+                valid = m_pages.contains(pageID);
+                if (valid) {
+                    wordID += m_pages.getWordsCount(pageID);
+                }
+            }
 
-        // Check whether this page is valid: this should always be the case
-        // as we perform a preemptive loading in case we reach the second
-        // word of the page.
-        if (pi == null) {
-            m_locker.unlock();
-            return "";
+            if (valid && offset - first < words.length) {
+                words[offset - first] = snapshot.get(m_pages.getStart(pageID) + wordID);
+            }
         }
 
-        // Otherwise return the corresponding word.
-        int wID = (m_wordID == 0 ? pi.getWordsCount() - 1 : m_wordID - 1);
-        int gID = pi.computeWordIndex(wID);
-        String word = m_words.get(gID);
-
-        m_locker.unlock();
+        // Walk forward from the current word to fetch the words after it.
+        pageID = m_pageID;
+        wordID = m_wordID;
+        valid = true;
 
-        return word;
-    }
-
-    @Override
-    String getNextWord() {
-        m_locker.lock();
-
-        // We need to check that the parser is in a valid state and that the
-        // data for the next word is loaded. This is not always the case if
-        // we're currently displaying the last word of the last loaded page.
-        // Note that in this case we will return an empty string.
-        if (isInvalid()) {
-            m_locker.unlock();
-            return "";
-        }
+        for (int offset = 0 ; offset < first + words.length && valid ; ++offset) {
+            while (valid && wordID >= m_pages.getWordsCount(pageID)) {
+                wordID -= m_pages.getWordsCount(pageID);
+                ++pageID;
+                valid = m_pages.contains(pageID);
+            }
 
-        // Retrieve the current page's info.
-        PageInfo pi = getCurrentPageInfo();
-        // Update this in case the current word points to the last word of
-        // the page.
-        if (m_wordID == pi.getWordsCount() - 1) {
-            pi = m_pages.get(m_pageID + 1);
-        }
+            if (valid && offset >= first) {
+                words[offset - first] = snapshot.get(m_pages.getStart(pageID) + wordID);
+            }
 
-        // Check whether this page is valid: this should always be the case
-        // as we perform a preemptive load of the next page in case we reach
-        // the second to last word.
-        if (pi == null) {
-            m_locker.unlock();
-            return "";
+            ++wordID;
         }
-
-        // Otherwise return the corresponding word.
-        int wID = (m_wordID == pi.getWordsCount() ? 0 : m_wordID + 1);
-        int gID = pi.computeWordIndex(wID);
-        String word = m_words.get(gID);
-
-        m_locker.unlock();
-
-        return word;
     }
 
     @Override
@@ -474,6 +869,15 @@ class PdfSourceLoader extends ReadLoader {
             return new Pair<>(false, false);
         }
 
+        // Handle the most common case first: moving to the next word inside the
+        // current page. As long as the new word is not the last one of the page
+        // we don't need to check anything else.
+        if (action == Action.NextWord && m_wordID < getCurrentWordsCount() - 2) {
+            ++m_wordID;
+
+            return MOTION_APPLIED;
+        }
+
         // Save the indices to see whether we could apply at least part of the
         // motion.
         int sPageID = m_pageID;
@@ -489,9 +893,21 @@ class PdfSourceLoader extends ReadLoader {
                 ++m_wordID;
                 break;
             case PreviousStep:
-                // We want to move either to the beginning of this page in case
-                // we're not already at the beginning and to the beginning of the
-                // previous one if this is the case.
+            case PreviousSection:
+                // In case the sections of the document are known we move to the
+                // beginning of the current section or to the previous one in case
+                // we're already at its start. The target page might not be loaded
+                // yet: it is the only one that will be loaded.
+                int previous = findPreviousSection(getSectionLevel(action, param));
+                if (previous >= 0) {
+                    m_pageID = m_sections.getStart(previous);
+                    m_wordID = 0;
+                    break;
+                }
+
+                // Otherwise we want to move either to the beginning of this page
+                // in case we're not already at the beginning and to the beginning
+                // of the previous one if this is the case.
                 if (m_wordID > 0) {
                     m_wordID = 0;
                 }
@@ -503,7 +919,18 @@ class PdfSourceLoader extends ReadLoader {
                 }
                 break;
             case NextStep:
-                m_wordID = getCurrentPageInfo().getWordsCount();
+            case NextSection:
+                // Similar to the previous case: jump directly to the beginning of
+                // the next section in case it is known and move to the next page
+                // otherwise.
+                int next = m_sections.next(m_pageID, getSectionLevel(action, param));
+                if (next >= 0) {
+                    m_pageID = m_sections.getStart(next);
+                    m_wordID = 0;
+                    break;
+                }
+
+                m_wordID = getCurrentWordsCount();
                 break;
         }
 
@@ -511,9 +938,8 @@ class PdfSourceLoader extends ReadLoader {
         // current page. We might have to trigger a new loading operation in case
         // we travel to a page that is not yet loaded.
         boolean needsLoading = false;
-        PageInfo pi = getCurrentPageInfo();
 
-        if (pi == null) {
+        if (!isValidPage()) {
             needsLoading = true;
         }
         else if (m_wordID < 0) {
@@ -524,8 +950,8 @@ class PdfSourceLoader extends ReadLoader {
             if (m_pageID == 0) {
                 m_wordID = 0;
                 // Note that we are certain that there's no loading operation
-                // needed as otherwise we couldn't have pass the `pi == null`
-                // text.
+                // needed as otherwise we couldn't have pass the `isValidPage`
+                // test.
             }
             else {
                 while (m_wordID < 0 && !needsLoading) {
@@ -538,38 +964,34 @@ class PdfSourceLoader extends ReadLoader {
                     else {
                         // Otherwise, offset the current word index with the number
                         // of words contained in the new current page.
-                        pi = getCurrentPageInfo();
-                        m_wordID += pi.getWordsCount();
+                        m_wordID += getCurrentWordsCount();
                     }
                 }
             }
         }
-        else if (m_wordID >= pi.getWordsCount()) {
+        else if (m_wordID >= getCurrentWordsCount()) {
             // We need to move to the next page until we obtain a word index that
             // is within the bounds of the page.
             // Note that in case we're already at the last page it is not needed
             // and we will say that moving back to the beginning is enough.
             if (m_pageID == m_pagesCount - 1) {
-                m_wordID = pi.getWordsCount() - 1;
+                m_wordID = getCurrentWordsCount() - 1;
                 // Note that we are certain that there's no loading operation
-                // needed as otherwise we couldn't have pass the `pi == null`
-                // text.
+                // needed as otherwise we couldn't have pass the `isValidPage`
+                // test.
             }
             else {
-                while (m_wordID >= pi.getWordsCount() && !needsLoading) {
+                while (!needsLoading && m_wordID >= getCurrentWordsCount()) {
                     // Account for the fact that we move to the next page.
-                    m_wordID -= pi.getWordsCount();
+                    m_wordID -= getCurrentWordsCount();
 
                     // Actually move to the next page.
                     ++m_pageID;
 
-                    // Check whether this page is already loaded.
+                    // Check whether this page is already loaded: if this is not the
+                    // case we will have to load it.
                     if (!isValidPage()) {
                         needsLoading = true;
-                    } else {
-                        // Otherwise, offset the current word index with the number
-                        // of words contained in the new current page.
-                        pi = getCurrentPageInfo();
                     }
                 }
             }
@@ -581,27 +1003,171 @@ class PdfSourceLoader extends ReadLoader {
         // to those and thus if we reach these edge case we won't be able to get
         // access and perform the display.
         if (!needsLoading && isValidPage() && isValidWord()) {
-            // Retrieve the information about the current page.
-            pi = getCurrentPageInfo();
             if (m_wordID == 0 && m_pageID > 0) {
                 // We need to check whether the previous page is accessible.
-                needsLoading = (m_pages.get(m_pageID - 1) != null);
+                needsLoading = !m_pages.contains(m_pageID - 1);
             }
-            if (m_wordID == pi.getWordsCount() - 1 && m_pageID < m_pagesCount - 1) {
+            if (m_wordID == getCurrentWordsCount() - 1 && m_pageID < m_pagesCount - 1) {
                 // We need to check whether the next page is accessible.
-                needsLoading = (m_pages.get(m_pageID + 1) != null);
+                needsLoading = needsLoading || !m_pages.contains(m_pageID + 1);
             }
-
         }
 
+        // Register the page being read.
+        m_pages.setReadPage(m_pageID);
+
         // The return status indicates whether we could move from the position
         // indicated by the virtual cursor a bit and also whether a loading
         // operation is required.
         return new Pair<>(sPageID != m_pageID || sWordID != m_wordID, needsLoading);
     }
 
+    /**
+     * Used to determine the deepest level of sections to consider for the input
+     * action: the steps move to any section while the sections only consider the
+     * top most ones (or deeper depending on the input depth).
+     * @param action - the action being performed.
+     * @param depth - the depth of the sections to consider for section actions.
+     * @return - the deepest level of sections to consider.
+     */
+    private int getSectionLevel(Action action, int depth) {
+        if (action == Action.PreviousSection || action == Action.NextSection) {
+            return m_sections.getTopLevel() + Math.max(1, depth) - 1;
+        }
+
+        return SectionIndex.DEEPEST_LEVEL;
+    }
+
+    /**
+     * Used to find the section to move to when going backwards from the current
+     * position of the cursor: this is the section containing the current page in
+     * case the cursor is not at its beginning and the previous one otherwise.
+     * Note that this method assumes that the locker is already acquired.
+     * @param level - the deepest level of sections to consider.
+     * @return - the index of the section or `-1` in case there is none.
+     */
+    private int findPreviousSection(int level) {
+        // The sections are indexed by page: we consider that any word of the page
+        // after the first one is located after the start of the page.
+        return m_sections.previous(m_wordID > 0 ? m_pageID + 1 : m_pageID, level);
+    }
+
+    @Override
+    boolean needsPrefetch() {
+        m_locker.lock();
+
+        // In case the parser is not valid we can't determine which pages should
+        // be prefetched: the regular loading process will handle this.
+        if (isInvalid()) {
+            m_locker.unlock();
+            return false;
+        }
+
+        // Check whether all the pages in the lookahead window are loaded.
+        int last = Math.min(m_pagesCount - 1, m_pageID + m_policy.getLookahead());
+        int id = m_pageID + 1;
+        while (id <= last && m_pages.contains(id)) {
+            ++id;
+        }
+
+        m_locker.unlock();
+
+        return id <= last;
+    }
+
+    @Override
+    void setWordFlipInterval(int interval) {
+        m_policy.setFlipInterval(interval);
+    }
+
+    @Override
+    void loadFromUri(ContentResolver resolver, Uri uri, float progress) throws IOException {
+        // Try to reuse the extractor opened by a previous loading operation: this
+        // avoids to parse again the structure of the document.
+        PdfPagesExtractor pdf = m_session.acquire();
+
+        try {
+            if (pdf == null) {
+                pdf = openExtractor(resolver, uri);
+            }
+
+            loadFromExtractor(pdf, progress);
+        }
+        catch (IOException e) {
+            // The extractor might be in an invalid state: don't keep it.
+            if (pdf != null) {
+                pdf.close();
+                pdf = null;
+            }
+
+            throw e;
+        }
+        finally {
+            m_session.release(pdf);
+        }
+    }
+
+    /**
+     * Used to open a new extractor on the document described by the input `uri`.
+     * @param resolver - the resolver to use to access the document.
+     * @param uri - the `uri` of the document.
+     * @return - the extractor on the document.
+     * @throws IOException - in case the document cannot be opened.
+     */
+    private PdfPagesExtractor openExtractor(ContentResolver resolver, Uri uri) throws IOException {
+        // We prefer to access the document through a local copy: this allows `iText`
+        // to only read the structure of the document and the content of the pages we
+        // actually need instead of loading the whole document in memory.
+        ReadCache cache = getCache();
+        File copy = (cache != null ? cache.getSourceCopy(resolver, uri) : null);
+
+        // Open the document and keep track of the time it takes as it is part of
+        // the cost of the first loading operation.
+        long start = SystemClock.elapsedRealtime();
+        PdfPagesExtractor pdf;
+
+        if (copy != null) {
+            pdf = new PdfPagesExtractor(copy);
+        }
+        else {
+            // We couldn't create the copy (typically because there's not enough space
+            // available): fall back to reading the document from the stream.
+            pdf = new PdfPagesExtractor(resolver.openInputStream(uri));
+        }
+
+        m_policy.recordSetup(SystemClock.elapsedRealtime() - start);
+
+        return pdf;
+    }
+
     @Override
     void loadFromSource(InputStream stream, float progress) throws IOException {
+        // The whole document needs to be read in memory. As we don't know whether
+        // the stream corresponds to the document of the session we don't keep the
+        // extractor after the loading operation.
+        PdfPagesExtractor pdf = new PdfPagesExtractor(stream);
+
+        try {
+            loadFromExtractor(pdf, progress);
+        }
+        finally {
+            pdf.close();
+        }
+    }
+
+    @Override
+    void release() {
+        m_session.close();
+    }
+
+    /**
+     * Used to perform the loading of the pages of the document from the input
+     * extractor. The extractor is not closed by this method.
+     * @param pdf - an extractor on the `PDF` document.
+     * @param progress - the location that should be loaded in priority.
+     * @throws IOException - in case the document cannot be parsed.
+     */
+    private void loadFromExtractor(PdfPagesExtractor pdf, float progress) throws IOException {
         // This method can be called in two contexts: either when it's the first time
         // that we instantiate information for the parser or when we need to load some
         // additional data because we reached an area not yet loaded.
@@ -613,28 +1179,39 @@ class PdfSourceLoader extends ReadLoader {
         // will interpret to load the data until we are able to bring back these to
         // some consistent values.
 
-        // In any case we need to create some parsing utilities.
-        PdfReader reader = new PdfReader(stream);
-        PdfReaderContentParser parser = new PdfReaderContentParser(reader);
-
         // Update the number of pages as a first step. Note that we don't verify that
         // the number of pages stays consistent between two load. This could be the
         // case if the file has been modified outside of the application but we will
         // not handle this case for now.
-        m_pagesCount = reader.getNumberOfPages();
+        m_pagesCount = pdf.getPagesCount();
 
         // If there are no valid pages, stop there.
         if (m_pagesCount == 0) {
             throw new IOException("Could not parse content of PDF source not containing any page");
         }
 
+        // Read the sections of the document from its outline the first time it is
+        // opened: this is cheap compared to the extraction of the pages and allows
+        // to reach any section directly.
+        if (!m_outlineRead) {
+            readOutline(pdf);
+        }
+
         // Now check whether we are in the case where no data has ever been loaded
         // in the parser or if we are in the process of loading some more data as
         // we reached a non-loaded area.
         // We will protect the call to each method so as to be able to provide some
         // notification of any failure.
         try {
-            if (hasPages()) {
+            // Note that we might have some pages already available (typically restored
+            // from the cache) but still not have been positioned at the desired progress.
+            // This is also considered as an initial load.
+            if (isPrefetching()) {
+                // The cursor is still in a valid position: we only need to load the
+                // pages ahead of it.
+                prefetchPages(pdf);
+            }
+            else if (hasPages() && m_pageID >= 0) {
                 // At this point we should have an invalid word index compared to the
                 // active page. This should be the case as calling this method should
                 // be a direct consequence of performing a motion that could not be
@@ -648,18 +1225,16 @@ class PdfSourceLoader extends ReadLoader {
                 // could indicate that we triggered a preemptive loading operation so
                 // as to be able to serve `next` and `previous` word requests.
                 if (isValidPage() && isValidWord()) {
-                    PageInfo pi = getCurrentPageInfo();
-
                     // Check if we should load the previous page in case we're at the
                     // first word of the current page.
-                    if (m_wordID == 0 && m_pageID > 0 && m_pages.get(m_pageID - 1) == null) {
-                        loadPage(m_pageID - 1, parser);
+                    if (m_wordID == 0 && m_pageID > 0 && !m_pages.contains(m_pageID - 1)) {
+                        loadPage(m_pageID - 1, pdf);
                     }
 
                     // Check if we should load the next page in case we're at the last
                     // word of the current page.
-                    if (m_wordID == pi.getWordsCount() - 1 && m_pageID < m_pagesCount - 1 && m_pages.get(m_pageID + 1) == null) {
-                        loadPage(m_pageID + 1, parser);
+                    if (m_wordID == getCurrentWordsCount() - 1 && m_pageID < m_pagesCount - 1 && !m_pages.contains(m_pageID + 1)) {
+                        loadPage(m_pageID + 1, pdf);
                     }
 
                     return;
@@ -672,12 +1247,11 @@ class PdfSourceLoader extends ReadLoader {
                 while (!valid) {
                     // Load the page corresponding to the `m_pageID` and continue until
                     // we can bring back a `m_wordID` consistent with the page's data.
-                    loadPage(m_pageID, parser);
+                    loadPage(m_pageID, pdf);
 
                     // Try to retrieve the information about this page to update the
                     // `m_wordID`.
-                    PageInfo pi = getCurrentPageInfo();
-                    if (pi == null) {
+                    if (!isValidPage()) {
                         throw new IOException("Could not parse content of PDF source for page " + m_pageID + "/" + m_pagesCount);
                     }
 
@@ -688,7 +1262,7 @@ class PdfSourceLoader extends ReadLoader {
                         // value in the `m_wordID` so we obviously need to add the words
                         // count of the newly loaded page before checking the validity of
                         // this index.
-                        m_wordID += pi.getWordsCount();
+                        m_wordID += getCurrentWordsCount();
 
                         publishProgress(1.0f * (count + Math.min(m_wordID, 0)) / count);
                     }
@@ -698,8 +1272,8 @@ class PdfSourceLoader extends ReadLoader {
                         // current page words count (if we moved more than one page ahead)
                         // or valid in case we only moved to the next page. So we only
                         // need to update the `m_wordID` attribute in the first case.
-                        if (m_wordID >= pi.getWordsCount()) {
-                            m_wordID -= pi.getWordsCount();
+                        if (m_wordID >= getCurrentWordsCount()) {
+                            m_wordID -= getCurrentWordsCount();
                         }
 
                         publishProgress(1.0f * Math.max(count, count - m_wordID) / count);
@@ -719,8 +1293,12 @@ class PdfSourceLoader extends ReadLoader {
                     }
                 }
 
-                PageInfo pi = getCurrentPageInfo();
-                Log.i("main", "Settings start: " + m_pageID + "/" + m_pagesCount + " at word " + m_wordID + "/" + pi.getWordsCount());
+                // The cursor is now valid: register the page being read.
+                m_locker.lock();
+                m_pages.setReadPage(m_pageID);
+                m_locker.unlock();
+
+                Log.i("main", "Settings start: " + m_pageID + "/" + m_pagesCount + " at word " + m_wordID + "/" + getCurrentWordsCount());
             }
             else {
                 // We want to load the area around the `progress` value provided as
@@ -729,39 +1307,45 @@ class PdfSourceLoader extends ReadLoader {
                 // At first we will try to distribute the surrounding pages to load
                 // in a manner that is suited for the canonical experience of a read.
                 // Suppose the progress indicates that the user is reading page `10`
-                // we will lay `25%` of the surrounding area on the pages before and
-                // `75%` ahead: indeed the user is most likely to read forward rather
-                // than go back.
+                // we will load the lookahead window defined by the policy after this
+                // page and only a quarter of it before: indeed the user is most likely
+                // to read forward rather than go back.
                 int pageToLoad = Math.round((int)Math.floor((double)(progress * m_pagesCount)));
+                int lookahead = m_policy.getLookahead();
 
-                int minPage = Math.round((int)Math.floor((double)(pageToLoad - 0.25f * LOAD_SURROUNDING_PAGES_COUNT)));
-                int maxPage = Math.round((int)(Math.floor((double)pageToLoad + 0.75f * LOAD_SURROUNDING_PAGES_COUNT)));
+                int minPage = pageToLoad - Math.max(1, lookahead / 4);
+                int maxPage = pageToLoad + lookahead;
 
                 // Clamp the pages based on the actual structure of the `PDF` document.
-                minPage = Math.min(reader.getNumberOfPages() - 1, Math.max(0, minPage));
-                maxPage = Math.min(reader.getNumberOfPages() - 1, Math.max(0, maxPage));
-
-                int count = Math.max(1, maxPage - minPage);
-
-                for (int id = minPage ; id <= maxPage && !isCancelled(); ++id) {
-                    loadPage(id, parser);
+                pageToLoad = Math.min(m_pagesCount - 1, Math.max(0, pageToLoad));
+                minPage = Math.min(m_pagesCount - 1, Math.max(0, minPage));
+                maxPage = Math.min(m_pagesCount - 1, Math.max(0, maxPage));
+
+                // Load the page containing the desired progress first: this is the
+                // only one we need to display the current word. We can update the
+                // `m_pageID` and `m_wordID` right away to reflect the desired
+                // progress and notify listeners that the data is ready.
+                loadPage(pageToLoad, pdf);
+
+                m_locker.lock();
+                try {
+                    if (!m_pages.contains(pageToLoad)) {
+                        throw new IOException("Could not parse content of PDF source for page " + pageToLoad + "/" + m_pagesCount);
+                    }
 
-                    // Notify progression.
-                    publishProgress(1.0f * (id - minPage) / count);
+                    setupCursor(pageToLoad, progress);
+                }
+                finally {
+                    m_locker.unlock();
                 }
 
-                // Once all the pages have been loaded we need to update the `m_pageID`
-                // and `m_wordID` to reflect the desired progress. To compute the word
-                // index we first need to interpret the part of the progress indicating
-                // the page and the part indicating the progress inside the page.
-                m_pageID = pageToLoad;
-
-                PageInfo pi = getCurrentPageInfo();
-                float pagePercentage = 1.0f / m_pagesCount;
-                float wProgress = (progress - 1.0f * m_pageID / m_pagesCount) / pagePercentage;
-                m_wordID = Math.round(wProgress * pi.getWordsCount());
+                publishReady();
 
-                Log.i("main", "Settings start: " + m_pageID + "/" + m_pagesCount + " at word " + m_wordID + "/" + pi.getWordsCount() + " (page: " + pagePercentage + ", word: " + wProgress + ", progress: " + progress + ")");
+                // Then fill the surrounding area outward: the pages after the current
+                // one first as the user is most likely to read forward and then the
+                // pages before it. The pages are extracted in parallel.
+                loadPages(pageToLoad + 1, maxPage, pdf);
+                loadPages(minPage, pageToLoad - 1, pdf);
             }
         }
         catch (Exception e) {
@@ -771,26 +1355,275 @@ class PdfSourceLoader extends ReadLoader {
         }
     }
 
+    /**
+     * Used to read the sections of the document from its outline. In case the
+     * document does not define an outline the sections detected so far from the
+     * headings of the pages are kept.
+     * @param pdf - an extractor on the `PDF` document.
+     */
+    private void readOutline(PdfPagesExtractor pdf) {
+        SectionIndex outline = pdf.readOutline();
+
+        m_locker.lock();
+        try {
+            if (!outline.isEmpty()) {
+                m_sections.clear();
+                for (int section = 0 ; section < outline.size() ; ++section) {
+                    m_sections.add(outline.getStart(section), outline.getLevel(section));
+                }
+
+                m_fromOutline = true;
+            }
+
+            m_outlineRead = true;
+            m_saved.m_sectionsSaved = false;
+            m_cacheOutdated = true;
+        }
+        finally {
+            m_locker.unlock();
+        }
+    }
+
+    /**
+     * Used to load the pages ahead of the current position of the virtual
+     * cursor. We load twice the lookahead window defined by the policy so
+     * that a new prefetch operation is not needed right away.
+     * @param pdf - an extractor on the `PDF` document from which the pages
+     *              are to be extracted.
+     */
+    private void prefetchPages(PdfPagesExtractor pdf) throws IOException {
+        // Retrieve the current page: the cursor might move while we load the
+        // pages but it is not an issue as the next prefetch will catch up.
+        m_locker.lock();
+        int pageID = m_pageID;
+        m_locker.unlock();
+
+        if (pageID < 0) {
+            return;
+        }
+
+        int lookahead = m_policy.getLookahead();
+        loadPages(pageID + 1, Math.min(m_pagesCount - 1, pageID + 2 * lookahead), pdf);
+    }
+
+    /**
+     * Used to position the virtual cursor on the input page based on the desired
+     * progress. The page is assumed to be loaded already.
+     * @param pageID - the index of the page which contains the desired progress.
+     * @param progress - the desired progress in the whole document.
+     */
+    private void setupCursor(int pageID, float progress) {
+        // To compute the word index we first need to interpret the part of the
+        // progress indicating the page and the part indicating the progress in
+        // this page.
+        m_pageID = pageID;
+
+        int count = getCurrentWordsCount();
+        float pagePercentage = 1.0f / m_pagesCount;
+        float wProgress = (progress - 1.0f * m_pageID / m_pagesCount) / pagePercentage;
+        m_wordID = Math.min(Math.max(0, count - 1), Math.round(wProgress * count));
+        m_pages.setReadPage(m_pageID);
+
+        // Now that the cursor is positioned we can make sure that we stay within
+        // the memory budget.
+        evictPages();
+
+        Log.i("main", "Settings start: " + m_pageID + "/" + m_pagesCount + " at word " + m_wordID + "/" + count + " (page: " + pagePercentage + ", word: " + wProgress + ", progress: " + progress + ")");
+    }
+
+    @Override
+    void updateCache(ReadCache cache) {
+        // Only the pages extracted since the last update need to be saved.
+        cache.append(this);
+    }
+
+    @Override
+    public boolean loadFromCache(DataInputStream in, float progress) throws IOException {
+        // The cache contains the total number of pages of the document followed by
+        // records describing either the words of a page or the sections: they were
+        // appended as the pages were extracted. We first read them in local variables
+        // so that a corrupted cache does not leave the loader in an inconsistent state.
+        int pagesCount = in.readInt();
+        if (pagesCount <= 0) {
+            throw new IOException("Invalid pages count " + pagesCount + " in cache");
+        }
+
+        ArrayList<Integer> ids = new ArrayList<>();
+        ArrayList<WordStore> pages = new ArrayList<>();
+        Vocabulary vocabulary = new Vocabulary();
+
+        boolean fromOutline = false;
+        SectionIndex sections = null;
+
+        int record = in.read();
+        while (record >= 0) {
+            if (record == PAGE_RECORD) {
+                int id = in.readInt();
+                if (id < 0 || id >= pagesCount) {
+                    throw new IOException("Invalid page " + id + "/" + pagesCount + " in cache");
+                }
+
+                WordStore words = new WordStore(vocabulary);
+                ReadCache.readWords(in, words);
+
+                ids.add(id);
+                pages.add(words);
+            }
+            else if (record == SECTIONS_RECORD) {
+                fromOutline = in.readBoolean();
+                sections = new SectionIndex();
+                sections.load(in);
+            }
+            else {
+                throw new IOException("Invalid record " + record + " in cache");
+            }
+
+            record = in.read();
+        }
+
+        // Register the pages and the sections: the cache is obviously not outdated
+        // by these. The page corresponding to the desired progress is registered
+        // as the one being read first: in case the cache holds more words than
+        // the memory budget only the pages closest to it are kept in memory. The
+        // other ones stay in the cache.
+        m_pagesCount = pagesCount;
+        int pageToLoad = Math.min(m_pagesCount - 1, (int)Math.floor(progress * m_pagesCount));
+
+        m_locker.lock();
+        m_pages.setReadPage(pageToLoad);
+        m_locker.unlock();
+
+        for (int id = 0 ; id < ids.size() ; ++id) {
+            handlePageCreation(ids.get(id), pages.get(id), -1);
+        }
+
+        m_locker.lock();
+        for (int id = 0 ; id < ids.size() ; ++id) {
+            m_saved.m_pages.set(ids.get(id));
+        }
+
+        if (sections != null) {
+            m_sections.clear();
+            for (int section = 0 ; section < sections.size() ; ++section) {
+                m_sections.add(sections.getStart(section), sections.getLevel(section));
+            }
+            m_outlineRead = true;
+            m_fromOutline = fromOutline;
+            m_saved.m_sectionsSaved = true;
+        }
+        m_locker.unlock();
+
+        m_cacheOutdated = false;
+
+        // Check whether the page corresponding to the desired progress is part of
+        // the cache: if this is the case we can directly position the cursor and
+        // we don't need to open the source at all.
+        m_locker.lock();
+        boolean available = m_pages.contains(pageToLoad);
+        m_locker.unlock();
+
+        if (!available) {
+            return false;
+        }
+
+        setupCursor(pageToLoad, progress);
+
+        return true;
+    }
+
+    @Override
+    public void saveToCache(DataOutputStream out) throws IOException {
+        // The cache is written from scratch: whatever was saved before is lost.
+        m_locker.lock();
+        int pagesCount = m_pagesCount;
+        m_saved.m_pages.clear();
+        m_saved.m_sectionsSaved = false;
+        m_locker.unlock();
+
+        out.writeInt(pagesCount);
+        appendToCache(out);
+    }
+
+    @Override
+    public void appendToCache(DataOutputStream out) throws IOException {
+        // The pages might be evicted from the main thread while we save them (for
+        // example when the memory budget changes). We only hold the lock to find
+        // the pages to save: their words are read from the last snapshot of the
+        // store which is never modified afterwards. This way the main thread is
+        // not blocked while the data is written to the disk.
+        m_locker.lock();
+
+        WordStore.Snapshot words = m_words.getSnapshot();
+        ArrayList<Integer> ids = new ArrayList<>();
+        for (int id = m_pages.nextLoaded(0) ; id >= 0 ; id = m_pages.nextLoaded(id + 1)) {
+            if (!m_saved.m_pages.get(id)) {
+                ids.add(id);
+            }
+        }
+
+        int[] starts = new int[ids.size()];
+        int[] ends = new int[ids.size()];
+        for (int id = 0 ; id < ids.size() ; ++id) {
+            starts[id] = m_pages.getStart(ids.get(id));
+            ends[id] = m_pages.getEnd(ids.get(id));
+        }
+
+        SectionIndex sections = null;
+        boolean fromOutline = m_fromOutline;
+        if (!m_saved.m_sectionsSaved) {
+            sections = new SectionIndex();
+            for (int section = 0 ; section < m_sections.size() ; ++section) {
+                sections.add(m_sections.getStart(section), m_sections.getLevel(section));
+            }
+        }
+
+        m_locker.unlock();
+
+        // Write the pages in ascending order followed by the sections if they
+        // changed since the last save.
+        for (int id = 0 ; id < ids.size() ; ++id) {
+            out.writeByte(PAGE_RECORD);
+            out.writeInt(ids.get(id));
+            ReadCache.writeWords(out, words, starts[id], ends[id]);
+        }
+
+        if (sections != null) {
+            out.writeByte(SECTIONS_RECORD);
+            out.writeBoolean(fromOutline);
+            sections.save(out);
+        }
+
+        // The pages are now part of the cache even if they are evicted later on.
+        m_locker.lock();
+        for (int id = 0 ; id < ids.size() ; ++id) {
+            m_saved.m_pages.set(ids.get(id));
+        }
+        if (sections != null) {
+            m_saved.m_sectionsSaved = true;
+        }
+        m_locker.unlock();
+    }
+
     /**
      * Used to perform the loading of the page defined by the input index
-     * from the provided parser. Note that nothing happens in case no such
-     * page can be found in the input parser nothing happens.
+     * from the provided extractor. Note that nothing happens in case no
+     * such page can be found in the input extractor.
      * A filtering is also applied to determine whether the requested page
      * already exists in the internal table of pages (to prevent loading
      * several times the same page).
      * @param id - the index of the page to load. Starts at `0` and is
      *             converted internally to match the expected `iText`
      *             semantic (which starts at `1`).
-     * @param pdf - a reader on the `PDF` document from which the page is
-     *              to be extracted.
+     * @param pdf - an extractor on the `PDF` document from which the page
+     *              is to be extracted.
      */
-    private void loadPage(int id, PdfReaderContentParser pdf) throws IOException {
+    private void loadPage(int id, PdfPagesExtractor pdf) throws IOException {
         // Determine whether we need to load this page at all: indeed we might
         // already have loaded it before as the loading process can overlap due
         // to the surrounding area settings.
 
         m_locker.lock();
-        if (m_pages.containsKey(id)) {
+        if (m_pages.contains(id)) {
             // The page already exists, don't load it again.
             m_locker.unlock();
 
@@ -798,15 +1631,64 @@ class PdfSourceLoader extends ReadLoader {
         }
         m_locker.unlock();
 
-        // Parse the sections for this page. Note that as `iText` counts page
-        // starting at `1` we need to account for this this.
-        PdfSimpleTextExtractor  extractor = new PdfSimpleTextExtractor();
-        extractor = pdf.processContent(id + 1, extractor);
+        // Parse the words for this page and handle the creation of the page in
+        // the internal data.
+        long start = SystemClock.elapsedRealtime();
+        WordStore words = pdf.extract(id);
+        m_policy.recordExtraction(1, words.size(), SystemClock.elapsedRealtime() - start);
+
+        handlePageCreation(id, words, pdf.getHeadingLevel(id));
+    }
+
+    /**
+     * Similar to `loadPage` but performs the loading of all the pages in the
+     * range `[first; last]`. The pages which are not loaded yet are grouped
+     * in contiguous runs which are extracted in parallel by the extractor.
+     * The pages are then registered in ascending order.
+     * @param first - the index of the first page to load.
+     * @param last - the index of the last page to load (included).
+     * @param pdf - an extractor on the `PDF` document from which the pages
+     *              are to be extracted.
+     */
+    private void loadPages(int first, int last, PdfPagesExtractor pdf) throws IOException {
+        int count = Math.max(1, last - first + 1);
+        int id = first;
+
+        while (id <= last && !isCancelled()) {
+            // Skip the pages which are already loaded.
+            m_locker.lock();
+            while (id <= last && m_pages.contains(id)) {
+                ++id;
+            }
+
+            // Find the end of the run of pages which are not loaded yet.
+            int end = id;
+            while (end + 1 <= last && !m_pages.contains(end + 1)) {
+                ++end;
+            }
+            m_locker.unlock();
 
-        // Retrieve the words parsed for this page.
-        ArrayList<String> words = extractor.getWords();
+            if (id > last) {
+                break;
+            }
 
-        // Handle the creation of the page in the internal data.
-        handlePageCreation(id, words);
+            // Extract the run of pages and register them.
+            long start = SystemClock.elapsedRealtime();
+            ArrayList<WordStore> pages = pdf.extract(id, end);
+            long elapsed = SystemClock.elapsedRealtime() - start;
+
+            int words = 0;
+            for (int page = 0 ; page < pages.size() ; ++page) {
+                words += pages.get(page).size();
+                handlePageCreation(id + page, pages.get(page), pdf.getHeadingLevel(id + page));
+            }
+
+            m_policy.recordExtraction(pages.size(), words, elapsed);
+
+            id = end + 1;
+
+            // Notify progression.
+            publishProgress(1.0f * (id - first) / count);
+        }
     }
 }
@@ -0,0 +1,724 @@
+package knoblauch.readdesc.model;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+import static android.content.Context.MODE_PRIVATE;
+
+class ReadCache {
+
+    /**
+     * Convenience interface describing an element which is able to dump its content
+     * in the cache and to restore it from there. This is typically implemented by the
+     * loaders so that they can persist the words they extracted from a source and get
+     * them back without having to parse the source again.
+     */
+    interface Cacheable {
+
+        /**
+         * Used to restore the content of this element from the input stream. The stream
+         * is positioned right after the header of the cache which means that only the
+         * data written by the `saveToCache` method will be read.
+         * @param in - the stream from which the data should be restored.
+         * @param progress - the progress that should be reached in the restored data.
+         * @return - `true` if the data restored from the cache is enough to serve the
+         *           `progress` and `false` if some data still needs to be parsed from
+         *           the source.
+         * @throws IOException - in case the data cannot be read from the stream.
+         */
+        boolean loadFromCache(DataInputStream in, float progress) throws IOException;
+
+        /**
+         * Used to dump the content of this element to the output stream. The header of
+         * the cache is already written so the implementation only has to worry about
+         * its own data.
+         * @param out - the stream to which the data should be saved.
+         * @throws IOException - in case the data cannot be written to the stream.
+         */
+        void saveToCache(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Specialization of the `Cacheable` interface for elements which are able to
+     * append the data they produced since the last save to the existing cache. This
+     * is typically useful for loaders processing the source in several parts: they
+     * don't need to rewrite what has already been saved each time a part is loaded.
+     */
+    interface Incremental extends Cacheable {
+
+        /**
+         * Used to append to the stream the content of this element that was not
+         * saved to the cache yet. The stream is positioned at the end of the data
+         * saved so far (either by `saveToCache` or by a previous call to this method)
+         * and the `loadFromCache` method should be able to read all of it at once.
+         * @param out - the stream to which the data should be appended.
+         * @throws IOException - in case the data cannot be written to the stream.
+         */
+        void appendToCache(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Convenience interface describing the source of a read as seen by the cache. It
+     * is typically backed by a content resolver (see `fromResolver`) and allows the
+     * cache to compute the fingerprint of the source and to copy it.
+     */
+    interface Source {
+
+        /**
+         * Used to retrieve the length of the source.
+         * @return - the length of the source in bytes or a negative value in case it
+         *           cannot be determined.
+         */
+        long getLength();
+
+        /**
+         * Used to open a new stream providing the content of the source from its
+         * beginning. The caller is responsible for closing the stream.
+         * @return - the stream providing the content of the source.
+         * @throws IOException - in case the source cannot be accessed.
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * A magic number written at the beginning of each cache file. It allows to quickly
+     * determine whether a file is a cache produced by this class.
+     */
+    private static final int MAGIC = 0x52444331;
+
+    /**
+     * The version of the format used to write the cache files. It should be bumped each
+     * time the layout of the data written by this class or by the loaders changes so
+     * that older caches are discarded instead of being misinterpreted.
+     */
+    private static final int VERSION = 4;
+
+    /**
+     * The name of the directory (in the application's private storage) where the cache
+     * files are saved. Note that we don't use the files directory as it is reserved for
+     * the description of the reads (see `ReadsBank`).
+     */
+    private static final String CACHE_DIRECTORY = "reads_cache";
+
+    /**
+     * The extension appended to the name of the cache files.
+     */
+    private static final String CACHE_EXTENSION = ".cache";
+
+    /**
+     * The extension appended to the name of the local copies of the sources.
+     */
+    private static final String SOURCE_EXTENSION = ".source";
+
+    /**
+     * The extension appended to the name of the snapshots of the sources.
+     */
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    /**
+     * The extension used for the temporary file where the cache is written before being
+     * moved to its final location. This prevents a half-written cache to be considered
+     * valid in case the application is killed during the save operation.
+     */
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    /**
+     * The number of bytes read from the beginning of the source to compute the checksum
+     * used as a fingerprint of its content. This is a trade-off between the robustness
+     * of the detection of a change in the source and the cost of computing it.
+     */
+    private static final int FINGERPRINT_SAMPLE_SIZE = 64 * 1024;
+
+    /**
+     * The size of the buffers used to read and write the cache files. Large buffers are
+     * preferred as the cache is always accessed sequentially.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The charset used to encode the words in the cache.
+     */
+    private static final Charset ENCODING = Charset.forName("UTF-8");
+
+    /**
+     * The file where the cache for the source is saved.
+     */
+    private File m_file;
+
+    /**
+     * The file where a local copy of the source can be saved. Some loaders need
+     * a random access to the source which is not provided by the streams of the
+     * content providers: they can use this copy instead.
+     */
+    private File m_copy;
+
+    /**
+     * Indicates that the local copy of the source has been checked against the
+     * fingerprint of the source (or created from it) and can be used as is.
+     */
+    private boolean m_copyValid;
+
+    /**
+     * The file where a snapshot of the source can be saved. Unlike the local copy
+     * the snapshot is not checked against the source: once it exists, it is used
+     * in place of the source until it is explicitly refreshed. This allows to read
+     * the source without depending on its provider.
+     */
+    private File m_snapshot;
+
+    /**
+     * The string representation of the `uri` of the source. It is saved in the header
+     * of the cache to detect collisions in the name of the cache files.
+     */
+    private String m_uri;
+
+    /**
+     * The length of the source as reported by the content provider. Might be negative
+     * in case the provider is not able to determine it. Along with the `m_checksum` it
+     * defines the fingerprint of the content of the source.
+     */
+    private long m_length;
+
+    /**
+     * A checksum computed on the first bytes of the source.
+     */
+    private long m_checksum;
+
+    /**
+     * Indicates that the cache file has been checked against the fingerprint of the
+     * source (or written from it) during this session. Only in this case some data
+     * can be appended to it (see `append`).
+     */
+    private boolean m_appendable;
+
+    /**
+     * Create a new cache for the source described by the input `uri`. Note that
+     * nothing is read from the disk until the `restore` method is called.
+     * @param context - the context to use to locate the application's private
+     *                  storage.
+     * @param uri - the `uri` of the source which should be cached.
+     */
+    ReadCache(Context context, Uri uri) {
+        this(context.getDir(CACHE_DIRECTORY, MODE_PRIVATE), uri.toString());
+    }
+
+    /**
+     * Create a new cache for the source described by the input `uri` with its files
+     * saved in the input directory.
+     * @param dir - the directory where the files of the cache are saved.
+     * @param uri - a string representing the `uri` of the source.
+     */
+    ReadCache(File dir, String uri) {
+        m_uri = uri;
+
+        String name = generateName(m_uri);
+        m_file = new File(dir, name + CACHE_EXTENSION);
+        m_copy = new File(dir, name + SOURCE_EXTENSION);
+        m_copyValid = false;
+        m_snapshot = new File(dir, name + SNAPSHOT_EXTENSION);
+
+        // The fingerprint is computed when the cache is accessed.
+        m_length = -1;
+        m_checksum = 0;
+
+        m_appendable = false;
+    }
+
+    /**
+     * Used to generate the base name of the files associated to the input source. We
+     * use two distinct hashes of the `uri` to limit the risk of collisions. Note that
+     * a collision is not an issue as the `uri` is also saved in the cache itself.
+     * @param uri - the `uri` of the source.
+     * @return - the base name of the files for the cache of this source (without any
+     *           extension).
+     */
+    private static String generateName(String uri) {
+        CRC32 crc = new CRC32();
+        crc.update(uri.getBytes(ENCODING));
+
+        return String.format(Locale.US, "%08x%08x", crc.getValue(), uri.hashCode());
+    }
+
+    /**
+     * Used to remove the cache associated to the source described by the input `uri`.
+     * This is typically used when a read is deleted so that its cache does not stay
+     * on the disk forever. The local copy and the snapshot of the source are also
+     * removed.
+     * @param context - the context to use to locate the application's private storage.
+     * @param uri - a string representing the `uri` of the source.
+     * @return - `true` if the cache does not exist anymore.
+     */
+    static boolean discard(Context context, String uri) {
+        File dir = context.getDir(CACHE_DIRECTORY, MODE_PRIVATE);
+        String name = generateName(uri);
+
+        File file = new File(dir, name + CACHE_EXTENSION);
+        File copy = new File(dir, name + SOURCE_EXTENSION);
+        File snapshot = new File(dir, name + SNAPSHOT_EXTENSION);
+
+        boolean copyRemoved = !copy.exists() || copy.delete();
+        boolean snapshotRemoved = !snapshot.exists() || snapshot.delete();
+        return (!file.exists() || file.delete()) && copyRemoved && snapshotRemoved;
+    }
+
+    /**
+     * Used to compute the checksum of the first bytes of the input stream. The stream
+     * is closed by this method.
+     * @param stream - the stream for which the checksum should be computed.
+     * @return - the checksum of the first bytes of the stream.
+     * @throws IOException - in case the stream cannot be read.
+     */
+    private static long computeChecksum(InputStream stream) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        int total = 0;
+
+        try {
+            int read = stream.read(buffer);
+            while (read > 0 && total < FINGERPRINT_SAMPLE_SIZE) {
+                crc.update(buffer, 0, read);
+                total += read;
+
+                read = stream.read(buffer, 0, Math.min(buffer.length, FINGERPRINT_SAMPLE_SIZE - total));
+            }
+        }
+        finally {
+            stream.close();
+        }
+
+        return crc.getValue();
+    }
+
+    /**
+     * Used to create a source reading the data described by the input `uri` through
+     * the content resolver.
+     * @param resolver - the resolver to use to access the source.
+     * @param uri - the `uri` of the source.
+     * @return - the source backed by the resolver.
+     */
+    static Source fromResolver(final ContentResolver resolver, final Uri uri) {
+        return new Source() {
+            @Override
+            public long getLength() {
+                // The provider might not be able to provide the length in which case
+                // we will only rely on the checksum.
+                long length = -1;
+                try {
+                    AssetFileDescriptor afd = resolver.openAssetFileDescriptor(uri, "r");
+                    if (afd != null) {
+                        length = afd.getLength();
+                        afd.close();
+                    }
+                }
+                catch (Exception e) {
+                    // Not all providers are able to provide a file descriptor.
+                }
+
+                return length;
+            }
+
+            @Override
+            public InputStream open() throws IOException {
+                InputStream stream = resolver.openInputStream(uri);
+                if (stream == null) {
+                    throw new IOException("Could not open source \"" + uri + "\"");
+                }
+
+                return stream;
+            }
+        };
+    }
+
+    /**
+     * Used to compute the fingerprint of the source. We rely on the length reported by
+     * the content provider and a checksum of the first bytes of the data: this avoids
+     * to read the whole source just to determine whether the cache is still valid.
+     * @param source - the source for which the fingerprint should be computed.
+     * @throws IOException - in case the source cannot be accessed.
+     */
+    private void computeFingerprint(Source source) throws IOException {
+        m_length = source.getLength();
+        m_checksum = computeChecksum(source.open());
+    }
+
+    /**
+     * Used to retrieve the length of the source as reported by the content provider.
+     * Note that the `restore` method must have been called before so that we know the
+     * fingerprint of the source.
+     * @return - the length of the source in bytes or a negative value in case it is
+     *           not known.
+     */
+    long getSourceLength() {
+        return m_length;
+    }
+
+    /**
+     * Used to retrieve a local copy of the source in the application's private storage.
+     * The copy is created the first time this method is called and reused as long as
+     * it matches the fingerprint of the source. This is useful for loaders that need a
+     * random access to the source: the streams provided by the content providers only
+     * allow sequential reads.
+     * Note that the `restore` method must have been called before so that we know the
+     * fingerprint of the source.
+     * @param resolver - the resolver to use to access the source.
+     * @param uri - the `uri` of the source.
+     * @return - the local copy of the source or `null` in case it cannot be created.
+     */
+    File getSourceCopy(ContentResolver resolver, Uri uri) {
+        // Check whether we already verified the local copy.
+        if (m_copyValid && m_copy.exists()) {
+            return m_copy;
+        }
+
+        // Check whether the existing copy (if any) matches the source.
+        try {
+            if (m_copy.exists() && (m_length < 0 || m_copy.length() == m_length) && computeChecksum(new FileInputStream(m_copy)) == m_checksum) {
+                m_copyValid = true;
+                return m_copy;
+            }
+        }
+        catch (IOException e) {
+            // The copy cannot be read: we will create it again.
+        }
+
+        // Copy the source to its final location.
+        m_copyValid = copySource(fromResolver(resolver, uri), m_copy);
+
+        return (m_copyValid ? m_copy : null);
+    }
+
+    /**
+     * Used to copy the content of the source to the input file. The data is first
+     * written to a temporary file which is then moved to replace the input file so
+     * that an interrupted copy never replaces a valid file.
+     * @param source - the source to copy.
+     * @param file - the file where the source should be copied.
+     * @return - `true` if the source was successfully copied.
+     */
+    private static boolean copySource(Source source, File file) {
+        File tmp = new File(file.getParentFile(), file.getName() + TEMPORARY_EXTENSION);
+
+        try {
+            InputStream in = source.open();
+
+            try {
+                FileOutputStream out = new FileOutputStream(tmp);
+
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read = in.read(buffer);
+                    while (read >= 0) {
+                        out.write(buffer, 0, read);
+                        read = in.read(buffer);
+                    }
+                }
+                finally {
+                    out.close();
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            // Failed to copy the source (typically not enough space available): make
+            // sure we don't leave a partial file.
+            if (tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+
+            return false;
+        }
+
+        return (!file.exists() || file.delete()) && tmp.renameTo(file);
+    }
+
+    /**
+     * Used to determine whether a snapshot of the source is available. In this case
+     * the snapshot should be read instead of the source (see `getSnapshotUri`).
+     * @return - `true` if a snapshot of the source exists.
+     */
+    boolean hasSnapshot() {
+        return m_snapshot.exists();
+    }
+
+    /**
+     * Returns the `uri` of the snapshot of the source. It can be accessed through
+     * a content resolver like the source itself. Only relevant in case a snapshot
+     * exists (see `hasSnapshot`).
+     * @return - the `uri` of the snapshot of the source.
+     */
+    Uri getSnapshotUri() {
+        return Uri.fromFile(m_snapshot);
+    }
+
+    /**
+     * Used to save a snapshot of the source. The data previously cached for the
+     * source is discarded as it might not correspond to the new snapshot.
+     * @param source - the source to save.
+     * @return - `true` if the snapshot was successfully saved.
+     */
+    boolean snapshot(Source source) {
+        if (!copySource(source, m_snapshot)) {
+            return false;
+        }
+
+        discardFile();
+
+        return true;
+    }
+
+    /**
+     * Used to determine whether the snapshot of the source is outdated, i.e. the
+     * source changed since the snapshot was saved. We compare the fingerprints of
+     * the snapshot and of the source which only reads the first bytes of each.
+     * @param source - the source to compare with the snapshot.
+     * @return - `true` if the snapshot does not exist or does not match the source.
+     * @throws IOException - in case the source cannot be accessed.
+     */
+    boolean isSnapshotOutdated(Source source) throws IOException {
+        if (!hasSnapshot()) {
+            return true;
+        }
+
+        computeFingerprint(source);
+
+        boolean sameLength = (m_length < 0 || m_length == m_snapshot.length());
+        return !sameLength || computeChecksum(new FileInputStream(m_snapshot)) != m_checksum;
+    }
+
+    /**
+     * Used to restore the content of the cache in the input element. We first check
+     * that the cache exists and that its header matches the current content of the
+     * source. In case this is not the case nothing is restored.
+     * @param resolver - the resolver to use to compute the fingerprint of the source.
+     * @param uri - the `uri` of the source.
+     * @param content - the element which should be populated from the cache.
+     * @param progress - the progress that should be reached in the restored data.
+     * @return - `true` if the cache could be restored and was enough to serve the
+     *           `progress` and `false` otherwise.
+     */
+    boolean restore(ContentResolver resolver, Uri uri, Cacheable content, float progress) {
+        try {
+            computeFingerprint(fromResolver(resolver, uri));
+        }
+        catch (IOException e) {
+            // We won't be able to validate the cache, consider it as invalid.
+            return false;
+        }
+
+        if (!m_file.exists()) {
+            return false;
+        }
+
+        boolean restored = false;
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_file), BUFFER_SIZE));
+
+            try {
+                // Check whether the cache corresponds to the current version of the source
+                // and was produced by a compatible version of the application.
+                boolean valid = (in.readInt() == MAGIC && in.readInt() == VERSION);
+                valid = valid && m_uri.equals(in.readUTF());
+                valid = valid && in.readLong() == m_length && in.readLong() == m_checksum;
+
+                if (valid) {
+                    m_appendable = true;
+                    restored = content.loadFromCache(in, progress);
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            // The cache is probably corrupted: we will get rid of it so that it can be
+            // regenerated after the next parsing of the source.
+            discardFile();
+            restored = false;
+        }
+
+        return restored;
+    }
+
+    /**
+     * Used to save the content of the input element to the cache. The data is first
+     * written to a temporary file which is then moved to replace the existing cache.
+     * Note that the `restore` method must have been called before so that we know the
+     * fingerprint of the source.
+     * @param content - the element to save in the cache.
+     * @return - `true` if the cache was successfully written.
+     */
+    boolean save(Cacheable content) {
+        File tmp = new File(m_file.getParentFile(), m_file.getName() + TEMPORARY_EXTENSION);
+
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), BUFFER_SIZE));
+
+            try {
+                // Write the header.
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(m_uri);
+                out.writeLong(m_length);
+                out.writeLong(m_checksum);
+
+                // And the content.
+                content.saveToCache(out);
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch (IOException e) {
+            // Failed to write the cache, make sure we don't leave a partial file.
+            if (tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+
+            return false;
+        }
+
+        // Replace the existing cache with the new one.
+        m_appendable = (!m_file.exists() || m_file.delete()) && tmp.renameTo(m_file);
+
+        return m_appendable;
+    }
+
+    /**
+     * Used to append the content of the input element which was not saved yet to
+     * the cache. Unlike `save` the existing cache is not rewritten: only the new
+     * data is written at its end. In case the cache was not validated or written
+     * during this session (see `restore`) the whole content is saved instead.
+     * Note that an interrupted append leaves a truncated cache: it will then be
+     * considered as corrupted and discarded by the next `restore` operation.
+     * @param content - the element to append to the cache.
+     * @return - `true` if the cache was successfully written.
+     */
+    boolean append(Incremental content) {
+        if (!m_appendable || !m_file.exists()) {
+            return save(content);
+        }
+
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(m_file, true), BUFFER_SIZE));
+
+            try {
+                content.appendToCache(out);
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch (IOException e) {
+            // The cache might now be truncated: get rid of it so that it is fully
+            // saved upon the next operation.
+            discardFile();
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Used internally to remove the cache file. Failure to do so is not an issue as it
+     * will be overwritten upon the next save operation.
+     */
+    private void discardFile() {
+        m_appendable = false;
+
+        if (m_file.exists() && !m_file.delete()) {
+            m_file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Convenience method to write a range of the input list of words to the stream.
+     * The words are encoded in `UTF-8` and prefixed with their length.
+     * @param out - the stream to which the words should be written.
+     * @param words - the list of words to write.
+     * @param start - the index of the first word to write.
+     * @param end - the index of the first word *not* to write.
+     * @throws IOException - in case the words cannot be written.
+     */
+    static void writeWords(DataOutputStream out, List<String> words, int start, int end) throws IOException {
+        out.writeInt(end - start);
+
+        for (int id = start ; id < end ; ++id) {
+            byte[] bytes = words.get(id).getBytes(ENCODING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Similar to `writeWords` but reads the words from a snapshot of a store. As
+     * the snapshot is never modified this can be used to save the words without
+     * holding the lock protecting the store.
+     * @param out - the stream to which the words should be written.
+     * @param words - the snapshot containing the words to write.
+     * @param start - the index of the first word to write.
+     * @param end - the index of the first word *not* to write.
+     * @throws IOException - in case the words cannot be written.
+     */
+    static void writeWords(DataOutputStream out, WordStore.Snapshot words, int start, int end) throws IOException {
+        out.writeInt(end - start);
+
+        for (int id = start ; id < end ; ++id) {
+            byte[] bytes = words.get(id).getBytes(ENCODING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Counterpart of the `writeWords` method which reads a list of words from the input
+     * stream and appends them to the provided list.
+     * @param in - the stream from which the words should be read.
+     * @param words - the list to which the words should be appended.
+     * @return - the number of words read from the stream.
+     * @throws IOException - in case the words cannot be read.
+     */
+    static int readWords(DataInputStream in, List<String> words) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid words count " + count + " in cache");
+        }
+
+        byte[] buffer = new byte[64];
+
+        for (int id = 0 ; id < count ; ++id) {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("Invalid word length " + length + " in cache");
+            }
+
+            if (length > buffer.length) {
+                buffer = new byte[Math.max(length, 2 * buffer.length)];
+            }
+
+            in.readFully(buffer, 0, length);
+            words.add(new String(buffer, 0, length, ENCODING));
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,132 @@
+package knoblauch.readdesc.model;
+
+public class ReadCursor {
+
+    /**
+     * Whether the cursor points to an actual word of the read. This is not the
+     * case until some data has been loaded from the source.
+     */
+    private final boolean m_valid;
+
+    /**
+     * The word pointed at by the cursor. Empty in case the cursor is not valid.
+     */
+    private final String m_current;
+
+    /**
+     * The word right before the current one. Empty in case the cursor is at the
+     * beginning of the read or is not valid.
+     */
+    private final String m_previous;
+
+    /**
+     * The word right after the current one. Empty in case the cursor is at the
+     * end of the read, in case the next word is not loaded yet or in case the
+     * cursor is not valid.
+     */
+    private final String m_next;
+
+    /**
+     * Whether the cursor points to the first word of the read.
+     */
+    private final boolean m_atStart;
+
+    /**
+     * Whether the cursor points to the last word of the read.
+     */
+    private final boolean m_atEnd;
+
+    /**
+     * The completion of the read reached by the cursor in the range `[0; 1]`.
+     */
+    private final float m_completion;
+
+    /**
+     * Create a new cursor from the input values. The cursor is immutable: the
+     * loaders publish a new cursor each time the position changes so that it
+     * can be read from the main thread without any locking.
+     * @param valid - whether the cursor points to an actual word.
+     * @param current - the current word.
+     * @param previous - the previous word.
+     * @param next - the next word.
+     * @param atStart - whether the current word is the first of the read.
+     * @param atEnd - whether the current word is the last of the read.
+     * @param completion - the completion of the read.
+     */
+    ReadCursor(boolean valid, String current, String previous, String next, boolean atStart, boolean atEnd, float completion) {
+        m_valid = valid;
+        m_current = current;
+        m_previous = previous;
+        m_next = next;
+        m_atStart = atStart;
+        m_atEnd = atEnd;
+        m_completion = completion;
+    }
+
+    /**
+     * Used to create a cursor which does not point to any word. This is used
+     * until some data is loaded from the source.
+     * @param completion - the completion reached in the read.
+     * @return - the created cursor.
+     */
+    static ReadCursor empty(float completion) {
+        return new ReadCursor(false, "", "", "", false, false, completion);
+    }
+
+    /**
+     * Used to determine whether this cursor points to an actual word of the
+     * read, i.e. whether some data has been loaded around it.
+     * @return - `true` if the cursor is valid.
+     */
+    public boolean isValid() {
+        return m_valid;
+    }
+
+    /**
+     * Returns the word pointed at by this cursor.
+     * @return - the current word or an empty string if the cursor is invalid.
+     */
+    public String getCurrentWord() {
+        return m_current;
+    }
+
+    /**
+     * Returns the word right before the current one.
+     * @return - the previous word or an empty string if there's none.
+     */
+    public String getPreviousWord() {
+        return m_previous;
+    }
+
+    /**
+     * Returns the word right after the current one.
+     * @return - the next word or an empty string if there's none.
+     */
+    public String getNextWord() {
+        return m_next;
+    }
+
+    /**
+     * Used to determine whether this cursor points to the first word of the read.
+     * @return - `true` if the cursor is at the start of the read.
+     */
+    public boolean isAtStart() {
+        return m_atStart;
+    }
+
+    /**
+     * Used to determine whether this cursor points to the last word of the read.
+     * @return - `true` if the cursor is at the end of the read.
+     */
+    public boolean isAtEnd() {
+        return m_atEnd;
+    }
+
+    /**
+     * Returns the completion of the read reached by this cursor.
+     * @return - the completion in the range `[0; 1]`.
+     */
+    public float getCompletion() {
+        return m_completion;
+    }
+}
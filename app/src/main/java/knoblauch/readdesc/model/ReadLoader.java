@@ -4,16 +4,20 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Pair;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
+abstract class ReadLoader extends AsyncTask<String, Float, Boolean> implements ReadCache.Cacheable {
 
     /**
      * Describe the interface that external objects can implement
@@ -63,7 +67,9 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
         Rewind,
         NextWord,
         PreviousStep,
-        NextStep
+        NextStep,
+        PreviousSection,
+        NextSection
     }
 
     /**
@@ -86,6 +92,17 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
      */
     Lock m_locker;
 
+    /**
+     * The last cursor published by this loader. It describes the words around
+     * the position of the virtual cursor and is replaced by a new immutable
+     * instance each time the position changes or some data is loaded. This
+     * allows the main thread to read the current state of the loader without
+     * acquiring the lock.
+     * The reference is shared with the copies of this loader just like the
+     * data it describes.
+     */
+    private AtomicReference<ReadCursor> m_cursor;
+
     /**
      * An indication in the range `[0; 1]` which tells the portion of
      * the source that should be loaded in priority. This value can be
@@ -96,6 +113,40 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
      */
     float m_progress;
 
+    /**
+     * The persistent cache associated to the source loaded by this object. It
+     * is created upon the first loading operation and shared with the copies
+     * of this loader. It allows to skip entirely the parsing of the source in
+     * case it has already been processed in a previous session.
+     */
+    private ReadCache m_cache;
+
+    /**
+     * Indicates that some data was parsed from the source during the current
+     * loading operation and thus that the cache should be updated. Inheriting
+     * classes are expected to set this value whenever they extract some new
+     * words from the source.
+     */
+    boolean m_cacheOutdated;
+
+    /**
+     * Indicates that this loader is used to load some data ahead of the
+     * current position of the virtual cursor. Such loading operations
+     * are not needed to display the current word which means that they
+     * happen silently: listeners are not notified of their progress.
+     */
+    private boolean m_prefetch;
+
+    /**
+     * Indicates that enough data has been loaded for the listeners to use
+     * this loader even though the loading operation is not finished yet.
+     * Once this is set the rest of the loading operation happens silently
+     * just like a prefetch operation.
+     * This value is set from the loading thread and read from the main
+     * thread.
+     */
+    private volatile boolean m_ready;
+
     /**
      * Create a new read loader with the specified context. This object
      * will be used to perform the resolution of links and get resources
@@ -125,6 +176,16 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
 
         // And define the desired progression.
         m_progress = Math.min(1.0f, Math.max(0.0f, progress));
+
+        // No data is available yet: the cursor only reflects the progression.
+        m_cursor = new AtomicReference<>(ReadCursor.empty(m_progress));
+
+        // The cache will be created upon loading the data.
+        m_cache = null;
+        m_cacheOutdated = false;
+
+        m_prefetch = false;
+        m_ready = false;
     }
 
     /**
@@ -138,9 +199,39 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
         m_context = other.m_context;
         m_listeners = other.m_listeners;
 
-        m_locker = new ReentrantLock();
+        // The locker is shared with the copied loader: as the data is also
+        // shared it might be modified by a loading operation that is still
+        // running on the copied loader (typically a prefetch operation).
+        m_locker = other.m_locker;
+        m_cursor = other.m_cursor;
 
         m_progress = other.m_progress;
+
+        m_cache = other.m_cache;
+        m_cacheOutdated = false;
+
+        m_prefetch = false;
+        m_ready = false;
+    }
+
+    /**
+     * Used to indicate that this loader is used to load some data ahead of
+     * the current position of the virtual cursor. In this case no signals
+     * are emitted to the listeners while the data is loaded. This should be
+     * called before the loader is executed.
+     * @param prefetch - `true` if this loader is used to prefetch data.
+     */
+    void setPrefetch(boolean prefetch) {
+        m_prefetch = prefetch;
+    }
+
+    /**
+     * Used to determine whether this loader is used to load some data ahead
+     * of the current position of the virtual cursor.
+     * @return - `true` if this loader is used to prefetch data.
+     */
+    boolean isPrefetching() {
+        return m_prefetch;
     }
 
     /**
@@ -158,6 +249,11 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
 
     @Override
     protected void onPreExecute() {
+        // Prefetch operations are silent.
+        if (m_prefetch) {
+            return;
+        }
+
         // We're starting a new parsing process, notify listeners with
         // the corresponding signal.
         for (DataLoadingListener listener : m_listeners) {
@@ -184,10 +280,40 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
         Uri uri = Uri.parse(uris[0]);
 
         // Perform the loading of this `uri`.
-        ContentResolver res = m_context.get().getContentResolver();
+        Context context = m_context.get();
+        if (context == null) {
+            return false;
+        }
+
+        ContentResolver res = context.getContentResolver();
         try {
-            InputStream inStream = res.openInputStream(uri);
-            loadFromSource(inStream, m_progress);
+            // In case this is the first loading operation for this source we
+            // will first try to restore the data from the cache: if it is up
+            // to date and contains the data needed to reach the progression
+            // we don't need to parse the source at all.
+            boolean restore = (m_cache == null);
+            if (restore) {
+                m_cache = new ReadCache(context, uri);
+            }
+
+            // In case a snapshot of the source was saved we read it instead of the
+            // source: this does not depend on the provider of the source at all.
+            if (m_cache.hasSnapshot()) {
+                uri = m_cache.getSnapshotUri();
+            }
+
+            if (restore && m_cache.restore(res, uri, this, m_progress)) {
+                return true;
+            }
+
+            loadFromUri(res, uri, m_progress);
+
+            // Update the cache with the data we just parsed so that the next
+            // loading operation can benefit from it.
+            if (m_cacheOutdated && !isCancelled()) {
+                updateCache(m_cache);
+                m_cacheOutdated = false;
+            }
         }
         catch (IOException e) {
             // We failed to load the source, this is an issue.
@@ -201,7 +327,7 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
     @Override
     protected void onProgressUpdate(Float... results) {
         // We want to update the progress on the calling activity if possible.
-        if (results == null || results.length == 0) {
+        if (results == null || results.length == 0 || m_prefetch || m_ready) {
             return;
         }
 
@@ -223,6 +349,19 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
             return;
         }
 
+        // Even silent operations may have loaded the words around the cursor
+        // (typically the next one) so we need to publish it again.
+        publishCursor();
+
+        // Prefetch operations are silent: the current word was already available
+        // so listeners don't need to be notified. In case of a failure the regular
+        // loading operation will be triggered when the data is actually needed.
+        // The same applies if the listeners were already notified that the data
+        // was ready through `publishReady`.
+        if (m_prefetch || m_ready) {
+            return;
+        }
+
         // Notify listeners.
         for (DataLoadingListener listener : m_listeners) {
             if (success) {
@@ -234,6 +373,125 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
         }
     }
 
+    /**
+     * Used to retrieve the persistent cache associated to the source loaded by
+     * this object. Only valid once the loading operation has started.
+     * @return - the cache associated to the source.
+     */
+    ReadCache getCache() {
+        return m_cache;
+    }
+
+    /**
+     * Used to update the cache with the data parsed during the loading operation.
+     * The default implementation saves again the whole content of this loader:
+     * inheriting classes which are able to only save the data parsed since the
+     * last update can specialize this.
+     * @param cache - the cache to update.
+     */
+    void updateCache(ReadCache cache) {
+        cache.save(this);
+    }
+
+    /**
+     * Used to perform the loading of the data from the source described by the
+     * input `uri`. The default implementation opens a stream on the source and
+     * forwards it to `loadFromSource`. Inheriting classes can specialize this to
+     * access the source in a different way (for example through a local copy
+     * allowing random access).
+     * @param resolver - the resolver to use to access the source.
+     * @param uri - the `uri` of the source.
+     * @param progress - the location that should be loaded in priority.
+     * @throws IOException - in case the source cannot be loaded.
+     */
+    void loadFromUri(ContentResolver resolver, Uri uri, float progress) throws IOException {
+        InputStream inStream = resolver.openInputStream(uri);
+        loadFromSource(inStream, progress);
+    }
+
+    /**
+     * Used by inheriting classes to indicate that enough data has been loaded
+     * to display the current word while the loading operation keeps running.
+     * The listeners are notified of the success of the loading operation in
+     * the main thread right away and won't receive any other notification
+     * from this loading operation.
+     * This method should be called from the loading thread and the internal
+     * cursor should be valid when it is called.
+     */
+    void publishReady() {
+        // Prefetch operations are silent and the readiness can only be published
+        // once.
+        if (m_prefetch || m_ready) {
+            return;
+        }
+
+        m_ready = true;
+        publishCursor();
+
+        Handler handler = new Handler(Looper.getMainLooper());
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Do not notify in case we've been cancelled in the meantime.
+                if (isCancelled()) {
+                    return;
+                }
+
+                for (DataLoadingListener listener : m_listeners) {
+                    listener.onDataLoadingSuccess();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the last cursor published by this loader. Unlike the other
+     * accessors this method does not acquire the lock and can be called
+     * from the main thread as often as needed: all the values describing
+     * the position of the virtual cursor are read from a single immutable
+     * instance so they are consistent with each other.
+     * @return - the last published cursor.
+     */
+    ReadCursor getCursor() {
+        return m_cursor.get();
+    }
+
+    /**
+     * Used to publish a new cursor describing the current position of the
+     * virtual cursor. This should be called whenever the position changes
+     * or whenever some data around it is loaded. The lock is held while the
+     * cursor is built so that its values are consistent.
+     */
+    void publishCursor() {
+        m_locker.lock();
+        try {
+            ReadCursor cursor;
+            if (isInvalid()) {
+                cursor = ReadCursor.empty(getCompletion());
+            }
+            else {
+                // Fetch the previous, current and next words at once.
+                String[] window = new String[3];
+                fillWords(-1, window);
+
+                cursor = new ReadCursor(
+                        true,
+                        window[1],
+                        window[0],
+                        window[2],
+                        isAtStart(),
+                        isAtEnd(),
+                        getCompletion()
+                );
+            }
+
+            m_cursor.set(cursor);
+        }
+        finally {
+            m_locker.unlock();
+        }
+    }
+
     /**
      * Used to determine whether some data is already accessible within
      * this parser. This usually indicates whether a loading operation
@@ -268,16 +526,18 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
         // Acquire the lock on this object.
         m_locker.lock();
 
-        if (isInvalid()) {
-            // Do not perform the action.
-            return false;
-        }
-
         Pair<Boolean, Boolean> status;
         try {
+            if (isInvalid()) {
+                // Do not perform the action.
+                return false;
+            }
+
             // Depending on the action we want to perform different changes
-            // to the internal virtual cursor.
+            // to the internal virtual cursor. The new position is published
+            // before releasing the lock so that listeners see it.
             status = handleMotion(action, param);
+            publishCursor();
         }
         finally {
             m_locker.unlock();
@@ -304,6 +564,52 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
         return false;
     }
 
+    /**
+     * Used to determine whether some data should be loaded ahead of the
+     * current position of the virtual cursor. This is used to load data
+     * in the background before the cursor actually reaches it so that
+     * the reading does not stall.
+     * The default implementation does not require any prefetch.
+     * @return - `true` if a prefetch operation should be scheduled.
+     */
+    boolean needsPrefetch() {
+        return false;
+    }
+
+    /**
+     * Used to indicate the interval between two words as displayed to the
+     * user. Inheriting classes can use this value to determine how far in
+     * advance the data should be loaded.
+     * The default implementation does not use this value.
+     * @param interval - the interval between two words in milliseconds.
+     */
+    void setWordFlipInterval(int interval) {
+        // No op: nothing to be done here.
+    }
+
+    /**
+     * Used to release the resources that this loader keeps between loading
+     * operations (for example an opened document). This is typically called
+     * when the loader is cancelled and won't be used for a while. Any later
+     * loading operation should acquire them again if needed.
+     * The default implementation does not keep any resource.
+     */
+    void release() {
+        // No op: nothing to be done here.
+    }
+
+    /**
+     * Used to define the amount of memory that can be used to keep the data
+     * loaded from the source. Inheriting classes able to load the source in
+     * several parts can use this value to discard the parts far from the
+     * current position of the virtual cursor.
+     * The default implementation does not use this value.
+     * @param bytes - the memory budget in bytes.
+     */
+    void setMemoryBudget(long bytes) {
+        // No op: nothing to be done here.
+    }
+
     /**
      * Used as an internal method to determine whether the parser is in
      * an invalid state. This helps not trying to apply processes that
@@ -345,6 +651,36 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
      */
     abstract float getCompletion();
 
+    /**
+     * Used to fill the input buffer with the words located around the virtual
+     * cursor. The first slot of the buffer receives the word at `first` words
+     * from the current one (so `-1` describes the previous word) and the next
+     * slots receive the words following it. The slots for which no word can
+     * be retrieved (because it is not loaded or because it is outside of the
+     * read) are set to the empty string.
+     * The whole window is fetched with a single acquisition of the lock and
+     * a single validation of the cursor: this should be preferred to several
+     * calls to the methods retrieving a single word. The buffer can be kept
+     * by the caller and reused for each call.
+     * @param first - the offset of the first word to fetch relatively to the
+     *                current word.
+     * @param words - the buffer to fill with the words.
+     */
+    void getWords(int first, String[] words) {
+        m_locker.lock();
+        try {
+            if (isInvalid()) {
+                Arrays.fill(words, "");
+                return;
+            }
+
+            fillWords(first, words);
+        }
+        finally {
+            m_locker.unlock();
+        }
+    }
+
     /**
      * Used for external elements to retrieve the current word pointed at
      * by this parser. The virtual cursor is left unchanged by this call
@@ -354,30 +690,58 @@ abstract class ReadLoader extends AsyncTask<String, Float, Boolean> {
      * is returned.
      * @return - a string representing the current word.
      */
-    abstract String getCurrentWord();
+    String getCurrentWord() {
+        return getWord(0);
+    }
 
     /**
      * Similar to `getCurrentWord` but retrieves the previous word that
-     * was pointed at by this loader. Note that in case the data cannot
-     * be fetched (because it is not loaded) a loading operation is set
-     * to be processed. In case the data cannot be retrieved (in case
-     * the parser is at the beginning of the read) the empty string is
-     * returned.
+     * was pointed at by this loader. In case the data cannot be fetched
+     * (because it is not loaded or because the parser is at the start of
+     * the read) the empty string is returned.
      * @return - a string corresponding to the previous word or the
      *           empty string if it does not exist.
      */
-    abstract String getPreviousWord();
+    String getPreviousWord() {
+        return getWord(-1);
+    }
 
     /**
      * Similar  to the `getCurrentWord` but returns the next word that
-     * will be pointed at by this loader. In case the word is not yet
-     * loaded in the data a loading operation is triggered. If the word
-     * cannot be retrieved (because the parser is at the end of the
-     * data stream) the empty stirng is returned.
+     * will be pointed at by this loader. If the word cannot be retrieved
+     * (because it is not loaded or because the parser is at the end of
+     * the data stream) the empty string is returned.
      * @return - a string corresponding to the next word or the empty
      *           string.
      */
-    abstract String getNextWord();
+    String getNextWord() {
+        return getWord(1);
+    }
+
+    /**
+     * Used to retrieve a single word around the virtual cursor. This is a
+     * convenience wrapper around `getWords`.
+     * @param offset - the offset of the word relatively to the current one.
+     * @return - the word or the empty string if it cannot be retrieved.
+     */
+    private String getWord(int offset) {
+        String[] words = new String[1];
+        getWords(offset, words);
+
+        return words[0];
+    }
+
+    /**
+     * Used by inheriting classes to fill the input buffer with the words around
+     * the virtual cursor as described in `getWords`. This method is called while
+     * holding the lock and only when the loader is valid: implementations don't
+     * need to check it again. Each slot of the buffer must be assigned, using
+     * the empty string for the words that cannot be retrieved.
+     * @param first - the offset of the first word to fetch relatively to the
+     *                current word.
+     * @param words - the buffer to fill with the words.
+     */
+    abstract void fillWords(int first, String[] words);
 
     /**
      * Used internally as a way to actually move the virtual cursor used
@@ -1,6 +1,7 @@
 package knoblauch.readdesc.model;
 
 import android.content.Context;
+import android.net.Uri;
 import android.os.AsyncTask;
 
 import java.io.File;
@@ -9,6 +10,7 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Locale;
 
 public class ReadParser implements ReadLoader.DataLoadingListener {
 
@@ -145,7 +147,7 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
         // Check whether the source is actually valid and running: if this
         // is the case we won't try to schedule it again.
         if (m_source != null && m_source.getStatus() == AsyncTask.Status.PENDING) {
-            scheduleLoading(false);
+            scheduleLoading(false, false);
         }
     }
 
@@ -158,6 +160,14 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      */
     public void updateFromPrefs(ReadPref prefs) {
         m_wordStep = prefs.getWordStep();
+
+        // The source uses the reading speed to determine how far ahead the
+        // data should be loaded.
+        m_source.setWordFlipInterval(prefs.getWordFlipInterval());
+
+        // Parts of the read far from the current position are discarded when
+        // the source exceeds the memory budget (expressed in megabytes).
+        m_source.setMemoryBudget(prefs.getMemoryBudget() * 1024L * 1024L);
     }
 
     /**
@@ -184,7 +194,15 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
                 m_source = new HtmlSourceLoader(context, desiredProgress, m_desc.getDataUri());
                 break;
             case File:
-                m_source = new PdfSourceLoader(context, desiredProgress);
+                if (isOfType(context, m_desc.getDataUri(), "text/plain", ".txt")) {
+                    m_source = new TextSourceLoader(context, desiredProgress);
+                }
+                else if (isOfType(context, m_desc.getDataUri(), "application/epub+zip", ".epub")) {
+                    m_source = new EpubSourceLoader(context, desiredProgress);
+                }
+                else {
+                    m_source = new PdfSourceLoader(context, desiredProgress);
+                }
                 break;
         }
 
@@ -194,6 +212,28 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
         m_source.addOnDataLoadingListener(this);
     }
 
+    /**
+     * Used to determine whether the input file source describes a document of
+     * the input type. We rely on the type reported by the content provider and
+     * use the extension of the file in case the provider does not know it.
+     * @param context - the context to use to query the type of the source.
+     * @param uri - the `uri` of the source.
+     * @param mimeType - the `MIME` type of the documents to detect.
+     * @param extension - the extension of the documents to detect.
+     * @return - `true` if the source is a document of the input type.
+     */
+    private static boolean isOfType(Context context, String uri, String mimeType, String extension) {
+        Uri source = Uri.parse(uri);
+
+        String type = (context != null ? context.getContentResolver().getType(source) : null);
+        if (type != null && !"application/octet-stream".equals(type)) {
+            return type.startsWith(mimeType);
+        }
+
+        String name = source.getLastPathSegment();
+        return name != null && name.toLowerCase(Locale.ROOT).endsWith(extension);
+    }
+
     /**
      * Used to schedule a loading operation on the source of this parser.
      * THis method allows to specify whether the internal source should
@@ -202,14 +242,21 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      * parser when the user reaches non loaded part of the document.
      * @param clone - `true` if the internal `AsyncTask` to schedule is
      *                to be copied before being scheduled.
+     * @param prefetch - `true` if the loading operation should only load
+     *                   data ahead of the current position of the source
+     *                   without notifying listeners.
      */
-    private void scheduleLoading(boolean clone) {
+    private void scheduleLoading(boolean clone, boolean prefetch) {
         // Copy the task if needed.
         if (clone) {
             if (m_source instanceof HtmlSourceLoader) {
                 m_source = new HtmlSourceLoader((HtmlSourceLoader) m_source);
             } else if (m_source instanceof PdfSourceLoader) {
                 m_source = new PdfSourceLoader((PdfSourceLoader) m_source);
+            } else if (m_source instanceof TextSourceLoader) {
+                m_source = new TextSourceLoader((TextSourceLoader) m_source);
+            } else if (m_source instanceof EpubSourceLoader) {
+                m_source = new EpubSourceLoader((EpubSourceLoader) m_source);
             } else {
                 // We don't know the type of the source, this is clearly a
                 // failure of the loading process.
@@ -220,9 +267,22 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
         }
 
         // Schedule the loading of the data from the source.
+        m_source.setPrefetch(prefetch);
         m_source.execute(m_desc.getDataUri());
     }
 
+    /**
+     * Used to schedule a prefetch operation on the source in case it needs
+     * it. We only do so in case no other loading operation is running: as
+     * the loading operations are processed sequentially it would only delay
+     * any regular loading operation needed to display the current word.
+     */
+    private void prefetch() {
+        if (m_source.getStatus() == AsyncTask.Status.FINISHED && m_source.needsPrefetch()) {
+            scheduleLoading(true, true);
+        }
+    }
+
     /**
      * Retrieves the name of the read associated to this parser.
      * @return - the name of the read linked to this parser.
@@ -232,11 +292,15 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
     /**
      * Used by external objects to cancel the loading operation that might
      * be pending for this parser. Note that in case nothing is loading it
-     * does not change anything.
+     * does not change anything. Any resource kept by the source between
+     * two loading operations is also released: they will be acquired on
+     * the next loading operation.
      */
     public void cancel() {
-        // Stop any operation running on the `source` of this parser.
+        // Stop any operation running on the `source` of this parser and release
+        // the resources it might keep between loading operations.
         m_source.cancel(true);
+        m_source.release();
     }
 
     @Override
@@ -355,7 +419,37 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      * @return - `true` if the data is ready and `false` otherwise.
      */
     public boolean isReady() {
-        return !m_source.isEmpty();
+        return m_source.getCursor().isValid();
+    }
+
+    /**
+     * Returns the last cursor published by the source of this parser. It
+     * gathers the current, previous and next words along with the position
+     * of the parser in a single immutable object: callers needing several
+     * of these values should retrieve the cursor once rather than calling
+     * the individual accessors. This never blocks on the loading thread.
+     * @return - the current cursor of the parser.
+     */
+    public ReadCursor getCursor() {
+        return m_source.getCursor();
+    }
+
+    /**
+     * Used to retrieve a window of words around the current word of the parser
+     * in a single access to the source. The first slot of the buffer receives
+     * the word located `first` words after the current one (a negative value
+     * describes words before it) and the following slots the words after it.
+     * Words that are not available are set to the empty string.
+     * The buffer is provided by the caller so that it can be reused from one
+     * call to the next. Note that unlike `getCursor` this acquires the lock on
+     * the data of the source: when only the previous, current and next words
+     * are needed the cursor should be preferred.
+     * @param first - the offset of the first word relatively to the current
+     *                word of the parser.
+     * @param words - the buffer to fill with the words.
+     */
+    public void getWords(int first, String[] words) {
+        m_source.getWords(first, words);
     }
 
     /**
@@ -366,7 +460,7 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      *           stream associated to it.
      */
     public boolean isAtStart() {
-        return m_source.isAtStart();
+        return m_source.getCursor().isAtStart();
     }
 
     /**
@@ -377,7 +471,7 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      *           and `false` otherwise.
      */
     public boolean isAtEnd() {
-        return m_source.isAtEnd();
+        return m_source.getCursor().isAtEnd();
     }
 
     /**
@@ -387,7 +481,7 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      * @return - the current completion reached by this parser.
      */
     public float getCompletion() {
-        return m_source.getCompletion();
+        return m_source.getCursor().getCompletion();
     }
 
     /**
@@ -397,7 +491,7 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      * @return - a string representing the current word.
      */
     public String getCurrentWord() {
-        return m_source.getCurrentWord();
+        return m_source.getCursor().getCurrentWord();
     }
 
     /**
@@ -406,7 +500,7 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      * very beginning of the data stream) the empty string is returned.
      * @return - a string representing the previous word of the parser.
      */
-    public String getPreviousWord() { return m_source.getPreviousWord(); }
+    public String getPreviousWord() { return m_source.getCursor().getPreviousWord(); }
 
     /**
      * Similar to the `getCurrentWord` but retrieve the next word instead. In
@@ -414,7 +508,7 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      * end of the data stream) the empty string is returned.
      * @return - a string representing the next word of the parser.
      */
-    public String getNextWord() { return m_source.getNextWord(); }
+    public String getNextWord() { return m_source.getCursor().getNextWord(); }
 
     /**
      * Used to perform a rewind of all the data read so far by the parser.
@@ -422,7 +516,7 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      */
     public void rewind() {
         if (m_source.perform(ReadLoader.Action.Rewind, 0)) {
-            scheduleLoading(true);
+            scheduleLoading(true, false);
         }
     }
 
@@ -435,7 +529,7 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      */
     public void moveToPrevious() {
         if (m_source.perform(ReadLoader.Action.PreviousStep, m_wordStep)) {
-            scheduleLoading(true);
+            scheduleLoading(true, false);
         }
     }
 
@@ -447,7 +541,35 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      */
     public void moveToNext() {
         if (m_source.perform(ReadLoader.Action.NextStep, m_wordStep)) {
-            scheduleLoading(true);
+            scheduleLoading(true, false);
+        }
+        else {
+            prefetch();
+        }
+    }
+
+    /**
+     * Used to move the parser to the beginning of the current chapter or to the
+     * beginning of the previous one in case it is already at the beginning of
+     * the current chapter. Chapters are the top most sections of the read so
+     * this allows to skip several sections at once.
+     */
+    public void moveToPreviousChapter() {
+        if (m_source.perform(ReadLoader.Action.PreviousSection, 1)) {
+            scheduleLoading(true, false);
+        }
+    }
+
+    /**
+     * Similar method to `moveToPreviousChapter` but used to move the parser to
+     * the beginning of the next chapter.
+     */
+    public void moveToNextChapter() {
+        if (m_source.perform(ReadLoader.Action.NextSection, 1)) {
+            scheduleLoading(true, false);
+        }
+        else {
+            prefetch();
         }
     }
 
@@ -460,7 +582,10 @@ public class ReadParser implements ReadLoader.DataLoadingListener {
      */
     public void advance() {
         if (m_source.perform(ReadLoader.Action.NextWord, 0)) {
-            scheduleLoading(true);
+            scheduleLoading(true, false);
+        }
+        else {
+            prefetch();
         }
     }
 }
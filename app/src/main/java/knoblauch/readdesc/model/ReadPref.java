@@ -55,6 +55,13 @@ public class ReadPref {
      */
     private boolean m_displayContext;
 
+    /**
+     * The amount of memory (expressed in megabytes) that a read can use to keep the
+     * words loaded from its source. Parts of the read far from the current word are
+     * discarded when it is exceeded and loaded again when needed.
+     */
+    private int m_memoryBudget;
+
     /**
      * Create a default read preference object with no associated preferences. The context is
      * used to retrieve the properties saved in the application and if none are defined, we
@@ -145,6 +152,19 @@ public class ReadPref {
      */
     public void setDisplayContext(boolean display) { m_displayContext = display; }
 
+    /**
+     * Retrieve the amount of memory in megabytes that can be used to keep the words of
+     * a read in memory.
+     * @return - the memory budget in megabytes.
+     */
+    public int getMemoryBudget() { return m_memoryBudget; }
+
+    /**
+     * Assign a new memory budget for the words of a read.
+     * @param budget - the new memory budget in megabytes.
+     */
+    public void setMemoryBudget(int budget) { m_memoryBudget = budget; }
+
     /**
      * Used in order to load the preferences from the values saved on the disk. Uses the
      * internal context to retrieve the previously saved values or uses the default ones
@@ -185,6 +205,14 @@ public class ReadPref {
             m_wordStep = pref.getInt(key, m_wordStep);
         }
 
+        // Restore the memory budget or create it from default value if it does not
+        // exist.
+        m_memoryBudget = res.getInteger(R.integer.activity_settings_pref_memory_budget_default);
+        key = res.getString(R.string.activity_settings_pref_xml_key_memory_budget);
+        if (pref.contains(key)) {
+            m_memoryBudget = pref.getInt(key, m_memoryBudget);
+        }
+
         // Restore background color while in reading mode.
         m_bgColor = ContextCompat.getColor(m_context, R.color.activity_settings_pref_color_bg_default);
         key = res.getString(R.string.activity_settings_pref_xml_key_color_bg);
@@ -225,6 +253,10 @@ public class ReadPref {
         key = res.getString(R.string.activity_settings_pref_xml_key_word_step);
         editor.putInt(key, m_wordStep);
 
+        // Save the memory budget.
+        key = res.getString(R.string.activity_settings_pref_xml_key_memory_budget);
+        editor.putInt(key, m_memoryBudget);
+
         // Save the display context status.
         key = res.getString(R.string.activity_settings_pref_xml_key_context_display);
         editor.putBoolean(key, m_displayContext);
@@ -259,6 +291,7 @@ public class ReadPref {
 
         // Restore each preference with its default value.
         m_wordFlipInterval = res.getInteger(R.integer.activity_settings_pref_word_flip_default);
+        m_memoryBudget = res.getInteger(R.integer.activity_settings_pref_memory_budget_default);
         m_bgColor = ContextCompat.getColor(m_context, R.color.activity_settings_pref_color_bg_default);
         m_textColor = ContextCompat.getColor(m_context, R.color.activity_settings_pref_color_text_default);
     }
@@ -0,0 +1,131 @@
+package knoblauch.readdesc.model;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.AsyncTask;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+public class ReadSnapshot extends AsyncTask<String, Void, Boolean> {
+
+    /**
+     * The context used to access the source of the read and the application's
+     * private storage. We only keep a weak reference to it so that the task does
+     * not prevent the activity that created it to be released.
+     */
+    private WeakReference<Context> m_context;
+
+    /**
+     * Whether an existing snapshot should be checked against the source and
+     * replaced in case it is outdated. Otherwise an existing snapshot is kept
+     * as is.
+     */
+    private boolean m_revalidate;
+
+    /**
+     * The `uri` of the source for which the snapshot is saved.
+     */
+    private String m_uri;
+
+    /**
+     * Create a new task to save a snapshot of the source of a read.
+     * @param context - the context to use to access the source.
+     * @param revalidate - `true` if an existing snapshot should be refreshed in
+     *                     case it does not match the source anymore.
+     */
+    private ReadSnapshot(Context context, boolean revalidate) {
+        m_context = new WeakReference<>(context);
+        m_revalidate = revalidate;
+        m_uri = null;
+    }
+
+    /**
+     * Used to schedule the saving of a snapshot of the source of the input read
+     * in the application's private storage. The words and titles of the source
+     * are then extracted and cached alongside the snapshot so that opening the
+     * read never needs to access the source again. Only the reads of web pages
+     * are saved this way: this method does nothing for other reads.
+     * In case a snapshot already exists it is only replaced if the `revalidate`
+     * flag is set and the source changed since the snapshot was saved. Checking
+     * this only reads the first bytes of the source.
+     * @param context - the context to use to access the source.
+     * @param desc - the read for which the snapshot should be saved.
+     * @param revalidate - `true` if an existing snapshot should be checked against
+     *                     the source.
+     */
+    public static void schedule(Context context, ReadDesc desc, boolean revalidate) {
+        if (context == null || desc == null) {
+            return;
+        }
+
+        ReadIntent intent = desc.toReadIntent();
+        if (intent.getType() != ReadDesc.Type.WebPage) {
+            return;
+        }
+
+        new ReadSnapshot(context, revalidate).execute(intent.getDataUri());
+    }
+
+    @Override
+    protected Boolean doInBackground(String... uris) {
+        if (uris.length == 0 || uris[0] == null) {
+            return false;
+        }
+
+        Context context = m_context.get();
+        if (context == null) {
+            return false;
+        }
+
+        m_uri = uris[0];
+        Uri uri = Uri.parse(m_uri);
+
+        return refresh(new ReadCache(context, uri), ReadCache.fromResolver(context.getContentResolver(), uri), m_revalidate);
+    }
+
+    /**
+     * Used to save a snapshot of the input source in its cache. In case a snapshot
+     * already exists it is kept unless the `revalidate` flag is set and it does not
+     * match the source anymore. An existing snapshot is also kept in case the source
+     * cannot be accessed.
+     * @param cache - the cache where the snapshot is saved.
+     * @param source - the source for which a snapshot should be saved.
+     * @param revalidate - `true` if an existing snapshot should be checked against
+     *                     the source.
+     * @return - `true` if a new snapshot was saved.
+     */
+    static boolean refresh(ReadCache cache, ReadCache.Source source, boolean revalidate) {
+        // Keep the existing snapshot unless it does not match the source anymore.
+        if (cache.hasSnapshot()) {
+            if (!revalidate) {
+                return false;
+            }
+
+            try {
+                if (!cache.isSnapshotOutdated(source)) {
+                    return false;
+                }
+            }
+            catch (IOException e) {
+                // The source cannot be accessed: keep the snapshot we have.
+                return false;
+            }
+        }
+
+        return cache.snapshot(source);
+    }
+
+    @Override
+    protected void onPostExecute(Boolean saved) {
+        Context context = m_context.get();
+        if (saved == null || !saved || context == null) {
+            return;
+        }
+
+        // Extract the words and titles of the snapshot: the loader reads the snapshot
+        // instead of the source and saves the result to the cache.
+        HtmlSourceLoader loader = new HtmlSourceLoader(context, 0.0f, m_uri);
+        loader.execute(m_uri);
+    }
+}
@@ -338,6 +338,10 @@ public class ReadsBank {
 
         File out = new File(m_context.getFilesDir(), name);
 
+        // Get rid of the cached content of the read: failure to do so is not an
+        // issue as the cache will be discarded if the source changes anyway.
+        ReadCache.discard(m_context, read.getSource());
+
         // Check consistency.
         if (!out.exists()) {
             // Consider that this is still a success: the file does not exist anymore.
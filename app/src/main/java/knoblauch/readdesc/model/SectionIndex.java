@@ -0,0 +1,276 @@
+package knoblauch.readdesc.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+class SectionIndex {
+
+    /**
+     * The default capacity of the index.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The level assigned to sections for which no level is known. This is
+     * the deepest level available so that such sections are only reached
+     * when navigating through all the sections.
+     */
+    static final int DEEPEST_LEVEL = Byte.MAX_VALUE;
+
+    /**
+     * The index of the first word of each section. The values are sorted in
+     * strictly increasing order which allows to search them with a binary
+     * search. Only the first `m_count` values are valid.
+     */
+    private int[] m_starts;
+
+    /**
+     * The level of each section: a lower value describes a section higher in
+     * the hierarchy of the document (typically `1` for `h1` titles). Only the
+     * first `m_count` values are valid.
+     */
+    private byte[] m_levels;
+
+    /**
+     * The number of sections registered in this index.
+     */
+    private int m_count;
+
+    /**
+     * The lowest level registered in this index, i.e. the level of the top
+     * most sections of the document.
+     */
+    private int m_topLevel;
+
+    /**
+     * Create a new empty index.
+     */
+    SectionIndex() {
+        m_starts = new int[DEFAULT_CAPACITY];
+        m_levels = new byte[DEFAULT_CAPACITY];
+        m_count = 0;
+        m_topLevel = DEEPEST_LEVEL;
+    }
+
+    /**
+     * Used to determine whether this index contains some sections.
+     * @return - `true` if no section is registered.
+     */
+    boolean isEmpty() {
+        return m_count == 0;
+    }
+
+    /**
+     * Returns the number of sections registered in this index.
+     * @return - the number of sections.
+     */
+    int size() {
+        return m_count;
+    }
+
+    /**
+     * Returns the index of the first word of the input section.
+     * @param section - the index of the section.
+     * @return - the index of the first word of the section.
+     */
+    int getStart(int section) {
+        return m_starts[section];
+    }
+
+    /**
+     * Returns the level of the input section.
+     * @param section - the index of the section.
+     * @return - the level of the section.
+     */
+    int getLevel(int section) {
+        return m_levels[section];
+    }
+
+    /**
+     * Returns the level of the top most sections of the document. In case no
+     * section is registered, `DEEPEST_LEVEL` is returned.
+     * @return - the lowest level registered in the index.
+     */
+    int getTopLevel() {
+        return m_topLevel;
+    }
+
+    /**
+     * Used to remove all the sections registered in this index.
+     */
+    void clear() {
+        m_count = 0;
+        m_topLevel = DEEPEST_LEVEL;
+    }
+
+    /**
+     * Used to register a new section starting at the input word. Sections are
+     * expected to be registered in increasing order of their first word: the
+     * ones starting before the last registered section are ignored. In case
+     * several sections start at the same word (i.e. no content is defined in
+     * between them) a single one is kept with the highest level.
+     * @param start - the index of the first word of the section.
+     * @param level - the level of the section.
+     */
+    void add(int start, int level) {
+        level = Math.max(0, Math.min(DEEPEST_LEVEL, level));
+
+        if (m_count > 0 && m_starts[m_count - 1] >= start) {
+            if (m_starts[m_count - 1] == start && level < m_levels[m_count - 1]) {
+                m_levels[m_count - 1] = (byte)level;
+                m_topLevel = Math.min(m_topLevel, level);
+            }
+
+            return;
+        }
+
+        if (m_count == m_starts.length) {
+            m_starts = Arrays.copyOf(m_starts, 2 * m_count);
+            m_levels = Arrays.copyOf(m_levels, 2 * m_count);
+        }
+
+        m_starts[m_count] = start;
+        m_levels[m_count] = (byte)level;
+        ++m_count;
+
+        m_topLevel = Math.min(m_topLevel, level);
+    }
+
+    /**
+     * Used to register a new section starting at the input word. Unlike `add`
+     * the sections can be registered in any order: the new section is inserted
+     * at its place so that the starts stay sorted. In case a section already
+     * starts at the same word a single one is kept with the highest level.
+     * @param start - the index of the first word of the section.
+     * @param level - the level of the section.
+     */
+    void insert(int start, int level) {
+        int section = find(start);
+
+        // Sections registered in order are appended.
+        if (section == m_count - 1) {
+            add(start, level);
+            return;
+        }
+
+        level = Math.max(0, Math.min(DEEPEST_LEVEL, level));
+
+        if (section >= 0 && m_starts[section] == start) {
+            if (level < m_levels[section]) {
+                m_levels[section] = (byte)level;
+                m_topLevel = Math.min(m_topLevel, level);
+            }
+
+            return;
+        }
+
+        if (m_count == m_starts.length) {
+            m_starts = Arrays.copyOf(m_starts, 2 * m_count);
+            m_levels = Arrays.copyOf(m_levels, 2 * m_count);
+        }
+
+        // Make room for the new section right after the one preceding it.
+        int id = section + 1;
+        System.arraycopy(m_starts, id, m_starts, id + 1, m_count - id);
+        System.arraycopy(m_levels, id, m_levels, id + 1, m_count - id);
+
+        m_starts[id] = start;
+        m_levels[id] = (byte)level;
+        ++m_count;
+
+        m_topLevel = Math.min(m_topLevel, level);
+    }
+
+    /**
+     * Used to find the section containing the input word. This is the last
+     * section starting at or before the word.
+     * @param wordID - the index of the word.
+     * @return - the index of the section containing the word or `-1` in case
+     *           the word is located before the first section.
+     */
+    int find(int wordID) {
+        int low = 0;
+        int high = m_count - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (m_starts[mid] <= wordID) {
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+
+        return high;
+    }
+
+    /**
+     * Used to find the first section starting after the input word and with a
+     * level lower or equal to the input level.
+     * @param wordID - the index of the word.
+     * @param level - the deepest level of the sections to consider.
+     * @return - the index of the section or `-1` in case there is none.
+     */
+    int next(int wordID, int level) {
+        for (int section = find(wordID) + 1 ; section < m_count ; ++section) {
+            if (m_levels[section] <= level) {
+                return section;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Used to find the section to move to when going backwards from the input
+     * word: this is the section containing the word with a level lower or equal
+     * to the input level in case the word is not its first one. Otherwise it is
+     * the previous section with such a level.
+     * @param wordID - the index of the word.
+     * @param level - the deepest level of the sections to consider.
+     * @return - the index of the section or `-1` in case there is none.
+     */
+    int previous(int wordID, int level) {
+        for (int section = find(wordID) ; section >= 0 ; --section) {
+            if (m_levels[section] <= level && m_starts[section] < wordID) {
+                return section;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Used to save the sections of this index to the input stream.
+     * @param out - the stream to write to.
+     * @throws IOException - in case the stream cannot be written.
+     */
+    void save(DataOutputStream out) throws IOException {
+        out.writeInt(m_count);
+        for (int section = 0 ; section < m_count ; ++section) {
+            out.writeInt(m_starts[section]);
+            out.writeByte(m_levels[section]);
+        }
+    }
+
+    /**
+     * Used to load the sections saved with `save` from the input stream. The
+     * sections are added to the ones already registered in the index.
+     * @param in - the stream to read from.
+     * @throws IOException - in case the stream cannot be read.
+     */
+    void load(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid sections count " + count + " in cache");
+        }
+
+        for (int section = 0 ; section < count ; ++section) {
+            int start = in.readInt();
+            add(start, in.readByte());
+        }
+    }
+}
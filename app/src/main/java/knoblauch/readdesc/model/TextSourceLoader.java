@@ -0,0 +1,846 @@
+package knoblauch.readdesc.model;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Pair;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+class TextSourceLoader extends ReadLoader {
+
+    /**
+     * The nominal size in bytes of a block of the source. The source is split
+     * in blocks of roughly this size which are tokenized independently so that
+     * we never need to analyze the whole source to display a word.
+     */
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The number of blocks kept loaded on each side of the block containing
+     * the current word. These blocks are loaded in the background so that the
+     * reading never has to wait for a block to be tokenized.
+     */
+    private static final int BLOCKS_WINDOW = 1;
+
+    /**
+     * The size of the buffer used to read the source in case it can't be mapped
+     * in memory.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The charset used to decode the source.
+     */
+    private static final Charset ENCODING = Charset.forName("UTF-8");
+
+    /**
+     * The motion pending on the current block. Some motions (like moving to the
+     * previous paragraph) can only be resolved once the target block has been
+     * loaded: they are saved until this is the case.
+     */
+    private enum Pending {
+        None,
+        FirstParagraph,
+        LastParagraph
+    }
+
+    /**
+     * Convenience class describing a block of the source once tokenized. It
+     * holds the words of the block and the position of the paragraphs.
+     */
+    private static class Block {
+
+        /**
+         * The words of the block.
+         */
+        ArrayList<String> words;
+
+        /**
+         * The index of the words of the block which start a new paragraph, in
+         * increasing order. Only the first `paragraphsCount` values are valid.
+         */
+        int[] paragraphs;
+
+        /**
+         * The number of paragraphs starting in the block.
+         */
+        int paragraphsCount;
+
+        /**
+         * The offset of the first byte of the block in the source.
+         */
+        int start;
+
+        /**
+         * The offset of the first byte after the block in the source.
+         */
+        int end;
+
+        /**
+         * Create a new empty block for the input range of the source.
+         * @param start - the offset of the first byte of the block.
+         * @param end - the offset of the first byte after the block.
+         */
+        Block(int start, int end) {
+            this.words = new ArrayList<>();
+            this.paragraphs = new int[8];
+            this.paragraphsCount = 0;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Returns the number of words of the block.
+         * @return - the number of words of the block.
+         */
+        int size() {
+            return words.size();
+        }
+
+        /**
+         * Used to register that the next word added to the block starts a new
+         * paragraph.
+         */
+        void startParagraph() {
+            if (paragraphsCount == paragraphs.length) {
+                paragraphs = Arrays.copyOf(paragraphs, 2 * paragraphsCount);
+            }
+
+            paragraphs[paragraphsCount] = words.size();
+            ++paragraphsCount;
+        }
+
+        /**
+         * Used to find the last paragraph of the block starting strictly before
+         * the input word.
+         * @param wordID - the index of the word.
+         * @return - the index of the first word of the paragraph or `-1` if no
+         *           paragraph starts before the word in this block.
+         */
+        int previousParagraph(int wordID) {
+            for (int id = paragraphsCount - 1 ; id >= 0 ; --id) {
+                if (paragraphs[id] < wordID) {
+                    return paragraphs[id];
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Used to find the first paragraph of the block starting strictly after
+         * the input word.
+         * @param wordID - the index of the word.
+         * @return - the index of the first word of the paragraph or `-1` if no
+         *           paragraph starts after the word in this block.
+         */
+        int nextParagraph(int wordID) {
+            for (int id = 0 ; id < paragraphsCount ; ++id) {
+                if (paragraphs[id] > wordID) {
+                    return paragraphs[id];
+                }
+            }
+
+            return -1;
+        }
+    }
+
+    /**
+     * The content of the source. It is usually mapped in memory so that only the
+     * blocks actually tokenized are read from the storage. This buffer is shared
+     * with the copies of this loader: it is only accessed through absolute reads
+     * or through duplicates so that they don't interfere with each other.
+     */
+    private ByteBuffer m_data;
+
+    /**
+     * The number of bytes of the source which are relevant: the trailing spaces
+     * are not considered so that the last block always contains some words.
+     */
+    private int m_length;
+
+    /**
+     * The number of blocks of the source.
+     */
+    private int m_blocksCount;
+
+    /**
+     * The blocks of the source currently loaded, indexed by their position in
+     * the source. Only the blocks around the current word are kept.
+     */
+    private HashMap<Integer, Block> m_blocks;
+
+    /**
+     * The index of the block containing the current word.
+     */
+    private int m_blockID;
+
+    /**
+     * The index of the current word in its block.
+     */
+    private int m_wordID;
+
+    /**
+     * The motion that still needs to be applied once the current block is loaded.
+     */
+    private Pending m_pending;
+
+    /**
+     * Create a new plain text source loader from the specified arguments.
+     * @param context - the context to use to access the source.
+     * @param progress - the desired progress to load in priority.
+     */
+    TextSourceLoader(Context context, float progress) {
+        super(context, progress);
+
+        m_data = null;
+        m_length = 0;
+        m_blocksCount = 0;
+
+        m_blocks = new HashMap<>();
+        m_blockID = -1;
+        m_wordID = -1;
+        m_pending = Pending.None;
+    }
+
+    /**
+     * Used to copy the input loader and create a new object from it. The content
+     * of the source and the loaded blocks are shared with the input loader.
+     * @param other - the other elements to copy.
+     */
+    TextSourceLoader(TextSourceLoader other) {
+        // Call base handler.
+        super(other);
+
+        m_data = other.m_data;
+        m_length = other.m_length;
+        m_blocksCount = other.m_blocksCount;
+
+        m_blocks = other.m_blocks;
+        m_blockID = other.m_blockID;
+        m_wordID = other.m_wordID;
+        m_pending = other.m_pending;
+    }
+
+    /**
+     * Used to determine whether the input byte is a space separating two words.
+     * Only `ASCII` spaces are considered which guarantees that a multi-bytes
+     * character is never split.
+     * @param b - the byte to check.
+     * @return - `true` if the byte is a space.
+     */
+    private static boolean isSpace(int b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * Used to retrieve the block containing the current word. The locker is
+     * assumed to be acquired.
+     * @return - the current block or `null` if it is not loaded.
+     */
+    private Block getCurrentBlock() {
+        return m_blocks.get(m_blockID);
+    }
+
+    @Override
+    boolean isInvalid() {
+        Block block = getCurrentBlock();
+        return block == null || m_pending != Pending.None || m_wordID < 0 || m_wordID >= block.size();
+    }
+
+    @Override
+    boolean isAtStart() {
+        m_locker.lock();
+        boolean atStart = (!isInvalid() && m_blockID == 0 && m_wordID == 0);
+        m_locker.unlock();
+
+        return atStart;
+    }
+
+    @Override
+    boolean isAtEnd() {
+        m_locker.lock();
+        boolean atEnd = (!isInvalid() && m_blockID == m_blocksCount - 1 && m_wordID == getCurrentBlock().size() - 1);
+        m_locker.unlock();
+
+        return atEnd;
+    }
+
+    @Override
+    float getCompletion() {
+        m_locker.lock();
+
+        // In case the source is not loaded yet, use the desired progress.
+        float progress = m_progress;
+
+        if (!isInvalid() && m_length > 0) {
+            // Interpolate the position of the current word in the bytes of its block.
+            Block block = getCurrentBlock();
+            float offset = block.start + 1.0f * (block.end - block.start) * m_wordID / block.size();
+            progress = offset / m_length;
+        }
+
+        m_locker.unlock();
+
+        return progress;
+    }
+
+    @Override
+    void fillWords(int first, String[] words) {
+        Arrays.fill(words, "");
+
+        // Walk backwards from the current word to fetch the words before it. We
+        // continue in the previous blocks as long as they are loaded.
+        int blockID = m_blockID;
+        int wordID = m_wordID;
+        Block block = getCurrentBlock();
+
+        for (int offset = -1 ; offset >= first ; --offset) {
+            --wordID;
+            while (block != null && wordID < 0) {
+                block = m_blocks.get(--blockID);
+                if (block != null) {
+                    wordID += block.size();
+                }
+            }
+
+            if (block == null) {
+                break;
+            }
+            if (offset - first < words.length) {
+                words[offset - first] = block.words.get(wordID);
+            }
+        }
+
+        // Walk forward from the current word to fetch the words after it.
+        blockID = m_blockID;
+        wordID = m_wordID;
+        block = getCurrentBlock();
+
+        for (int offset = 0 ; offset < first + words.length ; ++offset) {
+            while (block != null && wordID >= block.size()) {
+                wordID -= block.size();
+                block = m_blocks.get(++blockID);
+            }
+
+            if (block == null) {
+                break;
+            }
+            if (offset >= first) {
+                words[offset - first] = block.words.get(wordID);
+            }
+
+            ++wordID;
+        }
+    }
+
+    @Override
+    Pair<Boolean, Boolean> handleMotion(Action action, int param) {
+        // In case the loader is not in a valid state we can't move.
+        if (isInvalid()) {
+            return new Pair<>(false, false);
+        }
+
+        Block block = getCurrentBlock();
+        int sBlockID = m_blockID;
+        int sWordID = m_wordID;
+
+        switch (action) {
+            case Rewind:
+                m_blockID = 0;
+                m_wordID = 0;
+                break;
+            case NextWord:
+                ++m_wordID;
+                break;
+            case PreviousStep:
+            case PreviousSection: {
+                // Paragraphs are the sections of a plain text source. We move to the
+                // start of the current paragraph or to the start of the previous one
+                // if we're already at the start of the current one. In case it does
+                // not start in this block it will be searched in the previous ones.
+                int paragraph = block.previousParagraph(m_wordID);
+                if (paragraph >= 0) {
+                    m_wordID = paragraph;
+                }
+                else if (m_blockID > 0) {
+                    --m_blockID;
+                    m_wordID = 0;
+                    m_pending = Pending.LastParagraph;
+                }
+                else {
+                    m_wordID = 0;
+                }
+                break;
+            }
+            case NextStep:
+            case NextSection: {
+                // Similar to the previous step but we move to the next paragraph or to
+                // the end of the source if there's none.
+                int paragraph = block.nextParagraph(m_wordID);
+                if (paragraph >= 0) {
+                    m_wordID = paragraph;
+                }
+                else if (m_blockID < m_blocksCount - 1) {
+                    ++m_blockID;
+                    m_wordID = 0;
+                    m_pending = Pending.FirstParagraph;
+                }
+                else {
+                    m_wordID = block.size() - 1;
+                }
+                break;
+            }
+        }
+
+        // Resolve the motion with the blocks currently loaded: some loading might be
+        // needed in case the motion goes beyond them.
+        boolean needsLoading = !consolidate();
+
+        return new Pair<>(sBlockID != m_blockID || sWordID != m_wordID, needsLoading);
+    }
+
+    /**
+     * Used to resolve the position of the cursor once a motion has been applied:
+     * this handles the pending motions and the words which are beyond the bounds
+     * of their block. Only the blocks already loaded are used. The locker is
+     * assumed to be acquired.
+     * @return - `true` if the cursor could be resolved and `false` in case some
+     *           blocks need to be loaded first.
+     */
+    private boolean consolidate() {
+        while (true) {
+            Block block = getCurrentBlock();
+            if (block == null) {
+                return false;
+            }
+
+            switch (m_pending) {
+                case LastParagraph:
+                    // The paragraph starts in this block or in a previous one.
+                    if (block.paragraphsCount > 0) {
+                        m_wordID = block.paragraphs[block.paragraphsCount - 1];
+                        m_pending = Pending.None;
+                    }
+                    else if (m_blockID > 0) {
+                        --m_blockID;
+                        continue;
+                    }
+                    else {
+                        m_wordID = 0;
+                        m_pending = Pending.None;
+                    }
+                    break;
+                case FirstParagraph:
+                    // The paragraph starts in this block or in a next one.
+                    if (block.paragraphsCount > 0) {
+                        m_wordID = block.paragraphs[0];
+                        m_pending = Pending.None;
+                    }
+                    else if (m_blockID < m_blocksCount - 1) {
+                        ++m_blockID;
+                        continue;
+                    }
+                    else {
+                        m_wordID = block.size() - 1;
+                        m_pending = Pending.None;
+                    }
+                    break;
+                case None:
+                    break;
+            }
+
+            // Move to the next block in case we went past the end of this one. Note
+            // that blocks might be empty in case a single word spans more than one
+            // block.
+            if (m_wordID >= block.size() && m_blockID < m_blocksCount - 1) {
+                m_wordID = 0;
+                ++m_blockID;
+                continue;
+            }
+
+            m_wordID = Math.max(0, Math.min(block.size() - 1, m_wordID));
+
+            return true;
+        }
+    }
+
+    @Override
+    boolean needsPrefetch() {
+        m_locker.lock();
+
+        // Check whether all the blocks around the current one are loaded.
+        boolean needed = false;
+        if (!isInvalid()) {
+            int first = Math.max(0, m_blockID - BLOCKS_WINDOW);
+            int last = Math.min(m_blocksCount - 1, m_blockID + BLOCKS_WINDOW);
+
+            for (int id = first ; id <= last && !needed ; ++id) {
+                needed = !m_blocks.containsKey(id);
+            }
+        }
+
+        m_locker.unlock();
+
+        return needed;
+    }
+
+    @Override
+    void loadFromUri(ContentResolver resolver, Uri uri, float progress) throws IOException {
+        // Access the content of the source in case it's not already done.
+        if (m_data == null) {
+            setData(openSource(resolver, uri));
+        }
+
+        loadAround(progress);
+    }
+
+    @Override
+    void loadFromSource(InputStream stream, float progress) throws IOException {
+        if (stream == null) {
+            throw new IOException("Cannot read text source from invalid stream");
+        }
+
+        // Without any other way to access the source we have to read it entirely.
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try {
+            int read = stream.read(buffer);
+            while (read >= 0) {
+                out.write(buffer, 0, read);
+                read = stream.read(buffer);
+            }
+        }
+        finally {
+            stream.close();
+        }
+
+        setData(ByteBuffer.wrap(out.toByteArray()));
+
+        loadAround(progress);
+    }
+
+    /**
+     * Used to access the content of the source. We try to map in memory the file
+     * provided by the content provider which does not read anything until a block
+     * is actually tokenized. In case the provider does not give access to a file
+     * we fall back to a local copy of the source or to reading it entirely.
+     * @param resolver - the resolver to use to access the source.
+     * @param uri - the `uri` of the source.
+     * @return - the content of the source.
+     * @throws IOException - in case the source cannot be accessed.
+     */
+    private ByteBuffer openSource(ContentResolver resolver, Uri uri) throws IOException {
+        try {
+            ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r");
+            if (pfd != null) {
+                // The stream closes the descriptor along with its channel. This does
+                // not invalidate the mapping of the file.
+                FileInputStream stream = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
+                try {
+                    ByteBuffer data = map(stream.getChannel());
+                    if (data != null) {
+                        return data;
+                    }
+                }
+                finally {
+                    stream.close();
+                }
+            }
+        }
+        catch (IOException e) {
+            // Some providers only give access to pipes which can't be mapped.
+        }
+
+        ReadCache cache = getCache();
+        File copy = (cache != null ? cache.getSourceCopy(resolver, uri) : null);
+        if (copy != null) {
+            RandomAccessFile file = new RandomAccessFile(copy, "r");
+            try {
+                ByteBuffer data = map(file.getChannel());
+                if (data != null) {
+                    return data;
+                }
+            }
+            finally {
+                file.close();
+            }
+        }
+
+        // Read the source entirely.
+        InputStream stream = resolver.openInputStream(uri);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        if (stream == null) {
+            throw new IOException("Could not open text source \"" + uri + "\"");
+        }
+
+        try {
+            int read = stream.read(buffer);
+            while (read >= 0) {
+                out.write(buffer, 0, read);
+                read = stream.read(buffer);
+            }
+        }
+        finally {
+            stream.close();
+        }
+
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    /**
+     * Used to map the content of the input channel in memory. The mapping stays
+     * valid once the channel is closed.
+     * @param channel - the channel to map.
+     * @return - the mapped content or `null` in case the channel does not describe
+     *           a regular file.
+     * @throws IOException - in case the channel cannot be mapped.
+     */
+    private static ByteBuffer map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size <= 0 || size > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /**
+     * Used to register the content of the source and to compute the layout of its
+     * blocks. The trailing spaces of the source are ignored.
+     * @param data - the content of the source.
+     */
+    private void setData(ByteBuffer data) {
+        int length = data.limit();
+        while (length > 0 && isSpace(data.get(length - 1))) {
+            --length;
+        }
+
+        m_locker.lock();
+
+        m_data = data;
+        m_length = length;
+        m_blocksCount = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+        m_locker.unlock();
+    }
+
+    /**
+     * Used to compute the offset of the first byte of the input block. Blocks start
+     * at the beginning of the word containing their nominal offset so that words
+     * are never split across blocks (unless a single word is larger than a block).
+     * @param id - the index of the block.
+     * @return - the offset of the first byte of the block.
+     */
+    private int getBlockStart(int id) {
+        if (id <= 0) {
+            return 0;
+        }
+        if (id >= m_blocksCount) {
+            return m_length;
+        }
+
+        int nominal = id * BLOCK_SIZE;
+        int start = nominal;
+        while (start > nominal - BLOCK_SIZE && !isSpace(m_data.get(start - 1))) {
+            --start;
+        }
+
+        // The word is larger than a block: split it at the nominal offset.
+        if (start == nominal - BLOCK_SIZE && !isSpace(m_data.get(start - 1))) {
+            start = nominal;
+        }
+
+        return start;
+    }
+
+    /**
+     * Used to determine whether the input block starts with a new paragraph: this
+     * is the case if the spaces preceding it contain a blank line.
+     * @param start - the offset of the first byte of the block.
+     * @return - `true` if the first word of the block starts a paragraph.
+     */
+    private boolean startsParagraph(int start) {
+        if (start == 0) {
+            return true;
+        }
+
+        int lines = 0;
+        for (int id = start - 1 ; id >= 0 && id >= start - BLOCK_SIZE && isSpace(m_data.get(id)) && lines < 2 ; --id) {
+            if (m_data.get(id) == '\n') {
+                ++lines;
+            }
+        }
+
+        return lines >= 2;
+    }
+
+    /**
+     * Used to tokenize the input block of the source. The words are separated by
+     * spaces (see `WordTokenizer`) and a blank line starts a new paragraph.
+     * @param id - the index of the block.
+     * @return - the tokenized block.
+     */
+    private Block tokenize(int id) {
+        Block block = new Block(getBlockStart(id), getBlockStart(id + 1));
+
+        // Decode the bytes of the block.
+        ByteBuffer bytes = m_data.duplicate();
+        bytes.limit(block.end);
+        bytes.position(block.start);
+
+        CharBuffer chars;
+        try {
+            chars = ENCODING.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(bytes);
+        }
+        catch (IOException e) {
+            // Can't happen as errors are replaced.
+            return block;
+        }
+
+        // Split the text on spaces and count the lines in between words to detect the
+        // paragraphs. The words themselves are produced by the tokenizer.
+        WordTokenizer tokenizer = new WordTokenizer(block.words);
+        int lines = (startsParagraph(block.start) ? 2 : 0);
+        int length = chars.length();
+        int pos = 0;
+
+        while (pos < length) {
+            char c = chars.charAt(pos);
+            if (WordTokenizer.isSpace(c)) {
+                if (c == '\n') {
+                    ++lines;
+                }
+
+                ++pos;
+                continue;
+            }
+
+            int begin = pos;
+            while (pos < length && !WordTokenizer.isSpace(chars.charAt(pos))) {
+                ++pos;
+            }
+
+            if (lines >= 2) {
+                block.startParagraph();
+            }
+
+            tokenizer.append(chars, begin, pos);
+            tokenizer.breakWord();
+            lines = 0;
+        }
+
+        tokenizer.finish();
+
+        return block;
+    }
+
+    /**
+     * Used to load the blocks around the current word. In case no word is selected
+     * yet the cursor is positioned at the input progress: as the blocks are split
+     * at fixed offsets this does not require to analyze any data before it.
+     * @param progress - the progress to reach in case the cursor is not defined.
+     */
+    private void loadAround(float progress) {
+        // Nothing to load for an empty source.
+        if (m_blocksCount == 0) {
+            return;
+        }
+
+        m_locker.lock();
+
+        // Position the cursor in case it's not already done.
+        boolean initial = (m_blockID < 0);
+        if (initial) {
+            float cProgress = Math.min(1.0f, Math.max(0.0f, progress));
+            int offset = Math.round(cProgress * m_length);
+            m_blockID = Math.max(0, Math.min(m_blocksCount - 1, offset / BLOCK_SIZE));
+        }
+
+        m_locker.unlock();
+
+        // Load blocks until the position of the cursor can be resolved. This usually
+        // takes a single iteration except when motions span several blocks.
+        boolean resolved = false;
+        while (!resolved && !isCancelled()) {
+            m_locker.lock();
+            int current = m_blockID;
+            m_locker.unlock();
+
+            HashMap<Integer, Block> loaded = new HashMap<>();
+            int first = Math.max(0, current - BLOCKS_WINDOW);
+            int last = Math.min(m_blocksCount - 1, current + BLOCKS_WINDOW);
+
+            for (int id = first ; id <= last ; ++id) {
+                m_locker.lock();
+                boolean exists = m_blocks.containsKey(id);
+                m_locker.unlock();
+
+                if (!exists) {
+                    loaded.put(id, tokenize(id));
+                }
+            }
+
+            m_locker.lock();
+
+            m_blocks.putAll(loaded);
+
+            if (initial && m_wordID < 0) {
+                // Interpolate the position of the word in the block from the progress.
+                Block block = getCurrentBlock();
+                float cProgress = Math.min(1.0f, Math.max(0.0f, progress));
+                float ratio = (cProgress * m_length - block.start) / Math.max(1, block.end - block.start);
+                m_wordID = Math.max(0, Math.round(ratio * block.size()));
+            }
+
+            resolved = consolidate();
+
+            // Discard the blocks which are far from the current word.
+            Iterator<Integer> it = m_blocks.keySet().iterator();
+            while (it.hasNext()) {
+                int id = it.next();
+                if (id < m_blockID - BLOCKS_WINDOW || id > m_blockID + BLOCKS_WINDOW) {
+                    it.remove();
+                }
+            }
+
+            m_locker.unlock();
+        }
+    }
+
+    @Override
+    public boolean loadFromCache(DataInputStream in, float progress) {
+        // Plain text sources are tokenized quickly enough around the current word
+        // not to need a cache.
+        return false;
+    }
+
+    @Override
+    public void saveToCache(DataOutputStream out) {
+        // No op: nothing to be done here.
+    }
+}
@@ -0,0 +1,336 @@
+package knoblauch.readdesc.model;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+class Vocabulary {
+
+    /**
+     * An immutable view on the words registered in a vocabulary at some point.
+     * It can be used from any thread without locking: the words it describes
+     * are never modified afterwards as the vocabulary only ever appends new
+     * words after the existing ones.
+     */
+    static class View {
+
+        /**
+         * The arena of characters of the vocabulary when the view was created.
+         * Only the characters of the first `m_count` tokens are relevant.
+         */
+        private final char[] m_chars;
+
+        /**
+         * The offsets of the tokens in the arena.
+         */
+        private final int[] m_offsets;
+
+        /**
+         * The number of tokens visible in this view.
+         */
+        private final int m_count;
+
+        /**
+         * Create a new view on the input data.
+         * @param chars - the arena of characters.
+         * @param offsets - the offsets of the tokens.
+         * @param count - the number of tokens visible in the view.
+         */
+        private View(char[] chars, int[] offsets, int count) {
+            m_chars = chars;
+            m_offsets = offsets;
+            m_count = count;
+        }
+
+        /**
+         * Returns the word associated to the input token. A new `String` is
+         * created by each call.
+         * @param token - the token of the word.
+         * @return - the word.
+         */
+        String get(int token) {
+            if (token < 0 || token >= m_count) {
+                throw new IndexOutOfBoundsException("Invalid token " + token + " in vocabulary containing " + m_count + " word(s)");
+            }
+
+            return new String(m_chars, m_offsets[token], m_offsets[token + 1] - m_offsets[token]);
+        }
+    }
+
+    /**
+     * The default number of distinct words that can be registered before the
+     * vocabulary needs to grow.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The average number of characters of a word used to size the arena of the
+     * vocabulary.
+     */
+    private static final int AVERAGE_WORD_LENGTH = 8;
+
+    /**
+     * The characters of all the distinct words of the vocabulary, one after the
+     * other. Only the first `m_length` characters are valid.
+     */
+    private char[] m_chars;
+
+    /**
+     * The offset of each token in the `m_chars` arena: the token `i` spans the
+     * characters `[m_offsets[i]; m_offsets[i + 1])`.
+     */
+    private int[] m_offsets;
+
+    /**
+     * The hash of each token. It is kept so that the table does not need to be
+     * computed again from the characters when it grows.
+     */
+    private int[] m_hashes;
+
+    /**
+     * The hash table allowing to find the token of a word. It uses an open
+     * addressing scheme with linear probing: each slot contains the token plus
+     * one or `0` if it is empty. Its size is always a power of two.
+     */
+    private int[] m_table;
+
+    /**
+     * The number of distinct words registered in the vocabulary.
+     */
+    private int m_count;
+
+    /**
+     * The number of characters used in the `m_chars` arena.
+     */
+    private int m_length;
+
+    /**
+     * The last view published for this vocabulary (see `publish`).
+     */
+    private View m_view;
+
+    /**
+     * A buffer used to build the words resulting from the concatenation of an
+     * existing token and some text (see `concat`).
+     */
+    private StringBuilder m_scratch;
+
+    /**
+     * Create a new empty vocabulary.
+     */
+    Vocabulary() {
+        m_chars = new char[DEFAULT_CAPACITY * AVERAGE_WORD_LENGTH];
+        m_offsets = new int[DEFAULT_CAPACITY + 1];
+        m_hashes = new int[DEFAULT_CAPACITY];
+        m_table = new int[2 * DEFAULT_CAPACITY];
+        m_count = 0;
+        m_length = 0;
+
+        m_view = new View(m_chars, m_offsets, 0);
+        m_scratch = new StringBuilder();
+    }
+
+    /**
+     * Returns the number of distinct words registered in the vocabulary.
+     * @return - the number of tokens.
+     */
+    int size() {
+        return m_count;
+    }
+
+    /**
+     * Used to create a view on the words registered so far in the vocabulary. A
+     * new view is only created in case some words were registered since the last
+     * call. Note that this method should be called by the thread registering the
+     * words (or while holding the lock protecting the vocabulary).
+     * @return - a view on the current words of the vocabulary.
+     */
+    View publish() {
+        if (m_view.m_count != m_count || m_view.m_chars != m_chars || m_view.m_offsets != m_offsets) {
+            m_view = new View(m_chars, m_offsets, m_count);
+        }
+
+        return m_view;
+    }
+
+    /**
+     * Returns the word associated to the input token. A new `String` is created
+     * by each call. Note that just like `intern` this method should only be used
+     * by the thread registering the words: other threads should use a `View`.
+     * @param token - the token of the word.
+     * @return - the word.
+     */
+    String get(int token) {
+        if (token < 0 || token >= m_count) {
+            throw new IndexOutOfBoundsException("Invalid token " + token + " in vocabulary containing " + m_count + " word(s)");
+        }
+
+        return new String(m_chars, m_offsets[token], m_offsets[token + 1] - m_offsets[token]);
+    }
+
+    /**
+     * Used to retrieve the token associated to the input range of text. In case
+     * the word is not yet part of the vocabulary it is registered. No `String`
+     * is created in the process.
+     * @param text - the text containing the word.
+     * @param start - the index of the first character of the word.
+     * @param end - the index of the first character after the word.
+     * @return - the token of the word.
+     */
+    int intern(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int id = start ; id < end ; ++id) {
+            hash = 31 * hash + text.charAt(id);
+        }
+
+        int mask = m_table.length - 1;
+        int slot = mix(hash) & mask;
+
+        while (m_table[slot] != 0) {
+            int token = m_table[slot] - 1;
+            if (m_hashes[token] == hash && matches(token, text, start, end)) {
+                return token;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        // Register the new word.
+        int length = end - start;
+        ensureCapacity(m_count + 1, m_length + length);
+
+        for (int id = start ; id < end ; ++id) {
+            m_chars[m_length++] = text.charAt(id);
+        }
+
+        int token = m_count;
+        m_hashes[token] = hash;
+        ++m_count;
+        m_offsets[m_count] = m_length;
+
+        // The table might have been resized: find the slot again in this case.
+        if (mask != m_table.length - 1) {
+            slot = findFreeSlot(hash);
+        }
+        m_table[slot] = token + 1;
+
+        return token;
+    }
+
+    /**
+     * Used to retrieve the token of the word made of the input token followed by
+     * the input range of text. The word is registered if needed. Just like for
+     * `intern` no `String` is created in the process.
+     * @param token - the token of the beginning of the word.
+     * @param text - the text containing the end of the word.
+     * @param start - the index of the first character of the end of the word.
+     * @param end - the index of the first character after the word.
+     * @return - the token of the concatenated word.
+     */
+    int concat(int token, CharSequence text, int start, int end) {
+        if (token < 0 || token >= m_count) {
+            throw new IndexOutOfBoundsException("Invalid token " + token + " in vocabulary containing " + m_count + " word(s)");
+        }
+
+        m_scratch.setLength(0);
+        m_scratch.append(m_chars, m_offsets[token], m_offsets[token + 1] - m_offsets[token]);
+        m_scratch.append(text, start, end);
+
+        return intern(m_scratch, 0, m_scratch.length());
+    }
+
+    /**
+     * Used to retrieve the token in this vocabulary of the input token of another
+     * vocabulary. The word is registered in this vocabulary if needed.
+     * @param other - the vocabulary defining the token.
+     * @param token - the token in the other vocabulary.
+     * @return - the token of the same word in this vocabulary.
+     */
+    int intern(Vocabulary other, int token) {
+        if (other == this) {
+            return token;
+        }
+
+        return intern(CharBuffer.wrap(other.m_chars), other.m_offsets[token], other.m_offsets[token + 1]);
+    }
+
+    /**
+     * Used to determine whether the input token corresponds to the input range
+     * of text.
+     * @param token - the token to compare.
+     * @param text - the text containing the word.
+     * @param start - the index of the first character of the word.
+     * @param end - the index of the first character after the word.
+     * @return - `true` if the token describes the word.
+     */
+    private boolean matches(int token, CharSequence text, int start, int end) {
+        int offset = m_offsets[token];
+        if (m_offsets[token + 1] - offset != end - start) {
+            return false;
+        }
+
+        for (int id = start ; id < end ; ++id) {
+            if (m_chars[offset++] != text.charAt(id)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Used to spread the bits of the input hash so that words with close hashes
+     * don't end up in consecutive slots of the table.
+     * @param hash - the hash of a word.
+     * @return - the mixed hash.
+     */
+    private static int mix(int hash) {
+        hash ^= (hash >>> 16);
+        hash *= 0x85EBCA6B;
+        hash ^= (hash >>> 13);
+
+        return hash;
+    }
+
+    /**
+     * Used to find the first free slot of the table for the input hash.
+     * @param hash - the hash of a word.
+     * @return - the index of the slot.
+     */
+    private int findFreeSlot(int hash) {
+        int mask = m_table.length - 1;
+        int slot = mix(hash) & mask;
+
+        while (m_table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Used to make sure that the vocabulary can hold the input number of tokens
+     * and characters. The table is kept at most half full so that the probing
+     * sequences stay short.
+     * @param tokens - the number of tokens to hold.
+     * @param chars - the number of characters to hold.
+     */
+    private void ensureCapacity(int tokens, int chars) {
+        if (chars > m_chars.length) {
+            m_chars = Arrays.copyOf(m_chars, Math.max(chars, 2 * m_chars.length));
+        }
+
+        if (tokens <= m_hashes.length) {
+            return;
+        }
+
+        int capacity = 2 * m_hashes.length;
+        m_offsets = Arrays.copyOf(m_offsets, capacity + 1);
+        m_hashes = Arrays.copyOf(m_hashes, capacity);
+
+        // Rebuild the table from the hashes of the tokens.
+        m_table = new int[2 * capacity];
+        for (int token = 0 ; token < m_count ; ++token) {
+            m_table[findFreeSlot(m_hashes[token])] = token + 1;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package knoblauch.readdesc.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+class WordStore extends AbstractList<String> implements RandomAccess {
+
+    /**
+     * An immutable view on the words of a store at the time it was published.
+     * It can be used from any thread without any locking: the store never
+     * modifies the data visible through a snapshot, it copies it instead.
+     */
+    static class Snapshot {
+
+        /**
+         * The segments of tokens of the store when the snapshot was published.
+         * Only the first `m_count` tokens are relevant.
+         */
+        private final int[][] m_segments;
+
+        /**
+         * The number of words visible in this snapshot.
+         */
+        private final int m_count;
+
+        /**
+         * The view on the vocabulary allowing to interpret the tokens.
+         */
+        private final Vocabulary.View m_vocabulary;
+
+        /**
+         * Create a new snapshot from the input data.
+         * @param segments - the segments of tokens.
+         * @param count - the number of words visible in the snapshot.
+         * @param vocabulary - the view on the vocabulary of the store.
+         */
+        private Snapshot(int[][] segments, int count, Vocabulary.View vocabulary) {
+            m_segments = segments;
+            m_count = count;
+            m_vocabulary = vocabulary;
+        }
+
+        /**
+         * Returns the number of words of this snapshot.
+         * @return - the number of words.
+         */
+        int size() {
+            return m_count;
+        }
+
+        /**
+         * Used to determine whether this snapshot contains some words.
+         * @return - `true` if this snapshot does not contain any word.
+         */
+        boolean isEmpty() {
+            return m_count == 0;
+        }
+
+        /**
+         * Returns the word at the input index. A new `String` is created by each
+         * call: this should only be used for the words actually displayed.
+         * @param id - the index of the word.
+         * @return - the word.
+         */
+        String get(int id) {
+            return m_vocabulary.get(getToken(id));
+        }
+
+        /**
+         * Returns the token of the word at the input index (see `WordStore.getToken`).
+         * @param id - the index of the word.
+         * @return - the token of the word.
+         */
+        int getToken(int id) {
+            if (id < 0 || id >= m_count) {
+                throw new IndexOutOfBoundsException("Invalid word " + id + " in snapshot containing " + m_count + " word(s)");
+            }
+
+            return m_segments[id >>> SEGMENT_SHIFT][id & SEGMENT_MASK];
+        }
+    }
+
+    /**
+     * The tokens of the words are stored in segments of `2^SEGMENT_SHIFT` words.
+     * Modifying a published word only requires to copy the segment containing
+     * it rather than all the tokens of the store.
+     */
+    private static final int SEGMENT_SHIFT = 10;
+
+    /**
+     * The number of words of a segment.
+     */
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    /**
+     * The mask to apply on the index of a word to get its index in its segment.
+     */
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * The default number of segments that can be referenced before the list of
+     * segments needs to grow.
+     */
+    private static final int DEFAULT_SEGMENTS_CAPACITY = 16;
+
+    /**
+     * The vocabulary used to encode the words of the store: each word is only
+     * described by its token in the vocabulary. The vocabulary can be shared by
+     * several stores.
+     */
+    private Vocabulary m_vocabulary;
+
+    /**
+     * The segments containing the tokens of the words. The word `i` is stored
+     * at index `i & SEGMENT_MASK` of the segment `i >>> SEGMENT_SHIFT`. Only the
+     * segments containing some words are allocated.
+     */
+    private int[][] m_segments;
+
+    /**
+     * The number of words in the store.
+     */
+    private int m_count;
+
+    /**
+     * The number of words visible in the last published snapshot. These words
+     * cannot be modified in place unless the segment containing them has been
+     * copied since the snapshot was published (see `m_copied`).
+     */
+    private int m_published;
+
+    /**
+     * The segments which have been copied since the last snapshot was published:
+     * they are not visible in any snapshot and can thus be modified in place.
+     */
+    private BitSet m_copied;
+
+    /**
+     * Whether the list of segments is referenced by the last published snapshot.
+     * In this case it should be copied before any segment visible in it can be
+     * replaced.
+     */
+    private boolean m_segmentsShared;
+
+    /**
+     * The last published snapshot of the store. This is the only field of the
+     * store that can be accessed from any thread.
+     */
+    private volatile Snapshot m_snapshot;
+
+    /**
+     * Create a new empty store with its own vocabulary.
+     */
+    WordStore() {
+        this(new Vocabulary());
+    }
+
+    /**
+     * Create a new empty store registering its words in the input vocabulary.
+     * @param vocabulary - the vocabulary used to encode the words.
+     */
+    WordStore(Vocabulary vocabulary) {
+        m_vocabulary = vocabulary;
+        m_copied = new BitSet();
+        reset();
+
+        m_snapshot = new Snapshot(m_segments, 0, vocabulary.publish());
+    }
+
+    /**
+     * Used to create a new empty store using the same vocabulary as this one.
+     * @return - the new store.
+     */
+    WordStore createEmpty() {
+        return new WordStore(m_vocabulary);
+    }
+
+    /**
+     * Returns the vocabulary used to encode the words of this store.
+     * @return - the vocabulary of the store.
+     */
+    Vocabulary getVocabulary() {
+        return m_vocabulary;
+    }
+
+    /**
+     * Returns the last snapshot published for this store. Unlike the rest of the
+     * methods of this class this can be called from any thread.
+     * @return - the last published snapshot.
+     */
+    Snapshot getSnapshot() {
+        return m_snapshot;
+    }
+
+    /**
+     * Used to publish the current words of the store so that they are visible
+     * to the threads reading the snapshots of the store. The words registered
+     * are not visible until this method is called: this allows to publish them
+     * by batches.
+     * Just like the other methods modifying the store this should only be called
+     * by the thread registering the words (or while holding the lock protecting
+     * the store).
+     */
+    void publish() {
+        Snapshot snapshot = m_snapshot;
+        Vocabulary.View vocabulary = m_vocabulary.publish();
+
+        if (snapshot.m_count == m_count && snapshot.m_segments == m_segments && snapshot.m_vocabulary == vocabulary && m_copied.isEmpty()) {
+            return;
+        }
+
+        m_published = m_count;
+        m_copied.clear();
+        m_segmentsShared = true;
+
+        m_snapshot = new Snapshot(m_segments, m_count, vocabulary);
+    }
+
+    /**
+     * Returns the number of words registered in the store, including the ones
+     * which are not published yet.
+     * @return - the number of words.
+     */
+    @Override
+    public int size() {
+        return m_count;
+    }
+
+    /**
+     * Returns the word at the input index, including the words which are not
+     * published yet. A new `String` is created by each call.
+     * @param id - the index of the word.
+     * @return - the word.
+     */
+    @Override
+    public String get(int id) {
+        return m_vocabulary.get(getToken(id));
+    }
+
+    /**
+     * Returns the token of the word at the input index. Two words are equal if
+     * and only if their tokens are equal: this allows to compare words or to
+     * count them without creating any `String`.
+     * @param id - the index of the word.
+     * @return - the token of the word in the vocabulary of the store.
+     */
+    int getToken(int id) {
+        checkIndex(id);
+
+        return m_segments[id >>> SEGMENT_SHIFT][id & SEGMENT_MASK];
+    }
+
+    @Override
+    public boolean add(String word) {
+        add(word, 0, word.length());
+
+        return true;
+    }
+
+    /**
+     * Used to append the input range of text as a new word at the end of the
+     * store. The word is not visible in the snapshots until the next call to
+     * `publish`.
+     * @param text - the text containing the word.
+     * @param start - the index of the first character of the word.
+     * @param end - the index of the first character after the word.
+     */
+    void add(CharSequence text, int start, int end) {
+        addToken(m_vocabulary.intern(text, start, end));
+    }
+
+    /**
+     * Used to append the input range of text to the last word of the store. This
+     * is used to collapse punctuation with the word preceding it without creating
+     * any `String`. Just like `set` the published snapshots are not modified.
+     * @param text - the text to append to the last word.
+     * @param start - the index of the first character to append.
+     * @param end - the index of the first character not to append.
+     */
+    void appendToLast(CharSequence text, int start, int end) {
+        int id = m_count - 1;
+
+        int token = m_vocabulary.concat(getToken(id), text, start, end);
+        getWritableSegment(id)[id & SEGMENT_MASK] = token;
+    }
+
+    /**
+     * Used to append the words in the range `[start; end)` of the input store at
+     * the end of this store. The words are copied without creating any `String`
+     * and without looking them up in the vocabulary when both stores share the
+     * same vocabulary.
+     * @param other - the store containing the words to append.
+     * @param start - the index of the first word to append.
+     * @param end - the index of the first word not to append.
+     */
+    void addAll(WordStore other, int start, int end) {
+        for (int id = start ; id < end ; ++id) {
+            addToken(m_vocabulary.intern(other.m_vocabulary, other.getToken(id)));
+        }
+    }
+
+    /**
+     * Used to replace the word at the input index. In case the word is visible
+     * in the last published snapshot the segment containing it is copied first
+     * so that the snapshot is not modified.
+     * @param id - the index of the word to replace.
+     * @param word - the new value of the word.
+     * @return - the previous value of the word.
+     */
+    @Override
+    public String set(int id, String word) {
+        String previous = get(id);
+
+        int token = m_vocabulary.intern(word, 0, word.length());
+        getWritableSegment(id)[id & SEGMENT_MASK] = token;
+
+        return previous;
+    }
+
+    /**
+     * Used to remove all the words of the store. The published snapshot is not
+     * modified until the next call to `publish`. Note that the words stay in the
+     * vocabulary as it might be shared with other stores.
+     */
+    @Override
+    public void clear() {
+        reset();
+        ++modCount;
+    }
+
+    /**
+     * Used to replace the content of this store by the content of the input
+     * store which should use the same vocabulary. The input store is left empty.
+     * This is useful to update a store shared by several objects in place. Just
+     * like for the other modifications the new content is only visible in the
+     * snapshots after the next call to `publish`.
+     * @param other - the store whose content should be moved in this store.
+     */
+    void assign(WordStore other) {
+        // The segments of the other store might be visible in its snapshots but
+        // never in the ones of this store: consider them as already copied.
+        m_vocabulary = other.m_vocabulary;
+        m_segments = other.m_segments;
+        m_count = other.m_count;
+        m_published = 0;
+        m_copied.clear();
+        m_segmentsShared = other.m_segmentsShared;
+        ++modCount;
+
+        other.clear();
+    }
+
+    /**
+     * Used to reset the content of the store to an empty list of words without
+     * touching the arrays that might be visible in the published snapshot.
+     */
+    private void reset() {
+        m_segments = new int[DEFAULT_SEGMENTS_CAPACITY][];
+        m_count = 0;
+        m_published = 0;
+        m_copied.clear();
+        m_segmentsShared = false;
+    }
+
+    /**
+     * Used to append the input token at the end of the store.
+     * @param token - the token of the word to append.
+     */
+    private void addToken(int token) {
+        int segment = m_count >>> SEGMENT_SHIFT;
+
+        // Allocate a new segment if needed. Note that the slots of the list of
+        // segments after the published ones are never read by the snapshots so
+        // we don't need to copy the list in this case.
+        if (segment == m_segments.length) {
+            m_segments = Arrays.copyOf(m_segments, 2 * m_segments.length);
+            m_segmentsShared = false;
+        }
+        if (m_segments[segment] == null) {
+            m_segments[segment] = new int[SEGMENT_SIZE];
+        }
+
+        // Writing after the published words does not modify the snapshots.
+        m_segments[segment][m_count & SEGMENT_MASK] = token;
+        ++m_count;
+        ++modCount;
+    }
+
+    /**
+     * Used to retrieve the segment containing the input word so that it can be
+     * modified. In case it is visible in the published snapshot it is copied.
+     * @param id - the index of the word.
+     * @return - the segment containing the word.
+     */
+    private int[] getWritableSegment(int id) {
+        int segment = id >>> SEGMENT_SHIFT;
+        if (id >= m_published || m_copied.get(segment)) {
+            return m_segments[segment];
+        }
+
+        if (m_segmentsShared) {
+            m_segments = Arrays.copyOf(m_segments, m_segments.length);
+            m_segmentsShared = false;
+        }
+
+        // The segment is now private to this store: later modifications of the
+        // words it contains don't need to copy it again.
+        m_segments[segment] = Arrays.copyOf(m_segments[segment], SEGMENT_SIZE);
+        m_copied.set(segment);
+
+        return m_segments[segment];
+    }
+
+    /**
+     * Used to make sure that the input index is valid.
+     * @param id - the index of a word.
+     */
+    private void checkIndex(int id) {
+        if (id < 0 || id >= m_count) {
+            throw new IndexOutOfBoundsException("Invalid word " + id + " in store containing " + m_count + " word(s)");
+        }
+    }
+}
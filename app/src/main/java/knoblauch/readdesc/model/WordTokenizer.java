@@ -0,0 +1,410 @@
+package knoblauch.readdesc.model;
+
+import java.util.List;
+
+class WordTokenizer {
+
+    /**
+     * Convenience interface describing where the words produced by the tokenizer
+     * are registered. The words are provided as ranges of text so that the sinks
+     * able to store them without creating any `String` can do so.
+     */
+    private interface Sink {
+
+        /**
+         * Used to determine whether some words were registered in the sink.
+         * @return - `true` if no word was registered.
+         */
+        boolean isEmpty();
+
+        /**
+         * Used to register the input range of text as a new word.
+         * @param text - the text containing the word.
+         * @param start - the index of the first character of the word.
+         * @param end - the index of the first character after the word.
+         */
+        void add(CharSequence text, int start, int end);
+
+        /**
+         * Used to append the input range of text to the last registered word.
+         * @param text - the text to append.
+         * @param start - the index of the first character to append.
+         * @param end - the index of the first character not to append.
+         */
+        void appendToLast(CharSequence text, int start, int end);
+    }
+
+    /**
+     * Implementation of a sink registering the words in a list of `String`.
+     */
+    private static class ListSink implements Sink {
+
+        /**
+         * The list where the words are appended.
+         */
+        private List<String> m_words;
+
+        /**
+         * Create a new sink appending the words to the input list.
+         * @param words - the list where the words should be appended.
+         */
+        ListSink(List<String> words) {
+            m_words = words;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return m_words.isEmpty();
+        }
+
+        @Override
+        public void add(CharSequence text, int start, int end) {
+            m_words.add(text.subSequence(start, end).toString());
+        }
+
+        @Override
+        public void appendToLast(CharSequence text, int start, int end) {
+            int last = m_words.size() - 1;
+            m_words.set(last, m_words.get(last).concat(text.subSequence(start, end).toString()));
+        }
+    }
+
+    /**
+     * Implementation of a sink registering the words in a `WordStore`: the words
+     * are interned directly from the input text.
+     */
+    private static class StoreSink implements Sink {
+
+        /**
+         * The store where the words are appended.
+         */
+        private WordStore m_words;
+
+        /**
+         * Create a new sink appending the words to the input store.
+         * @param words - the store where the words should be appended.
+         */
+        StoreSink(WordStore words) {
+            m_words = words;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return m_words.isEmpty();
+        }
+
+        @Override
+        public void add(CharSequence text, int start, int end) {
+            m_words.add(text, start, end);
+        }
+
+        @Override
+        public void appendToLast(CharSequence text, int start, int end) {
+            m_words.appendToLast(text, start, end);
+        }
+    }
+
+    /**
+     * Define the list of punctuations symbols that will be collapsed with
+     * the previous word when they appear alone.
+     */
+    private static final String PUNCTUATION = ",?;.:!()°\"'»…—–”’";
+
+    /**
+     * Define the list of currencies that will be collapsed with the previous
+     * word to be linked to their associated numerical value.
+     */
+    private static final String CURRENCIES = "€$£¥";
+
+    /**
+     * Define the list of opening symbols that will be collapsed with the next
+     * word when they appear alone: this is typically the case of the opening
+     * quotes which are followed by a space in French.
+     */
+    private static final String OPENING = "«“‘¿¡";
+
+    /**
+     * Define the list of separators that are used as a way to mark the new
+     * line and other separations in the documents but that we don't want to
+     * actually interpret.
+     * A word composed of only this character will be discarded.
+     */
+    private static final String SEPARATOR = "*";
+
+    /**
+     * The list of characters considered as spaces when splitting the text in
+     * words in addition to the ones reported by `Character.isSpaceChar`. This
+     * includes the `\s` class of the regular expressions.
+     */
+    private static final String SPACES = " \t\n\u000B\f\r";
+
+    /**
+     * Character class for characters that do not have any special meaning.
+     */
+    private static final byte CLASS_NONE = 0;
+
+    /**
+     * Character class for the space characters (see `SPACES`).
+     */
+    private static final byte CLASS_SPACE = 1;
+
+    /**
+     * Character class for the punctuation symbols and currencies: these are
+     * collapsed with the previous word (see `PUNCTUATION` and `CURRENCIES`).
+     */
+    private static final byte CLASS_COLLAPSE = 2;
+
+    /**
+     * Character class for the opening symbols: these are collapsed with the
+     * next word (see `OPENING`).
+     */
+    private static final byte CLASS_OPENING = 3;
+
+    /**
+     * Character class for the separators (see `SEPARATOR`).
+     */
+    private static final byte CLASS_SEPARATOR = 4;
+
+    /**
+     * A precomputed table associating a character class to each character of
+     * the basic multilingual plane. The classification happens once for all
+     * the tokenizers and each character is then classified with a single look
+     * up.
+     */
+    private static final byte[] CHARACTER_CLASSES = buildCharacterClasses();
+
+    /**
+     * The sink where the words produced by this tokenizer are appended.
+     */
+    private Sink m_sink;
+
+    /**
+     * The part of the current word which was provided by previous calls to
+     * `append`. As long as a word is contained in a single call we don't use
+     * this buffer and extract the word directly from the input text.
+     */
+    private StringBuilder m_current;
+
+    /**
+     * The opening symbols waiting for the next word to be prepended to it.
+     */
+    private StringBuilder m_prefix;
+
+    /**
+     * The number of words produced by this tokenizer before any collapse of
+     * the punctuation, currencies and opening symbols.
+     */
+    private int m_count;
+
+    /**
+     * Create a new tokenizer appending the words it produces to the input list.
+     * @param words - the list where the words should be appended.
+     */
+    WordTokenizer(List<String> words) {
+        this(new ListSink(words));
+    }
+
+    /**
+     * Create a new tokenizer appending the words it produces to the input store.
+     * Unlike with a list, no `String` is created for the words.
+     * @param words - the store where the words should be appended.
+     */
+    WordTokenizer(WordStore words) {
+        this(new StoreSink(words));
+    }
+
+    /**
+     * Create a new tokenizer appending the words it produces to the input sink.
+     * @param sink - the sink where the words should be appended.
+     */
+    private WordTokenizer(Sink sink) {
+        m_sink = sink;
+        m_current = new StringBuilder();
+        m_prefix = new StringBuilder();
+        m_count = 0;
+    }
+
+    /**
+     * Used to build the table of character classes.
+     * @return - the table of character classes.
+     */
+    private static byte[] buildCharacterClasses() {
+        byte[] classes = new byte[Character.MAX_VALUE + 1];
+
+        for (int id = 0 ; id < classes.length ; ++id) {
+            classes[id] = computeClass((char)id);
+        }
+
+        return classes;
+    }
+
+    /**
+     * Used to compute the class of the input character from the lists of
+     * special characters.
+     * @param c - the character to classify.
+     * @return - the class of the character.
+     */
+    private static byte computeClass(char c) {
+        if (SPACES.indexOf(c) >= 0 || Character.isSpaceChar(c)) {
+            return CLASS_SPACE;
+        }
+        if (PUNCTUATION.indexOf(c) >= 0 || CURRENCIES.indexOf(c) >= 0) {
+            return CLASS_COLLAPSE;
+        }
+        if (OPENING.indexOf(c) >= 0) {
+            return CLASS_OPENING;
+        }
+        if (SEPARATOR.indexOf(c) >= 0) {
+            return CLASS_SEPARATOR;
+        }
+
+        return CLASS_NONE;
+    }
+
+    /**
+     * Used to determine whether the input character separates two words.
+     * @param c - the character to check.
+     * @return - `true` if the character is a space.
+     */
+    static boolean isSpace(char c) {
+        return CHARACTER_CLASSES[c] == CLASS_SPACE;
+    }
+
+    /**
+     * Returns the number of words produced so far by this tokenizer before any
+     * collapse of the punctuation, currencies and opening symbols. Separators
+     * are not counted.
+     * @return - the number of words produced so far.
+     */
+    int getCount() {
+        return m_count;
+    }
+
+    /**
+     * Used to feed the input text to the tokenizer (see `append(CharSequence,
+     * int, int)`).
+     * @param text - the text to append.
+     */
+    void append(CharSequence text) {
+        if (text != null) {
+            append(text, 0, text.length());
+        }
+    }
+
+    /**
+     * Used to feed the input range of text to the tokenizer. The text is split
+     * on spaces and each word is appended to the sink of the tokenizer. The first word
+     * of the range continues the current word (if any) and the last one is not
+     * closed as the next call might continue it: use `breakWord` to close it.
+     * The text is scanned a single time and the words contained in the range
+     * are extracted without any intermediate copy.
+     * @param text - the text to append.
+     * @param start - the index of the first character to append.
+     * @param end - the index of the first character not to append.
+     */
+    void append(CharSequence text, int start, int end) {
+        int word = start;
+
+        for (int id = start ; id < end ; ++id) {
+            if (CHARACTER_CLASSES[text.charAt(id)] == CLASS_SPACE) {
+                closeWord(text, word, id);
+                word = id + 1;
+            }
+        }
+
+        // Keep the last word for the next call.
+        m_current.append(text, word, end);
+    }
+
+    /**
+     * Used to close the current word: the next text fed to the tokenizer will
+     * start a new word.
+     */
+    void breakWord() {
+        if (m_current.length() > 0) {
+            emit(m_current, 0, m_current.length());
+            m_current.setLength(0);
+        }
+    }
+
+    /**
+     * Used to indicate that no more text will be fed to the tokenizer: the
+     * current word is closed and the opening symbols which could not be
+     * attached to a next word are registered as a word.
+     */
+    void finish() {
+        breakWord();
+
+        if (m_prefix.length() > 0) {
+            m_sink.add(m_prefix, 0, m_prefix.length());
+            m_prefix.setLength(0);
+        }
+    }
+
+    /**
+     * Used to close the word ending at the input position: the word is made of
+     * the current word followed by the input range of text.
+     * @param text - the text containing the end of the word.
+     * @param start - the index of the first character of the word in the text.
+     * @param end - the index of the first character after the word.
+     */
+    private void closeWord(CharSequence text, int start, int end) {
+        if (m_current.length() == 0) {
+            if (end > start) {
+                emit(text, start, end);
+            }
+            return;
+        }
+
+        m_current.append(text, start, end);
+        emit(m_current, 0, m_current.length());
+        m_current.setLength(0);
+    }
+
+    /**
+     * Used to register the word described by the input range of text in the
+     * sink. Single separators are trashed while single punctuation, currency
+     * and opening symbols are collapsed with the previous or next word. The
+     * range is provided as is to the sink so that no `String` is created when
+     * it does not need one.
+     * @param text - the text containing the word.
+     * @param start - the index of the first character of the word.
+     * @param end - the index of the first character after the word.
+     */
+    private void emit(CharSequence text, int start, int end) {
+        if (end - start == 1) {
+            byte type = CHARACTER_CLASSES[text.charAt(start)];
+
+            // Trash words composed only of separators.
+            if (type == CLASS_SEPARATOR) {
+                return;
+            }
+
+            ++m_count;
+
+            // Concatenate single punctuation and currency symbols to the previous
+            // word (if any) and keep opening symbols for the next one.
+            if (type == CLASS_COLLAPSE && !m_sink.isEmpty()) {
+                m_sink.appendToLast(text, start, end);
+                return;
+            }
+
+            if (type == CLASS_OPENING) {
+                m_prefix.append(text, start, end);
+                return;
+            }
+        }
+        else {
+            ++m_count;
+        }
+
+        if (m_prefix.length() > 0) {
+            m_prefix.append(text, start, end);
+            m_sink.add(m_prefix, 0, m_prefix.length());
+            m_prefix.setLength(0);
+            return;
+        }
+
+        m_sink.add(text, start, end);
+    }
+}
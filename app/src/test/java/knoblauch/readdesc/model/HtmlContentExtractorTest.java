@@ -0,0 +1,185 @@
+package knoblauch.readdesc.model;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the traversal of the documents built in memory which is
+ * shared by the `HtmlSourceLoader` and the `EpubSourceLoader`.
+ */
+public class HtmlContentExtractorTest {
+
+    /**
+     * Used to walk the body of the input document and to describe the notifications
+     * received by the handler with the same notation as in `HtmlStreamParserTest`.
+     * @param html - the document to walk.
+     * @return - the description of the content of the document.
+     */
+    private static String traverse(String html) {
+        final StringBuilder out = new StringBuilder();
+
+        HtmlContentExtractor.traverse(Jsoup.parse(html).body(), new HtmlStreamParser.Handler() {
+            @Override
+            public void onText(String text) {
+                out.append(text);
+            }
+
+            @Override
+            public void onBreak() {
+                out.append('|');
+            }
+
+            @Override
+            public void onTitle(int level) {
+                out.append('[').append(level).append(']');
+            }
+        });
+
+        return out.toString();
+    }
+
+    /**
+     * Used to split the body of the input document in words just like the loaders
+     * do for the documents built in memory.
+     * @param body - the element to split.
+     * @return - the words of the element.
+     */
+    static List<String> words(Element body) {
+        List<String> words = new ArrayList<>();
+        final WordTokenizer tokenizer = new WordTokenizer(words);
+
+        HtmlContentExtractor.traverse(body, new HtmlStreamParser.Handler() {
+            @Override
+            public void onText(String text) {
+                tokenizer.append(text);
+            }
+
+            @Override
+            public void onBreak() {
+                tokenizer.breakWord();
+            }
+
+            @Override
+            public void onTitle(int level) {
+                // No op: nothing to be done here.
+            }
+        });
+
+        tokenizer.finish();
+
+        return words;
+    }
+
+    @Test
+    public void reportsBreaksAtBlocksAndTitles() {
+        // Unlike in the stream, the `br` element is both opened and closed.
+        assertEquals("|[1]Chapter||Hello wor||ld|", traverse("<h1>Chapter</h1><div>Hel<b>lo</b> <a href=\"#\">wor</a><br/>ld</div>"));
+    }
+
+    @Test
+    public void continuesWordsAcrossInlineElements() {
+        Element body = Jsoup.parse("<p><span class=\"dropcap\">T</span>he <b>Hel</b>lo</p><p>Next<br>line</p>").body();
+
+        assertEquals(Arrays.asList("The", "Hello", "Next", "line"), words(body));
+    }
+
+    @Test
+    public void skipsPrunedElements() {
+        assertEquals("one two", traverse("one <script>var s;</script><nav>menu</nav>two"));
+    }
+
+    @Test
+    public void walksDeeplyNestedDocuments() throws InterruptedException {
+        final int depth = 20000;
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        final List<String> expected = new ArrayList<>();
+        final List<Integer> titles = new ArrayList<>();
+        for (int id = 0 ; id < depth ; ++id) {
+            html.append("<div>");
+            if (id % 5000 == 0) {
+                html.append("<h2>Part</h2>");
+                titles.add(expected.size());
+                expected.add("Part");
+            }
+            html.append("w").append(id);
+            expected.add("w" + id);
+        }
+        for (int id = 0 ; id < depth ; ++id) {
+            html.append("</div>");
+        }
+        html.append("</body></html>");
+
+        final Element body = Jsoup.parse(html.toString()).body();
+        final List<String> words = new ArrayList<>();
+        final SectionIndex sections = new SectionIndex();
+        final Throwable[] failure = new Throwable[1];
+
+        // Walk the document just like the `HtmlSourceLoader` does on a thread with
+        // a small stack: a recursive walk would not go through.
+        Thread walker = new Thread(null, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long start = System.nanoTime();
+
+                    HtmlContentExtractor extractor = new HtmlContentExtractor(body);
+                    final WordTokenizer tokenizer = new WordTokenizer(words);
+
+                    HtmlContentExtractor.traverse(extractor.getContent(), new HtmlStreamParser.Handler() {
+                        @Override
+                        public void onText(String text) {
+                            tokenizer.append(text);
+                        }
+
+                        @Override
+                        public void onBreak() {
+                            tokenizer.breakWord();
+                        }
+
+                        @Override
+                        public void onTitle(int level) {
+                            // The title starts with the next word to be registered.
+                            sections.add(words.size(), level);
+                        }
+                    });
+                    tokenizer.finish();
+
+                    System.out.println(String.format(Locale.US, "Walk of %d nested elements: %.1f ms", depth, (System.nanoTime() - start) / 1e6));
+                }
+                catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        }, "walker", 256 * 1024);
+
+        walker.start();
+        walker.join();
+
+        assertNull(failure[0]);
+        assertEquals(expected, words);
+
+        assertEquals(titles.size(), sections.size());
+        for (int section = 0 ; section < titles.size() ; ++section) {
+            assertEquals((int)titles.get(section), sections.getStart(section));
+            assertEquals(2, sections.getLevel(section));
+        }
+    }
+
+    @Test
+    public void detectsTitleLevels() {
+        assertEquals(1, HtmlContentExtractor.getTitleLevel("h1"));
+        assertEquals(6, HtmlContentExtractor.getTitleLevel("h6"));
+        assertEquals(-1, HtmlContentExtractor.getTitleLevel("h7"));
+        assertEquals(-1, HtmlContentExtractor.getTitleLevel("h"));
+        assertEquals(-1, HtmlContentExtractor.getTitleLevel("hr"));
+    }
+}
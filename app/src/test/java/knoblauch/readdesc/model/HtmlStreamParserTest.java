@@ -0,0 +1,193 @@
+package knoblauch.readdesc.model;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the `HtmlStreamParser` which extracts the text and the
+ * titles of large `HTML` documents without building their tree.
+ */
+public class HtmlStreamParserTest {
+
+    /**
+     * Used to parse the input document and to describe the notifications
+     * received by the handler: the text is reported as is, the titles are
+     * reported as their level between brackets and the breaks as `|`.
+     * @param html - the document to parse.
+     * @return - the description of the content of the document.
+     * @throws IOException - in case the document cannot be read.
+     */
+    private static String parse(String html) throws IOException {
+        final StringBuilder out = new StringBuilder();
+
+        HtmlStreamParser parser = new HtmlStreamParser(new HtmlStreamParser.Handler() {
+            @Override
+            public void onText(String text) {
+                out.append(text);
+            }
+
+            @Override
+            public void onBreak() {
+                out.append('|');
+            }
+
+            @Override
+            public void onTitle(int level) {
+                out.append('[').append(level).append(']');
+            }
+        });
+
+        parser.parse(new StringReader(html));
+
+        return out.toString();
+    }
+
+    /**
+     * Used to split the input document in words just like the `HtmlSourceLoader`
+     * does in streaming mode.
+     * @param html - the document to split.
+     * @return - the words of the document.
+     * @throws IOException - in case the document cannot be read.
+     */
+    private static List<String> words(String html) throws IOException {
+        List<String> words = new ArrayList<>();
+        final WordTokenizer tokenizer = new WordTokenizer(words);
+
+        HtmlStreamParser parser = new HtmlStreamParser(new HtmlStreamParser.Handler() {
+            @Override
+            public void onText(String text) {
+                tokenizer.append(text);
+            }
+
+            @Override
+            public void onBreak() {
+                tokenizer.breakWord();
+            }
+
+            @Override
+            public void onTitle(int level) {
+                // No op: nothing to be done here.
+            }
+        });
+
+        parser.parse(new StringReader(html));
+        tokenizer.finish();
+
+        return words;
+    }
+
+    @Test
+    public void extractsTextOfTheBody() throws IOException {
+        assertEquals("|Some text and more|", parse("<html><body><p>Some <b>text</b> and more</p></body></html>"));
+    }
+
+    @Test
+    public void reportsTitlesBeforeTheirText() throws IOException {
+        assertEquals("|[1]Chapter||[3]Part|", parse("<body><h1>Chapter</h1><H3 class=\"x\">Part</H3></body>"));
+    }
+
+    @Test
+    public void breaksOnlyAtBlocks() throws IOException {
+        assertEquals("|Hello wor|ld|", parse("<div>Hel<b>lo</b> <a href=\"#\">wor</a><br/>ld</div>"));
+    }
+
+    @Test
+    public void continuesWordsAcrossInlineElements() throws IOException {
+        List<String> expected = Arrays.asList("Hello", "world", "Next", "line");
+        assertEquals(expected, words("<body><p>Hel<b>lo</b> <i>wor</i>ld</p><p>Next<br>line</p></body>"));
+    }
+
+    @Test
+    public void ignoresTheHeadOfTheDocument() throws IOException {
+        assertEquals("Text", parse("<html><head><meta charset=\"utf-8\"><title>Name</title></head><body>Text</body></html>"));
+    }
+
+    @Test
+    public void ignoresTitlesInTheHead() throws IOException {
+        assertEquals("Text", parse("<head><h1>Hidden</h1></head><body>Text</body>"));
+    }
+
+    @Test
+    public void skipsScriptsAndStyles() throws IOException {
+        assertEquals("one two", parse("<body>one <script>var s = \"<p>no</p>\";</script><style>p > a {}</style>two</body>"));
+    }
+
+    @Test
+    public void skipsPrunedElements() throws IOException {
+        assertEquals("Text", parse("<body><nav><nav>menu</nav>links</nav>Text<footer>end</footer></body>"));
+    }
+
+    @Test
+    public void skipsCommentsAndDeclarations() throws IOException {
+        assertEquals("one two", parse("<!DOCTYPE html><?xml version=\"1.0\"?><body>one <!-- a -- > b -->two</body>"));
+    }
+
+    @Test
+    public void decodesEntities() throws IOException {
+        assertEquals("a & b < c é", parse("<body>a &amp; b &lt; c &eacute;</body>"));
+    }
+
+    @Test
+    public void replacesNonBreakingSpaces() throws IOException {
+        assertEquals("a b", parse("<body>a&nbsp;b</body>"));
+    }
+
+    @Test
+    public void keepsQuotedMarkupInAttributes() throws IOException {
+        assertEquals("Link", parse("<body><a title=\"a > b\" href='/x'>Link</a></body>"));
+    }
+
+    @Test
+    public void keepsLoneBracketsAsText() throws IOException {
+        assertEquals("1 < 2 and 3 </ 4", parse("<body>1 < 2 and 3 </ 4</body>"));
+    }
+
+    @Test
+    public void ignoresLeadingByteOrderMark() throws IOException {
+        assertEquals("Text", parse("\ufeff<body>Text</body>"));
+    }
+
+    @Test
+    public void handlesDeeplyNestedElements() throws IOException {
+        StringBuilder html = new StringBuilder("<body>");
+        for (int id = 0 ; id < 100000 ; ++id) {
+            html.append("<span>");
+        }
+        html.append("deep");
+        for (int id = 0 ; id < 100000 ; ++id) {
+            html.append("</span>");
+        }
+        html.append("</body>");
+
+        assertEquals("deep", parse(html.toString()));
+    }
+
+    @Test
+    public void detectsByteOrderMarks() {
+        assertEquals("UTF-8", HtmlStreamParser.detectCharset(new byte[] { (byte)0xef, (byte)0xbb, (byte)0xbf, '<' }, 4));
+        assertEquals("UTF-16BE", HtmlStreamParser.detectCharset(new byte[] { (byte)0xfe, (byte)0xff, 0, '<' }, 4));
+        assertEquals("UTF-16LE", HtmlStreamParser.detectCharset(new byte[] { (byte)0xff, (byte)0xfe, '<', 0 }, 4));
+    }
+
+    @Test
+    public void detectsDeclaredCharsets() {
+        byte[] meta = "<head><meta charset=\"iso-8859-1\">".getBytes();
+        assertEquals("ISO-8859-1", HtmlStreamParser.detectCharset(meta, meta.length));
+
+        byte[] equiv = "<META http-equiv=\"Content-Type\" content=\"text/html; charset=windows-1252\">".getBytes();
+        assertEquals("WINDOWS-1252", HtmlStreamParser.detectCharset(equiv, equiv.length));
+    }
+
+    @Test
+    public void detectsNoCharsetWhenNoneIsDeclared() {
+        byte[] html = "<html><body>charset=utf-16</body></html>".getBytes();
+        assertNull(HtmlStreamParser.detectCharset(html, html.length));
+    }
+}
@@ -0,0 +1,174 @@
+package knoblauch.readdesc.model;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests comparing the extraction of a range of pages distributed
+ * among the workers of the `PdfPagesExtractor` with the extraction of the same
+ * pages one after the other.
+ */
+public class PdfPagesExtractorTest {
+
+    /**
+     * The words used to generate the text of the pages.
+     */
+    private static final String[] VOCABULARY = {
+            "The", "reader", "displays", "one", "word", "at", "a", "time", "in", "the", "center",
+            "of", "screen", "which", "allows", "to", "read", "much", "faster", "than", "usual",
+            "It", "costs", "12", "and", "saves", "hours", "each", "year", "chapter", "document"
+    };
+
+    /**
+     * Used to generate a `PDF` document where each page is made of a few
+     * paragraphs of text.
+     * @param pages - the number of pages of the document.
+     * @param words - the number of words of each page.
+     * @return - the content of the document.
+     * @throws DocumentException - in case the document cannot be generated.
+     */
+    private static byte[] generateDocument(int pages, int words) throws DocumentException {
+        Random random = new Random(pages);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Document document = new Document();
+        PdfWriter.getInstance(document, out);
+        document.open();
+
+        for (int page = 0 ; page < pages ; ++page) {
+            StringBuilder text = new StringBuilder("Page" + page);
+            for (int id = 1 ; id < words ; ++id) {
+                text.append(id % 60 == 0 ? ". " : " ").append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+
+                if (id % 120 == 0) {
+                    document.add(new Paragraph(text.toString()));
+                    text.setLength(0);
+                }
+            }
+
+            document.add(new Paragraph(text.toString()));
+            document.newPage();
+        }
+
+        document.close();
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Used to extract all the pages of the input document one after the other
+     * from the calling thread.
+     * @param data - the content of the document.
+     * @return - the words of each page.
+     * @throws IOException - in case the document cannot be parsed.
+     */
+    private static ArrayList<WordStore> extractSequentially(byte[] data) throws IOException {
+        PdfPagesExtractor extractor = new PdfPagesExtractor(new ByteArrayInputStream(data));
+        ArrayList<WordStore> pages = new ArrayList<>();
+
+        try {
+            for (int id = 0 ; id < extractor.getPagesCount() ; ++id) {
+                pages.add(extractor.extract(id));
+            }
+        }
+        finally {
+            extractor.close();
+        }
+
+        return pages;
+    }
+
+    /**
+     * Used to extract all the pages of the input document as a single range
+     * distributed among the workers of the extractor.
+     * @param data - the content of the document.
+     * @return - the words of each page.
+     * @throws IOException - in case the document cannot be parsed.
+     */
+    private static ArrayList<WordStore> extractInParallel(byte[] data) throws IOException {
+        PdfPagesExtractor extractor = new PdfPagesExtractor(new ByteArrayInputStream(data));
+
+        try {
+            return extractor.extract(0, extractor.getPagesCount() - 1);
+        }
+        finally {
+            extractor.close();
+        }
+    }
+
+    @Test
+    public void extractsTheSamePagesInParallel() throws DocumentException, IOException {
+        byte[] data = generateDocument(37, 300);
+
+        ArrayList<WordStore> expected = extractSequentially(data);
+        ArrayList<WordStore> pages = extractInParallel(data);
+
+        assertEquals(37, expected.size());
+        assertEquals(expected.size(), pages.size());
+        for (int id = 0 ; id < pages.size() ; ++id) {
+            assertEquals("Page" + id, expected.get(id).get(0));
+            assertEquals("Words differ for page " + id, expected.get(id), pages.get(id));
+        }
+    }
+
+    @Test
+    public void extractsEmptyAndSinglePageRanges() throws DocumentException, IOException {
+        PdfPagesExtractor extractor = new PdfPagesExtractor(new ByteArrayInputStream(generateDocument(3, 50)));
+
+        try {
+            assertTrue(extractor.extract(2, 1).isEmpty());
+
+            ArrayList<WordStore> pages = extractor.extract(1, 1);
+            assertEquals(1, pages.size());
+            assertEquals("Page1", pages.get(0).get(0));
+        }
+        finally {
+            extractor.close();
+        }
+    }
+
+    @Test
+    public void measuresScalingAgainstSequentialExtraction() throws DocumentException, IOException {
+        byte[] data = generateDocument(200, 600);
+
+        long sequential = 0;
+        long parallel = 0;
+        int runs = 3;
+
+        // The first runs warm up the extraction and are not measured. Each run
+        // uses new extractors so that no parsed object is reused.
+        for (int run = -2 ; run < runs ; ++run) {
+            long start = System.nanoTime();
+            extractSequentially(data);
+            long one = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            extractInParallel(data);
+            long all = System.nanoTime() - start;
+
+            if (run >= 0) {
+                sequential += one;
+                parallel += all;
+            }
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println(String.format(Locale.US, "PDF extraction of 200 pages on %d cores: sequential %.1f ms, parallel %.1f ms (x%.1f)",
+                cores, sequential / 1e6 / runs, parallel / 1e6 / runs, 1.0 * sequential / Math.max(1, parallel)));
+
+        assertTrue(sequential > 0 && parallel > 0);
+    }
+}
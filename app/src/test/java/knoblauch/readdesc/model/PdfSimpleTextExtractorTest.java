@@ -0,0 +1,243 @@
+package knoblauch.readdesc.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests comparing the splitting of the chunks of text of the `PDF`
+ * pages by the `PdfSimpleTextExtractor` with the regular expressions based
+ * splitting it replaced.
+ */
+public class PdfSimpleTextExtractorTest {
+
+    /**
+     * Copy of the splitting of the chunks of text as it was done before the
+     * extractor scanned them: it relies on regular expressions and builds the
+     * words by concatenating strings. It is kept as a reference for both the
+     * words produced and the time needed to produce them.
+     */
+    private static class RegexSplitter {
+
+        private static final Pattern SPACE_ONLY_PATTERN = Pattern.compile("^\\s*$");
+        private static final String SPACE_PATTERN = "\\s+";
+        private static final Pattern SPACE_BEFORE_PATTERN = Pattern.compile("^\\s+");
+        private static final Pattern SPACE_AFTER_PATTERN = Pattern.compile("\\s+$");
+        private static final String PUNCTUATION = ",?;.:!()°\"'";
+        private static final String CURRENCIES = "€$£";
+        private static final String SEPARATOR = "*";
+
+        /**
+         * The words produced so far.
+         */
+        ArrayList<String> words = new ArrayList<>();
+
+        /**
+         * The word being built.
+         */
+        private String m_currentWord = "";
+
+        /**
+         * Used to register the word being built.
+         */
+        void closeWord() {
+            String word = m_currentWord;
+            m_currentWord = "";
+
+            if (word.isEmpty() || SPACE_ONLY_PATTERN.matcher(word).matches()) {
+                return;
+            }
+
+            if (word.length() == 1 && SEPARATOR.contains(word)) {
+                return;
+            }
+
+            if (!words.isEmpty() && word.length() == 1 && (PUNCTUATION.contains(word) || CURRENCIES.contains(word))) {
+                words.set(words.size() - 1, words.get(words.size() - 1).concat(word));
+                return;
+            }
+
+            words.add(word);
+        }
+
+        /**
+         * Used to split the input chunk and to append it to the word being built.
+         * @param text - the chunk to split.
+         */
+        void appendToCurrent(String text) {
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+
+            boolean spaceBefore = SPACE_BEFORE_PATTERN.matcher(text).matches();
+            boolean spaceAfter = SPACE_AFTER_PATTERN.matcher(text).matches();
+
+            text = text.trim();
+
+            if (spaceBefore) {
+                closeWord();
+            }
+
+            String[] split = text.split(SPACE_PATTERN);
+            for (int id = 0 ; id < split.length ; ++id) {
+                m_currentWord = m_currentWord.concat(split[id]);
+                if (id < split.length - 1) {
+                    closeWord();
+                }
+            }
+
+            if (spaceAfter) {
+                closeWord();
+            }
+        }
+    }
+
+    /**
+     * The words used to generate the text of the pages.
+     */
+    private static final String[] VOCABULARY = {
+            "The", "document", "describes", "a", "method", "for", "reading", "text", "faster",
+            "by", "displaying", "one", "word", "at", "time", "in", "the", "center", "of",
+            "screen", "It", "costs", "$", "12", "and", "saves", "30", "%", "hours", "*", "(see",
+            "chapter", "4)", "each", "year", ".", ",", ";", ":", "!", "?", "\"quoted\"", "it's"
+    };
+
+    /**
+     * Used to generate the chunks of text of a page as they are typically reported
+     * by `iText`: runs of words with their spaces, sometimes split in the middle of
+     * a word (kerning) and sometimes separated by chunks made only of spaces.
+     * @param seed - the seed of the generation.
+     * @param words - the number of words of the page.
+     * @return - the chunks of the page.
+     */
+    private static List<String> generatePage(long seed, int words) {
+        Random random = new Random(seed);
+        ArrayList<String> chunks = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder();
+
+        for (int id = 0 ; id < words ; ++id) {
+            String word = VOCABULARY[random.nextInt(VOCABULARY.length)];
+
+            int action = random.nextInt(10);
+            if (action == 0 && word.length() > 1) {
+                // The word is split over two chunks.
+                int cut = 1 + random.nextInt(word.length() - 1);
+                chunk.append(word, 0, cut);
+                chunks.add(chunk.toString());
+                chunk.setLength(0);
+                chunk.append(word, cut, word.length());
+            }
+            else {
+                chunk.append(word);
+            }
+
+            if (action == 1) {
+                // The space is a chunk of its own.
+                chunks.add(chunk.toString());
+                chunks.add(" ");
+                chunk.setLength(0);
+            }
+            else if (action == 2) {
+                // The line ends with this word.
+                chunk.append("\n");
+                chunks.add(chunk.toString());
+                chunk.setLength(0);
+            }
+            else {
+                chunk.append(random.nextInt(20) == 0 ? "  " : " ");
+            }
+        }
+
+        chunks.add(chunk.toString());
+
+        return chunks;
+    }
+
+    /**
+     * Used to split the input chunks with the extractor.
+     * @param chunks - the chunks of text of the page.
+     * @return - the words of the page.
+     */
+    private static WordStore split(List<String> chunks) {
+        PdfSimpleTextExtractor extractor = new PdfSimpleTextExtractor(new Vocabulary());
+        for (String chunk : chunks) {
+            extractor.appendToCurrent(chunk);
+        }
+
+        return extractor.getWords();
+    }
+
+    /**
+     * Used to split the input chunks with the reference splitter.
+     * @param chunks - the chunks of text of the page.
+     * @return - the words of the page.
+     */
+    private static List<String> splitWithRegex(List<String> chunks) {
+        RegexSplitter splitter = new RegexSplitter();
+        for (String chunk : chunks) {
+            splitter.appendToCurrent(chunk);
+        }
+        splitter.closeWord();
+
+        return splitter.words;
+    }
+
+    @Test
+    public void producesTheSameWordsAsTheRegexSplitting() {
+        for (long seed = 0 ; seed < 200 ; ++seed) {
+            List<String> chunks = generatePage(seed, 400);
+
+            assertEquals("Words differ for page " + seed, splitWithRegex(chunks), split(chunks));
+        }
+    }
+
+    @Test
+    public void measuresThroughputAgainstTheRegexSplitting() {
+        ArrayList<List<String>> pages = new ArrayList<>();
+        long characters = 0;
+        for (long seed = 0 ; seed < 50 ; ++seed) {
+            List<String> chunks = generatePage(seed, 2000);
+            for (String chunk : chunks) {
+                characters += chunk.length();
+            }
+            pages.add(chunks);
+        }
+
+        // Warm up both implementations before measuring them.
+        for (int run = 0 ; run < 3 ; ++run) {
+            for (List<String> page : pages) {
+                assertEquals(splitWithRegex(page), split(page));
+            }
+        }
+
+        long regex = 0;
+        long scanner = 0;
+        int runs = 5;
+
+        for (int run = 0 ; run < runs ; ++run) {
+            long start = System.nanoTime();
+            for (List<String> page : pages) {
+                splitWithRegex(page);
+            }
+            regex += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (List<String> page : pages) {
+                split(page);
+            }
+            scanner += System.nanoTime() - start;
+        }
+
+        double millions = 1e-6 * characters * runs;
+        System.out.println(String.format(Locale.US, "PDF chunks splitting: regex %.1f M chars/s, scanner %.1f M chars/s (x%.1f)",
+                millions / (regex / 1e9), millions / (scanner / 1e9), 1.0 * regex / Math.max(1, scanner)));
+
+        assertTrue(regex > 0 && scanner > 0);
+    }
+}
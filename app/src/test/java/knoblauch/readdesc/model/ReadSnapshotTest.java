@@ -0,0 +1,160 @@
+package knoblauch.readdesc.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the saving and the revalidation of the snapshots of the
+ * sources of the reads. The content provider is replaced by an in-memory source.
+ */
+public class ReadSnapshotTest {
+
+    /**
+     * Convenience class standing in for the content provider of a source: its
+     * content can be changed and it can be made unavailable.
+     */
+    private static class LocalSource implements ReadCache.Source {
+
+        /**
+         * The current content of the source.
+         */
+        byte[] content;
+
+        /**
+         * Whether the source can be accessed.
+         */
+        boolean available;
+
+        /**
+         * The number of times the source was opened.
+         */
+        int opened;
+
+        /**
+         * Create a new available source with the input content.
+         * @param text - the content of the source.
+         */
+        LocalSource(String text) {
+            content = text.getBytes();
+            available = true;
+            opened = 0;
+        }
+
+        @Override
+        public long getLength() {
+            return (available ? content.length : -1);
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            if (!available) {
+                throw new IOException("Source is not available");
+            }
+
+            ++opened;
+            return new ByteArrayInputStream(content);
+        }
+    }
+
+    /**
+     * The directory where the files of the cache are saved.
+     */
+    private File m_dir;
+
+    /**
+     * The cache in which the snapshots are saved.
+     */
+    private ReadCache m_cache;
+
+    /**
+     * The source for which the snapshots are saved.
+     */
+    private LocalSource m_source;
+
+    @Before
+    public void setUp() throws IOException {
+        m_dir = Files.createTempDirectory("snapshot").toFile();
+
+        m_cache = new ReadCache(m_dir, "content://test/page.html");
+        m_source = new LocalSource("<html><body>Some text</body></html>");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = m_dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+
+        assertTrue(m_dir.delete());
+    }
+
+    @Test
+    public void savesMissingSnapshot() throws IOException {
+        assertTrue(ReadSnapshot.refresh(m_cache, m_source, false));
+
+        assertTrue(m_cache.hasSnapshot());
+        assertFalse(m_cache.isSnapshotOutdated(m_source));
+    }
+
+    @Test
+    public void keepsExistingSnapshotWithoutRevalidation() throws IOException {
+        assertTrue(ReadSnapshot.refresh(m_cache, m_source, false));
+
+        m_source.content = "<html><body>Other text</body></html>".getBytes();
+        int opened = m_source.opened;
+
+        assertFalse(ReadSnapshot.refresh(m_cache, m_source, false));
+        assertEquals(opened, m_source.opened);
+        assertTrue(m_cache.isSnapshotOutdated(m_source));
+    }
+
+    @Test
+    public void keepsSnapshotMatchingTheSource() throws IOException {
+        assertTrue(ReadSnapshot.refresh(m_cache, m_source, false));
+
+        assertFalse(ReadSnapshot.refresh(m_cache, m_source, true));
+    }
+
+    @Test
+    public void replacesOutdatedSnapshot() throws IOException {
+        assertTrue(ReadSnapshot.refresh(m_cache, m_source, false));
+
+        m_source.content = "<html><body>Other text</body></html>".getBytes();
+
+        assertTrue(ReadSnapshot.refresh(m_cache, m_source, true));
+        assertFalse(m_cache.isSnapshotOutdated(m_source));
+    }
+
+    @Test
+    public void keepsSnapshotWhenSourceIsUnavailable() throws IOException {
+        assertTrue(ReadSnapshot.refresh(m_cache, m_source, false));
+
+        m_source.available = false;
+
+        assertFalse(ReadSnapshot.refresh(m_cache, m_source, true));
+        assertTrue(m_cache.hasSnapshot());
+
+        m_source.available = true;
+        assertFalse(m_cache.isSnapshotOutdated(m_source));
+    }
+
+    @Test
+    public void savesNothingWhenSourceIsUnavailable() {
+        m_source.available = false;
+
+        assertFalse(ReadSnapshot.refresh(m_cache, m_source, true));
+        assertFalse(m_cache.hasSnapshot());
+    }
+}
@@ -0,0 +1,166 @@
+package knoblauch.readdesc.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the `SectionIndex` used to navigate between the titles
+ * of a document.
+ */
+public class SectionIndexTest {
+
+    /**
+     * An index with two chapters (level `1`) each containing two sections
+     * (level `2`), starting at words `0`, `10`, `20`, `30`, `40` and `50`.
+     */
+    private SectionIndex m_index;
+
+    @Before
+    public void setUp() {
+        m_index = new SectionIndex();
+
+        m_index.add(0, 1);
+        m_index.add(10, 2);
+        m_index.add(20, 2);
+        m_index.add(30, 1);
+        m_index.add(40, 2);
+        m_index.add(50, 2);
+    }
+
+    /**
+     * Used to describe the sections of the input index as a list of start and
+     * level pairs.
+     * @param index - the index to describe.
+     * @return - the description of the index.
+     */
+    private static String describe(SectionIndex index) {
+        StringBuilder out = new StringBuilder();
+
+        for (int section = 0 ; section < index.size() ; ++section) {
+            out.append(index.getStart(section)).append('/').append(index.getLevel(section)).append(' ');
+        }
+
+        return out.toString().trim();
+    }
+
+    @Test
+    public void startsEmpty() {
+        SectionIndex index = new SectionIndex();
+
+        assertTrue(index.isEmpty());
+        assertEquals(SectionIndex.DEEPEST_LEVEL, index.getTopLevel());
+        assertEquals(-1, index.find(12));
+        assertEquals(-1, index.next(0, SectionIndex.DEEPEST_LEVEL));
+        assertEquals(-1, index.previous(12, SectionIndex.DEEPEST_LEVEL));
+    }
+
+    @Test
+    public void keepsHighestLevelForSectionsWithSameStart() {
+        SectionIndex index = new SectionIndex();
+
+        index.add(5, 3);
+        index.add(5, 1);
+        index.add(5, 2);
+
+        assertEquals("5/1", describe(index));
+        assertEquals(1, index.getTopLevel());
+    }
+
+    @Test
+    public void ignoresSectionsAddedOutOfOrder() {
+        m_index.add(25, 1);
+
+        assertEquals("0/1 10/2 20/2 30/1 40/2 50/2", describe(m_index));
+    }
+
+    @Test
+    public void insertsSectionsInOrder() {
+        m_index.insert(25, 3);
+        m_index.insert(60, 2);
+        m_index.insert(10, 1);
+
+        assertEquals("0/1 10/1 20/2 25/3 30/1 40/2 50/2 60/2", describe(m_index));
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        SectionIndex index = new SectionIndex();
+        for (int id = 99 ; id >= 0 ; --id) {
+            index.insert(2 * id, 1 + id % 3);
+        }
+
+        assertEquals(100, index.size());
+        for (int section = 0 ; section < index.size() ; ++section) {
+            assertEquals(2 * section, index.getStart(section));
+        }
+    }
+
+    @Test
+    public void findsSectionContainingWord() {
+        assertEquals(0, m_index.find(0));
+        assertEquals(0, m_index.find(9));
+        assertEquals(1, m_index.find(10));
+        assertEquals(5, m_index.find(1000));
+    }
+
+    @Test
+    public void findsNextSectionAtLevel() {
+        assertEquals(1, m_index.next(0, 2));
+        assertEquals(3, m_index.next(0, 1));
+        assertEquals(4, m_index.next(35, 2));
+        assertEquals(-1, m_index.next(35, 1));
+        assertEquals(-1, m_index.next(50, 2));
+    }
+
+    @Test
+    public void findsPreviousSectionAtLevel() {
+        // Inside a section we move to its start.
+        assertEquals(2, m_index.previous(25, 2));
+        assertEquals(0, m_index.previous(25, 1));
+
+        // At the start of a section we move to the previous one.
+        assertEquals(1, m_index.previous(20, 2));
+        assertEquals(0, m_index.previous(30, 1));
+        assertEquals(-1, m_index.previous(0, 2));
+    }
+
+    @Test
+    public void clearsSections() {
+        m_index.clear();
+
+        assertTrue(m_index.isEmpty());
+        assertEquals(SectionIndex.DEEPEST_LEVEL, m_index.getTopLevel());
+    }
+
+    @Test
+    public void roundTripsThroughStreams() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        m_index.save(out);
+        out.close();
+
+        SectionIndex index = new SectionIndex();
+        index.load(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(describe(m_index), describe(index));
+        assertEquals(1, index.getTopLevel());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNegativeCounts() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(-1);
+        out.close();
+
+        new SectionIndex().load(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
@@ -0,0 +1,119 @@
+package knoblauch.readdesc.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the `Vocabulary` interning the words of the sources.
+ */
+public class VocabularyTest {
+
+    @Test
+    public void internsEqualWordsToSameToken() {
+        Vocabulary vocabulary = new Vocabulary();
+
+        int hello = vocabulary.intern("hello", 0, 5);
+        int world = vocabulary.intern("world", 0, 5);
+
+        assertNotEquals(hello, world);
+        assertEquals(hello, vocabulary.intern(new StringBuilder("say hello"), 4, 9));
+        assertEquals(2, vocabulary.size());
+    }
+
+    @Test
+    public void retrievesInternedWords() {
+        Vocabulary vocabulary = new Vocabulary();
+
+        int word = vocabulary.intern("a word", 2, 6);
+        int empty = vocabulary.intern("", 0, 0);
+
+        assertEquals("word", vocabulary.get(word));
+        assertEquals("", vocabulary.get(empty));
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        Vocabulary vocabulary = new Vocabulary();
+
+        int[] tokens = new int[10000];
+        for (int id = 0 ; id < tokens.length ; ++id) {
+            String word = "word" + id;
+            tokens[id] = vocabulary.intern(word, 0, word.length());
+        }
+
+        assertEquals(tokens.length, vocabulary.size());
+        for (int id = 0 ; id < tokens.length ; ++id) {
+            String word = "word" + id;
+            assertEquals(tokens[id], vocabulary.intern(word, 0, word.length()));
+            assertEquals(word, vocabulary.get(tokens[id]));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsUnknownTokens() {
+        new Vocabulary().get(0);
+    }
+
+    @Test
+    public void reusesViewWhenNothingChanged() {
+        Vocabulary vocabulary = new Vocabulary();
+        vocabulary.intern("one", 0, 3);
+
+        Vocabulary.View view = vocabulary.publish();
+        vocabulary.intern("one", 0, 3);
+
+        assertSame(view, vocabulary.publish());
+    }
+
+    @Test
+    public void keepsViewsUnchangedWhileGrowing() {
+        Vocabulary vocabulary = new Vocabulary();
+        int first = vocabulary.intern("first", 0, 5);
+
+        Vocabulary.View view = vocabulary.publish();
+
+        int last = -1;
+        for (int id = 0 ; id < 10000 ; ++id) {
+            String word = "word" + id;
+            last = vocabulary.intern(word, 0, word.length());
+        }
+
+        assertEquals("first", view.get(first));
+        assertEquals("word9999", vocabulary.publish().get(last));
+
+        try {
+            view.get(last);
+            fail("Token registered after the view should not be visible");
+        }
+        catch (IndexOutOfBoundsException e) {
+            // Expected: the view only describes the words registered before it.
+        }
+    }
+
+    @Test
+    public void internsTokensOfOtherVocabularies() {
+        Vocabulary source = new Vocabulary();
+        source.intern("skipped", 0, 7);
+        int token = source.intern("shared", 0, 6);
+
+        Vocabulary target = new Vocabulary();
+        int copied = target.intern(source, token);
+
+        assertEquals("shared", target.get(copied));
+        assertEquals(copied, target.intern("shared", 0, 6));
+        assertEquals(token, source.intern(source, token));
+    }
+
+    @Test
+    public void concatenatesTokensWithText() {
+        Vocabulary vocabulary = new Vocabulary();
+
+        int word = vocabulary.intern("word", 0, 4);
+        int existing = vocabulary.intern("word!", 0, 5);
+
+        assertEquals(existing, vocabulary.concat(word, "?!", 1, 2));
+        assertEquals("word.", vocabulary.get(vocabulary.concat(word, ".", 0, 1)));
+        assertEquals("word", vocabulary.get(word));
+    }
+}
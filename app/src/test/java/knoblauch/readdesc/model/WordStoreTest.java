@@ -0,0 +1,282 @@
+package knoblauch.readdesc.model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the `WordStore` holding the words of the sources and
+ * for the snapshots it publishes to the other threads.
+ */
+public class WordStoreTest {
+
+    /**
+     * Used to create a store containing the input words, all published.
+     * @param words - the words of the store.
+     * @return - the created store.
+     */
+    private static WordStore create(String... words) {
+        WordStore store = new WordStore();
+        store.addAll(Arrays.asList(words));
+        store.publish();
+
+        return store;
+    }
+
+    /**
+     * Used to retrieve the words visible in the input snapshot.
+     * @param snapshot - the snapshot to read.
+     * @return - the words of the snapshot.
+     */
+    private static String[] read(WordStore.Snapshot snapshot) {
+        String[] words = new String[snapshot.size()];
+        for (int id = 0 ; id < words.length ; ++id) {
+            words[id] = snapshot.get(id);
+        }
+
+        return words;
+    }
+
+    /**
+     * Used to generate a text made of the input number of words. The words are
+     * picked in a vocabulary of a few thousands words, the shortest ones being
+     * the most frequent as in a regular text.
+     * @param seed - the seed of the generation.
+     * @param words - the number of words of the text.
+     * @return - the generated text.
+     */
+    private static String generateText(long seed, int words) {
+        Random random = new Random(seed);
+
+        String[] vocabulary = new String[5000];
+        for (int id = 0 ; id < vocabulary.length ; ++id) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + id * 12 / vocabulary.length + random.nextInt(3);
+            for (int c = 0 ; c < length ; ++c) {
+                word.append((char)('a' + random.nextInt(26)));
+            }
+            vocabulary[id] = word.toString();
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (int id = 0 ; id < words ; ++id) {
+            text.append(vocabulary[random.nextInt(1 + random.nextInt(vocabulary.length))]).append(' ');
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Used to retrieve the memory used in the heap once the garbage collector
+     * has released the unreachable objects.
+     * @return - the memory used in the heap in bytes.
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int id = 0 ; id < 4 ; ++id) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void storesWordsAcrossSegments() {
+        WordStore store = new WordStore();
+        for (int id = 0 ; id < 5000 ; ++id) {
+            store.add("word" + (id % 100));
+        }
+
+        assertEquals(5000, store.size());
+        assertEquals(100, store.getVocabulary().size());
+        for (int id = 0 ; id < 5000 ; ++id) {
+            assertEquals("word" + (id % 100), store.get(id));
+        }
+
+        assertEquals(store.getToken(7), store.getToken(4207));
+        assertNotEquals(store.getToken(7), store.getToken(8));
+    }
+
+    @Test
+    public void addsRangesOfText() {
+        WordStore store = new WordStore();
+        store.add("xx hello yy", 3, 8);
+
+        assertEquals(Arrays.asList("hello"), store);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsInvalidIndices() {
+        create("one").get(1);
+    }
+
+    @Test
+    public void publishesWordsOnDemand() {
+        WordStore store = create("one", "two");
+        WordStore.Snapshot before = store.getSnapshot();
+
+        store.add("three");
+        assertSame(before, store.getSnapshot());
+        assertEquals(2, before.size());
+
+        store.publish();
+        assertArrayEquals(new String[] { "one", "two" }, read(before));
+        assertArrayEquals(new String[] { "one", "two", "three" }, read(store.getSnapshot()));
+    }
+
+    @Test
+    public void keepsSnapshotsUnchangedBySet() {
+        WordStore store = new WordStore();
+        for (int id = 0 ; id < 3000 ; ++id) {
+            store.add("word" + id);
+        }
+        store.publish();
+        WordStore.Snapshot before = store.getSnapshot();
+
+        store.set(0, "first");
+        store.set(2500, "last");
+        store.set(2501, "other");
+
+        assertEquals("word0", before.get(0));
+        assertEquals("word2500", before.get(2500));
+        assertEquals("first", store.get(0));
+
+        store.publish();
+        WordStore.Snapshot after = store.getSnapshot();
+        store.set(0, "again");
+
+        assertEquals("word0", before.get(0));
+        assertEquals("first", after.get(0));
+        assertEquals("last", after.get(2500));
+    }
+
+    @Test
+    public void keepsSnapshotsUnchangedByClear() {
+        WordStore store = create("one", "two");
+        WordStore.Snapshot before = store.getSnapshot();
+
+        store.clear();
+        store.add("three");
+
+        assertEquals(1, store.size());
+        assertArrayEquals(new String[] { "one", "two" }, read(before));
+
+        store.publish();
+        assertArrayEquals(new String[] { "three" }, read(store.getSnapshot()));
+    }
+
+    @Test
+    public void keepsSnapshotsUnchangedByAssign() {
+        WordStore store = create("one", "two", "three");
+        WordStore.Snapshot before = store.getSnapshot();
+
+        WordStore other = store.createEmpty();
+        other.addAll(store, 1, 3);
+        store.assign(other);
+
+        assertTrue(other.isEmpty());
+        assertEquals(Arrays.asList("two", "three"), store);
+
+        store.set(0, "four");
+        store.publish();
+
+        assertArrayEquals(new String[] { "one", "two", "three" }, read(before));
+        assertArrayEquals(new String[] { "four", "three" }, read(store.getSnapshot()));
+    }
+
+    @Test
+    public void copiesWordsAcrossVocabularies() {
+        WordStore source = create("one", "two", "one");
+        WordStore target = new WordStore(new Vocabulary());
+
+        target.add("zero");
+        target.addAll(source, 0, 3);
+
+        assertEquals(Arrays.asList("zero", "one", "two", "one"), target);
+        assertEquals(target.getToken(1), target.getToken(3));
+        assertEquals(3, target.getVocabulary().size());
+    }
+
+    @Test
+    public void copiesWordsWithinVocabulary() {
+        WordStore source = create("one", "two");
+        WordStore target = source.createEmpty();
+
+        target.addAll(source, 0, 2);
+
+        assertSame(source.getVocabulary(), target.getVocabulary());
+        assertEquals(source.getToken(1), target.getToken(1));
+        assertEquals(2, source.getVocabulary().size());
+    }
+
+    @Test
+    public void roundTripsThroughCache() throws IOException {
+        WordStore store = create("Un", "été", "à", "Paris…", "€");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ReadCache.writeWords(out, store, 1, store.size());
+        out.close();
+
+        WordStore restored = new WordStore();
+        int count = ReadCache.readWords(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), restored);
+
+        assertEquals(4, count);
+        assertEquals(store.subList(1, store.size()), restored);
+    }
+
+    @Test
+    public void appendsToLastWordWithoutChangingSnapshots() {
+        WordStore store = create("one", "two");
+        WordStore.Snapshot before = store.getSnapshot();
+
+        store.appendToLast("xx!", 2, 3);
+        store.publish();
+
+        assertArrayEquals(new String[] { "one", "two" }, read(before));
+        assertArrayEquals(new String[] { "one", "two!" }, read(store.getSnapshot()));
+    }
+
+    @Test
+    public void measuresHeapPerWordAgainstAList() {
+        int count = 500000;
+        String text = generateText(0, count);
+
+        // Split the text just like the loaders do, once in a list of `String`
+        // and once in a store.
+        long base = usedMemory();
+        List<String> list = new ArrayList<>();
+        WordTokenizer tokenizer = new WordTokenizer(list);
+        tokenizer.append(text);
+        tokenizer.finish();
+        tokenizer = null;
+        long listBytes = usedMemory() - base;
+        assertEquals(count, list.size());
+        list = null;
+
+        base = usedMemory();
+        WordStore store = new WordStore();
+        tokenizer = new WordTokenizer(store);
+        tokenizer.append(text);
+        tokenizer.finish();
+        tokenizer = null;
+        long storeBytes = usedMemory() - base;
+        assertEquals(count, store.size());
+
+        System.out.println(String.format(Locale.US, "Heap per word: list %.1f bytes, store %.1f bytes (%d distinct words)",
+                1.0 * listBytes / count, 1.0 * storeBytes / count, store.getVocabulary().size()));
+
+        assertTrue(storeBytes < listBytes);
+    }
+}
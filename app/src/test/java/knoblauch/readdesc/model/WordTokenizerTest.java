@@ -0,0 +1,319 @@
+package knoblauch.readdesc.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the `WordTokenizer` which splits the text of all the
+ * sources in words.
+ */
+public class WordTokenizerTest {
+
+    /**
+     * Copy of the splitting of the text as it was done by the `HtmlSourceLoader`
+     * before the tokenizer was shared between the loaders: a single scan which
+     * compares each character with the spaces and looks up the words made of a
+     * single character in the lists of symbols. It is kept as a reference for
+     * both the words produced and the time needed to produce them.
+     */
+    private static class ScanSplitter {
+
+        private static final String SEPARATOR = "*";
+        private static final String PUNCTUATION = ",?;.:!()°\"'";
+        private static final String CURRENCIES = "€$£";
+
+        /**
+         * Used to determine whether the input character separates two words.
+         * @param c - the character to check.
+         * @return - `true` if the character is a space.
+         */
+        private static boolean isSpace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+
+        /**
+         * Used to register the words of the input text in the list.
+         * @param text - the text to split.
+         * @param words - the list to which the words should be appended.
+         */
+        static void registerWords(String text, List<String> words) {
+            int length = text.length();
+            int id = 0;
+
+            while (id < length) {
+                while (id < length && isSpace(text.charAt(id))) {
+                    ++id;
+                }
+
+                if (id >= length) {
+                    break;
+                }
+
+                int start = id;
+                while (id < length && !isSpace(text.charAt(id))) {
+                    ++id;
+                }
+
+                if (id - start == 1 && SEPARATOR.indexOf(text.charAt(start)) >= 0) {
+                    continue;
+                }
+
+                if (!words.isEmpty() && id - start == 1 && (PUNCTUATION.indexOf(text.charAt(start)) >= 0 || CURRENCIES.indexOf(text.charAt(start)) >= 0)) {
+                    words.set(words.size() - 1, words.get(words.size() - 1).concat(text.substring(start, id)));
+                    continue;
+                }
+
+                words.add(text.substring(start, id));
+            }
+        }
+    }
+
+    /**
+     * The words used to generate the paragraphs of text. Only the symbols known
+     * by the reference splitter are used so that both produce the same words.
+     */
+    private static final String[] VOCABULARY = {
+            "The", "reader", "displays", "one", "word", "at", "a", "time", "in", "the", "center",
+            "of", "screen", "which", "allows", "to", "read", "much", "faster", "than", "usual",
+            "It", "costs", "12", "€", "and", "saves", "hours", "*", "(see", "chapter", "4)",
+            ".", ",", ";", ":", "!", "?", "\"quoted\"", "it's", "anticonstitutionnellement"
+    };
+
+    /**
+     * Used to generate paragraphs of text as found in the text nodes of the
+     * documents: words separated by single spaces and sometimes by runs of
+     * spaces or new lines.
+     * @param seed - the seed of the generation.
+     * @param words - the number of words of the paragraph.
+     * @return - the text of the paragraph.
+     */
+    private static String generateParagraph(long seed, int words) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+
+        for (int id = 0 ; id < words ; ++id) {
+            text.append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+
+            int space = random.nextInt(20);
+            if (space == 0) {
+                text.append("\n    ");
+            }
+            else if (space == 1) {
+                text.append("  ");
+            }
+            else {
+                text.append(' ');
+            }
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Used to feed the input chunks of text to a new tokenizer, one after the
+     * other and without breaking the words in between.
+     * @param chunks - the chunks of text to tokenize.
+     * @return - the words produced by the tokenizer.
+     */
+    private static List<String> tokenize(String... chunks) {
+        List<String> words = new ArrayList<>();
+        WordTokenizer tokenizer = new WordTokenizer(words);
+
+        for (String chunk : chunks) {
+            tokenizer.append(chunk);
+        }
+        tokenizer.finish();
+
+        return words;
+    }
+
+    @Test
+    public void splitsOnRunsOfSpaces() {
+        assertEquals(Arrays.asList("one", "two", "three"), tokenize("one  two\t\n three"));
+    }
+
+    @Test
+    public void ignoresLeadingAndTrailingSpaces() {
+        assertEquals(Arrays.asList("one", "two"), tokenize("   one two \r\n"));
+    }
+
+    @Test
+    public void producesNoWordForBlankText() {
+        assertTrue(tokenize("", "  ", "\t\n").isEmpty());
+    }
+
+    @Test
+    public void continuesWordsAcrossChunks() {
+        assertEquals(Arrays.asList("Hello", "world"), tokenize("Hel", "lo wo", "rld"));
+    }
+
+    @Test
+    public void spaceChunkClosesCurrentWord() {
+        assertEquals(Arrays.asList("Hello", "world"), tokenize("Hello", " ", "world"));
+    }
+
+    @Test
+    public void breakWordClosesCurrentWord() {
+        List<String> words = new ArrayList<>();
+        WordTokenizer tokenizer = new WordTokenizer(words);
+
+        tokenizer.append("Hello");
+        tokenizer.breakWord();
+        tokenizer.append("world");
+        tokenizer.finish();
+
+        assertEquals(Arrays.asList("Hello", "world"), words);
+    }
+
+    @Test
+    public void appendsOnlyTheInputRange() {
+        List<String> words = new ArrayList<>();
+        WordTokenizer tokenizer = new WordTokenizer(words);
+
+        tokenizer.append("xx one two yy", 3, 10);
+        tokenizer.finish();
+
+        assertEquals(Arrays.asList("one", "two"), words);
+    }
+
+    @Test
+    public void keepsLastWordOpenUntilFinished() {
+        List<String> words = new ArrayList<>();
+        WordTokenizer tokenizer = new WordTokenizer(words);
+
+        tokenizer.append("one two");
+        assertEquals(Arrays.asList("one"), words);
+
+        tokenizer.finish();
+        assertEquals(Arrays.asList("one", "two"), words);
+    }
+
+    @Test
+    public void splitsOnUnicodeSpaces() {
+        assertEquals(Arrays.asList("one", "two", "three"), tokenize("one\u00a0two\u2003three"));
+    }
+
+    @Test
+    public void collapsesPunctuationWithPreviousWord() {
+        assertEquals(Arrays.asList("?", "Really?", "Yes!"), tokenize("? Really ? Yes !"));
+    }
+
+    @Test
+    public void collapsesCurrenciesWithPreviousWord() {
+        assertEquals(Arrays.asList("It", "costs", "12€"), tokenize("It costs 12 €"));
+    }
+
+    @Test
+    public void collapsesOpeningSymbolsWithNextWord() {
+        assertEquals(Arrays.asList("«Bonjour»"), tokenize("« Bonjour »"));
+    }
+
+    @Test
+    public void keepsDanglingOpeningSymbols() {
+        assertEquals(Arrays.asList("end", "«"), tokenize("end «"));
+    }
+
+    @Test
+    public void discardsSeparators() {
+        assertEquals(Arrays.asList("one", "two"), tokenize("one * two"));
+    }
+
+    @Test
+    public void countsWordsBeforeCollapse() {
+        List<String> words = new ArrayList<>();
+        WordTokenizer tokenizer = new WordTokenizer(words);
+
+        tokenizer.append("« Hello » * world !");
+        tokenizer.finish();
+
+        assertEquals(Arrays.asList("«Hello»", "world!"), words);
+        assertEquals(5, tokenizer.getCount());
+    }
+
+    @Test
+    public void producesSameWordsInStores() {
+        WordStore store = new WordStore();
+        WordTokenizer tokenizer = new WordTokenizer(store);
+
+        tokenizer.append("« Hel");
+        tokenizer.append("lo » , it costs 12 € *");
+        tokenizer.breakWord();
+        tokenizer.append("end «");
+        tokenizer.finish();
+
+        assertEquals(tokenize("« Hel", "lo » , it costs 12 € *", " end «"), store);
+        assertEquals(Arrays.asList("«Hello»,", "it", "costs", "12€", "end", "«"), store);
+    }
+
+    @Test
+    public void producesTheSameWordsAsThePreviousSplitting() {
+        for (long seed = 0 ; seed < 200 ; ++seed) {
+            String text = generateParagraph(seed, 400);
+
+            List<String> expected = new ArrayList<>();
+            ScanSplitter.registerWords(text, expected);
+
+            assertEquals("Words differ for paragraph " + seed, expected, tokenize(text));
+        }
+    }
+
+    @Test
+    public void measuresThroughputAgainstThePreviousSplitting() {
+        ArrayList<String> paragraphs = new ArrayList<>();
+        long characters = 0;
+        for (long seed = 0 ; seed < 50 ; ++seed) {
+            String text = generateParagraph(seed, 2000);
+            characters += text.length();
+            paragraphs.add(text);
+        }
+
+        long reference = 0;
+        long list = 0;
+        long store = 0;
+        int runs = 5;
+
+        // The first runs warm up the implementations and are not measured.
+        for (int run = -3 ; run < runs ; ++run) {
+            long start = System.nanoTime();
+            for (String text : paragraphs) {
+                ScanSplitter.registerWords(text, new ArrayList<String>());
+            }
+            long previous = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String text : paragraphs) {
+                WordTokenizer tokenizer = new WordTokenizer(new ArrayList<String>());
+                tokenizer.append(text);
+                tokenizer.finish();
+            }
+            long tokenizerList = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String text : paragraphs) {
+                WordTokenizer tokenizer = new WordTokenizer(new WordStore());
+                tokenizer.append(text);
+                tokenizer.finish();
+            }
+            long tokenizerStore = System.nanoTime() - start;
+
+            if (run >= 0) {
+                reference += previous;
+                list += tokenizerList;
+                store += tokenizerStore;
+            }
+        }
+
+        double millions = 1e-6 * characters * runs;
+        System.out.println(String.format(Locale.US, "Text splitting: previous %.1f M chars/s, tokenizer %.1f M chars/s (list), %.1f M chars/s (store)",
+                millions / (reference / 1e9), millions / (list / 1e9), millions / (store / 1e9)));
+
+        assertTrue(reference > 0 && list > 0 && store > 0);
+    }
+}